@@ -0,0 +1,238 @@
+package jnotepadpp;
+
+import jnotepadpp.document.TextDocument;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic files which benchmarks open, save, count and search. Files are generated
+ * from a fixed seed, so the same kind and size always give the same bytes, and are
+ * kept in directory given by system property <code>jnotepadpp.corpus</code> (temporary
+ * directory by default), so big files are generated only once.
+ * @author Dario Vidas
+ */
+public final class Corpus {
+
+	/** Word on about every hundredth line, or group of words of long lines, benchmarks search for it. */
+	static final String NEEDLE = "needle";
+
+	/** Length of lines of <code>LONG_LINES</code> files. */
+	private static final int LONG_LINE = 1024 * 1024;
+
+	/** Words of ASCII text. */
+	private static final String[] ASCII_WORDS = {"saved", "opened", "file", "tab", "bytes", "document", "worker",
+		"cache", "line", "index", "search", "found", "query", "session", "user", "request", "timeout", "retry"};
+
+	/** Words of multibyte text: Croatian, Cyrillic, Greek, CJK and emoji, which are surrogate pairs. */
+	private static final String[] UTF8_WORDS = {"čćžšđ", "šećer", "žaba", "đak", "ćevapi", "привет", "мир",
+		"λόγος", "αλφα", "文本", "編輯器", "日本語", "한국어", "😀", "📄", "mješovito"};
+
+	/** Log levels. */
+	private static final String[] LEVELS = {"INFO ", "DEBUG", "WARN ", "ERROR", "TRACE"};
+
+	/**
+	 * Kinds of files.
+	 * @author Dario Vidas
+	 */
+	public enum Kind {
+		/** ASCII log lines ending with <code>'\n'</code>. */
+		ASCII_LOG,
+		/** UTF-8 text with 2, 3 and 4 byte characters. */
+		UTF8,
+		/** ASCII log lines ending with <code>"\r\n"</code>. */
+		CRLF,
+		/** Lines of a megabyte. */
+		LONG_LINES
+	}
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private Corpus() {
+	}
+
+	/**
+	 * Returns file of given kind and size, generating it if it does not exist.
+	 * @param kind kind of file
+	 * @param size size like <code>1KB</code>, <code>64MB</code> or <code>1GB</code>
+	 * @return file
+	 * @throws IOException if file can not be generated
+	 */
+	static synchronized File file(Kind kind, String size) throws IOException {
+		Path dir = Paths.get(System.getProperty("jnotepadpp.corpus",
+				System.getProperty("java.io.tmpdir") + File.separator + "jnotepadpp-corpus"));
+		Path file = dir.resolve(kind.name().toLowerCase(Locale.ROOT) + "-" + size + ".txt");
+		if (Files.exists(file)) {
+			return file.toFile();
+		}
+
+		Files.createDirectories(dir);
+		Path temp = dir.resolve(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp),
+				StandardCharsets.UTF_8), 1024 * 1024)) {
+			generate(kind, parseSize(size), writer);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		return file.toFile();
+	}
+
+	/**
+	 * Returns file with a copy of text of given kind and size, which benchmark can
+	 * change or replace.
+	 * @param kind kind of file
+	 * @param size size
+	 * @param name name of copy
+	 * @return file
+	 * @throws IOException if file can not be generated or copied
+	 */
+	static File copy(Kind kind, String size, String name) throws IOException {
+		Path source = file(kind, size).toPath();
+		Path copy = source.resolveSibling(name + "-" + source.getFileName());
+		Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+		return copy.toFile();
+	}
+
+	/**
+	 * Opens file like a tab does: small files are decoded and inserted in chunks and
+	 * big files are mapped. Chunks are inserted at once instead of on EDT.
+	 * @param file file
+	 * @return document
+	 * @throws IOException if file can not be read
+	 */
+	static TextDocument open(File file) throws IOException {
+		TextDocument document = new TextDocument();
+		TextDocument mapped = new FileLoader(file, document) {
+
+			@Override
+			void chunk(String chunk) {
+				process(Collections.singletonList(chunk));
+			}
+		}.doInBackground();
+		return mapped == null ? document : mapped;
+	}
+
+	/**
+	 * Parses size like <code>512</code>, <code>1KB</code>, <code>64MB</code> or <code>1GB</code>.
+	 * @param size size
+	 * @return size in bytes
+	 */
+	static long parseSize(String size) {
+		String upper = size.trim().toUpperCase(Locale.ROOT);
+		long unit = 1;
+		if (upper.endsWith("KB")) {
+			unit = 1024;
+		} else if (upper.endsWith("MB")) {
+			unit = 1024 * 1024;
+		} else if (upper.endsWith("GB")) {
+			unit = 1024 * 1024 * 1024;
+		}
+		String number = unit == 1 ? upper : upper.substring(0, upper.length() - 2);
+		return Long.parseLong(number.trim()) * unit;
+	}
+
+	/**
+	 * Writes lines until at least given number of bytes is written. Last line is cut
+	 * so file has exactly that many bytes, without splitting a character.
+	 * @param kind kind of file
+	 * @param bytes number of bytes
+	 * @param writer writer
+	 * @throws IOException if writing fails
+	 */
+	private static void generate(Kind kind, long bytes, BufferedWriter writer) throws IOException {
+		Random random = new Random(kind.ordinal());
+		StringBuilder line = new StringBuilder();
+		long written = 0;
+		for (long number = 0; written < bytes; number++) {
+			line.setLength(0);
+			appendLine(kind, number, random, line);
+
+			byte[] encoded = line.toString().getBytes(StandardCharsets.UTF_8);
+			if (written + encoded.length > bytes) {
+				int end = (int) (bytes - written);
+				while (end > 0 && (encoded[end] & 0xC0) == 0x80) {		//continuation byte
+					end--;
+				}
+				writer.write(new String(encoded, 0, end, StandardCharsets.UTF_8));
+				break;
+			}
+			writer.write(line.toString());
+			written += encoded.length;
+		}
+	}
+
+	/**
+	 * Appends one line of given kind, with its line ending.
+	 * @param kind kind of file
+	 * @param number line number
+	 * @param random random generator
+	 * @param line line
+	 */
+	private static void appendLine(Kind kind, long number, Random random, StringBuilder line) {
+		boolean needle = number % 100 == 42;
+		switch (kind) {
+			case ASCII_LOG:
+			case CRLF:
+				line.append(String.format(Locale.ROOT, "2024-05-%02d %02d:%02d:%02d.%03d %s [worker-%d] jnotepadpp.%s - ",
+						1 + number / 86400 % 28, number / 3600 % 24, number / 60 % 60, number % 60,
+						random.nextInt(1000), LEVELS[random.nextInt(LEVELS.length)], random.nextInt(8),
+						ASCII_WORDS[random.nextInt(ASCII_WORDS.length)]));
+				appendWords(ASCII_WORDS, 4 + random.nextInt(12), needle, random, line);
+				line.append(kind == Kind.CRLF ? "\r\n" : "\n");
+				break;
+			case UTF8:
+				appendWords(UTF8_WORDS, 3 + random.nextInt(15), needle, random, line);
+				line.append('\n');
+				break;
+			default:		//LONG_LINES
+				for (int group = 0; line.length() < LONG_LINE; group++) {
+					appendWords(ASCII_WORDS, 100, group % 100 == 42, random, line);
+					line.append(' ');
+				}
+				line.append('\n');
+				break;
+		}
+	}
+
+	/**
+	 * Appends words separated by spaces.
+	 * @param words words to choose from
+	 * @param count number of words
+	 * @param needle <code>true</code> if one of words is <code>NEEDLE</code>
+	 * @param random random generator
+	 * @param line line
+	 */
+	private static void appendWords(String[] words, int count, boolean needle, Random random, StringBuilder line) {
+		int needleAt = needle ? random.nextInt(count) : -1;
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				line.append(' ');
+			}
+			line.append(i == needleAt ? NEEDLE : words[random.nextInt(words.length)]);
+		}
+	}
+
+	/**
+	 * Generates files of all kinds ahead of benchmarks.
+	 * @param args sizes, like <code>1KB 1MB 64MB</code>
+	 * @throws IOException if file can not be generated
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String size : args) {
+			for (Kind kind : Kind.values()) {
+				File file = file(kind, size);
+				System.out.println(file + " " + file.length());
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package jnotepadpp;
+
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of opening and saving files. Opening decodes file and inserts it into
+ * document like a tab does, files of 16 MB and more are mapped. Saving encodes a
+ * snapshot into a temporary file, forces it to disk and renames it over the target.
+ * Bytes per second are reported as <code>bytes</code>, allocation with
+ * <code>-prof gc</code>. Size of 1 GB is left out of defaults, it is given with
+ * <code>-p size=1GB</code>.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DocumentBenchmark {
+
+	/** Kind of file. */
+	@Param({"ASCII_LOG", "UTF8", "CRLF", "LONG_LINES"})
+	public Corpus.Kind kind;
+
+	/** Size of file. */
+	@Param({"1KB", "1MB", "64MB"})
+	public String size;
+
+	/** Opened file. */
+	private File file;
+
+	/** Snapshot of opened file, saved by benchmark. */
+	private TextSnapshot text;
+
+	/** Document of opened file. */
+	private TextDocument document;
+
+	/** File benchmark saves into. */
+	private File target;
+
+	/**
+	 * Generates file and opens it.
+	 * @throws IOException if file can not be generated or read
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = Corpus.file(kind, size);
+		target = Corpus.copy(kind, size, "saved");
+		document = Corpus.open(file);
+		text = document.snapshot();
+	}
+
+	/**
+	 * Closes document and deletes saved file.
+	 * @throws IOException if closing fails
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		document.close();
+		target.delete();
+	}
+
+	/**
+	 * Opens file.
+	 * @param throughput byte counter
+	 * @return document length
+	 * @throws IOException if file can not be read
+	 */
+	@Benchmark
+	public int open(Throughput throughput) throws IOException {
+		TextDocument opened = Corpus.open(file);
+		try {
+			throughput.bytes += file.length();
+			return opened.getLength();
+		} finally {
+			opened.close();
+		}
+	}
+
+	/**
+	 * Saves text over target file.
+	 * @param throughput byte counter
+	 * @return checksum of saved bytes
+	 * @throws IOException if file can not be written
+	 */
+	@Benchmark
+	public long save(Throughput throughput) throws IOException {
+		FileSaver saver = new FileSaver(text, target);
+		saver.doInBackground();
+		throughput.bytes += file.length();
+		return saver.getChecksum();
+	}
+}
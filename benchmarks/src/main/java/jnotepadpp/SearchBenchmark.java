@@ -0,0 +1,96 @@
+package jnotepadpp;
+
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.search.DocumentCharSequence;
+import jnotepadpp.search.Finder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of finding all matches in opened document, like find bar does when
+ * find next is pressed until search wraps. Search ignores case.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SearchBenchmark {
+
+	/** Kind of file. */
+	@Param({"ASCII_LOG", "UTF8", "CRLF", "LONG_LINES"})
+	public Corpus.Kind kind;
+
+	/** Size of file. */
+	@Param({"1KB", "1MB", "64MB"})
+	public String size;
+
+	/** Set if pattern is regular expression. */
+	@Param({"false", "true"})
+	public boolean regex;
+
+	/** Searched file. */
+	private File file;
+
+	/** Document of searched file. */
+	private TextDocument document;
+
+	/** Finder. */
+	private Finder finder;
+
+	/**
+	 * Generates file and opens it.
+	 * @throws IOException if file can not be generated or read
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = Corpus.file(kind, size);
+		document = Corpus.open(file);
+		finder = Finder.create(regex ? "ne+dle\\b" : Corpus.NEEDLE, false, regex);
+	}
+
+	/**
+	 * Closes document.
+	 * @throws IOException if closing fails
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		document.close();
+	}
+
+	/**
+	 * Finds all matches.
+	 * @param throughput byte counter
+	 * @return number of matches
+	 */
+	@Benchmark
+	public int find(Throughput throughput) {
+		CharSequence text = new DocumentCharSequence(document);
+		int length = text.length();
+		int matches = 0;
+		for (int from = 0; from < length && finder.find(text, from, length); from = Math.max(finder.end(),
+				finder.start() + 1)) {
+			matches++;
+		}
+		throughput.bytes += file.length();
+		return matches;
+	}
+}
@@ -0,0 +1,123 @@
+package jnotepadpp;
+
+import jnotepadpp.analysis.TextAnalysis;
+import jnotepadpp.analysis.TextAnalyzer;
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.text.BadLocationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of statistics. Statistics of a document are counted while it is
+ * edited, so <code>edit</code> measures an edit with its counting followed by
+ * reading statistics. Analysis counts words of a file that is not opened or of a
+ * snapshot of opened document, on the common pool.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StatisticsBenchmark {
+
+	/** Text inserted and removed by edit. */
+	private static final String EDIT = "inserted words\n";
+
+	/** Number of most frequent words in analysis. */
+	private static final int TOP_WORDS = 10;
+
+	/** Kind of file. */
+	@Param({"ASCII_LOG", "UTF8", "CRLF", "LONG_LINES"})
+	public Corpus.Kind kind;
+
+	/** Size of file. */
+	@Param({"1KB", "1MB", "64MB"})
+	public String size;
+
+	/** Analyzed file. */
+	private File file;
+
+	/** Document of analyzed file. */
+	private TextDocument document;
+
+	/** Analyzer. */
+	private final TextAnalyzer analyzer = new TextAnalyzer(TOP_WORDS);
+
+	/**
+	 * Generates file and opens it.
+	 * @throws IOException if file can not be generated or read
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = Corpus.file(kind, size);
+		document = Corpus.open(file);
+	}
+
+	/**
+	 * Closes document.
+	 * @throws IOException if closing fails
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		document.close();
+	}
+
+	/**
+	 * Inserts line in the middle of document, reads statistics and removes line.
+	 * @return statistics with inserted line
+	 * @throws BadLocationException never, offset is inside of document
+	 */
+	@Benchmark
+	public TextStatistics edit() throws BadLocationException {
+		int offset = document.getLength() / 2;
+		document.insertString(offset, EDIT, null);
+		TextStatistics stats = document.getStatistics();
+		document.remove(offset, EDIT.length());
+		return stats;
+	}
+
+	/**
+	 * Analyzes file without opening it.
+	 * @param throughput byte counter
+	 * @return analysis
+	 * @throws IOException if file can not be read
+	 */
+	@Benchmark
+	public TextAnalysis analyzeFile(Throughput throughput) throws IOException {
+		TextAnalysis analysis = analyzer.analyze(file.toPath());
+		throughput.bytes += file.length();
+		return analysis;
+	}
+
+	/**
+	 * Analyzes snapshot of opened document.
+	 * @param throughput byte counter
+	 * @return analysis
+	 */
+	@Benchmark
+	public TextAnalysis analyzeDocument(Throughput throughput) {
+		TextAnalysis analysis = analyzer.analyze(document.snapshot());
+		throughput.bytes += file.length();
+		return analysis;
+	}
+}
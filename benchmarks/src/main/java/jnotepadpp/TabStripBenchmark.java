@@ -0,0 +1,152 @@
+package jnotepadpp;
+
+import jnotepadpp.localization.LocalizationProvider;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of adding and removing tabs of <code>ModifiedTabbedPane</code> which
+ * already has hundreds of tabs. Every operation builds a tab, adds it, lays out the
+ * pane, removes the tab and lays out the pane again, on EDT like the editor does.
+ * Tabs are lazy, so a blank text area is built only by <code>addBlank</code>. Pane
+ * is displayable without a window, so it runs headlessly.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TabStripBenchmark {
+
+	/** Width of pane. */
+	private static final int WIDTH = 1200;
+
+	/** Height of pane. */
+	private static final int HEIGHT = 800;
+
+	/** Number of tabs in pane. */
+	@Param({"100", "300", "1000"})
+	public int tabs;
+
+	/** Tabbed pane. */
+	private ModifiedTabbedPane pane;
+
+	/**
+	 * Builds pane with tabs and lays it out.
+	 * @throws InvocationTargetException if building fails
+	 * @throws InterruptedException if interrupted
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				pane = new ModifiedTabbedPane(LocalizationProvider.getInstance());
+				for (int i = 0; i < tabs; i++) {
+					pane.add(new TabComponent(null, LocalizationProvider.getInstance(), true));
+				}
+				pane.addNotify();
+				pane.setSize(WIDTH, HEIGHT);
+				pane.validate();
+			}
+		});
+	}
+
+	/**
+	 * Removes all tabs.
+	 * @throws InvocationTargetException if removing fails
+	 * @throws InterruptedException if interrupted
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				while (pane.getTabCount() > 0) {
+					pane.removeTabAt(pane.getTabCount() - 1);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Adds lazy tab after last tab and removes it.
+	 * @throws InvocationTargetException if adding fails
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public void addLast() throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				pane.add(new TabComponent(null, LocalizationProvider.getInstance(), true));
+				pane.validate();
+				pane.removeTabAt(pane.getTabCount() - 1);
+				pane.validate();
+			}
+		});
+	}
+
+	/**
+	 * Inserts lazy tab before first tab and removes it, so all tabs move.
+	 * @throws InvocationTargetException if adding fails
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public void insertFirst() throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				pane.insert(new TabComponent(null, LocalizationProvider.getInstance(), true), 0);
+				pane.validate();
+				pane.removeTabAt(0);
+				pane.validate();
+			}
+		});
+	}
+
+	/**
+	 * Adds blank tab with its text area, selects it and removes it.
+	 * @throws InvocationTargetException if adding fails
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public void addBlank() throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				int selected = pane.getSelectedIndex();
+				pane.add(new TabComponent(null, LocalizationProvider.getInstance()));
+				pane.setSelectedIndex(pane.getTabCount() - 1);
+				pane.validate();
+				pane.setSelectedIndex(selected);
+				pane.removeTabAt(pane.getTabCount() - 1);
+				pane.validate();
+			}
+		});
+	}
+}
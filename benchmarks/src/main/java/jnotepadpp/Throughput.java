@@ -0,0 +1,28 @@
+package jnotepadpp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counter of bytes processed by benchmark, which JMH reports as bytes per second
+ * next to operations per second.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+	/** Bytes processed in iteration. */
+	public long bytes;
+
+	/**
+	 * Clears counter before iteration.
+	 */
+	@Setup(Level.Iteration)
+	public void clear() {
+		bytes = 0;
+	}
+}
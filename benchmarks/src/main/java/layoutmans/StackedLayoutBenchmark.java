@@ -0,0 +1,212 @@
+package layoutmans;
+
+import layoutmans.StackedLayout.StackedLayoutDirection;
+
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.Box;
+import javax.swing.JPanel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of one layout pass of <code>StackedLayout</code>. Before every pass
+ * one child or all children are invalidated, as when one component changes or
+ * look and feel changes, and container is invalidated, which invalidates layout.
+ * After the pass invalidated children are validated again, like validation of
+ * container would do. Children are fillers with sizes of a few lines of text, so
+ * time is spent in layout and not in children. Children keep their validity without
+ * peers, like children of a shown container, so benchmark runs headlessly; making
+ * 100k children displayable would take minutes, AWT scans siblings of every child
+ * it adds a peer to. Adding a child, which opens a slot in caches of layout, is
+ * measured by <code>addRemove</code>.
+ * @author Dario Vidas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StackedLayoutBenchmark {
+
+	/** Width of container. */
+	private static final int WIDTH = 800;
+
+	/** Height of container. */
+	private static final int HEIGHT = 600;
+
+	/** Direction of layout. */
+	@Param({"FROM_TOP", "FROM_BOTTOM", "FILL"})
+	public StackedLayoutDirection direction;
+
+	/** Number of children. */
+	@Param({"10", "100", "1000", "10000", "100000"})
+	public int children;
+
+	/** Set if all children are invalidated before pass, otherwise only one is. */
+	@Param({"false", "true"})
+	public boolean all;
+
+	/** Laid out container. */
+	private JPanel container;
+
+	/** Layout of container. */
+	private StackedLayout layout;
+
+	/** Index of child invalidated by next pass. */
+	private int next;
+
+	/** Child added and removed by <code>addRemove</code>. */
+	private Child extra;
+
+	/**
+	 * Builds container and lays it out once.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		container = new JPanel(null);
+		for (int i = 0; i < children; i++) {
+			container.add(filler(i));
+		}
+		extra = filler(children);
+		layout = new StackedLayout(direction);
+		container.setLayout(layout);		//set after children, so caches are built in one pass
+		container.setSize(WIDTH, HEIGHT);
+		layout.layoutContainer(container);
+		for (int i = 0; i < children; i++) {
+			container.getComponent(i).validate();
+		}
+	}
+
+	/**
+	 * Computes preferred size of container.
+	 * @return preferred size
+	 */
+	@Benchmark
+	public Dimension preferredLayoutSize() {
+		int changed = invalidate();
+		Dimension size = layout.preferredLayoutSize(container);
+		validate(changed);
+		return size;
+	}
+
+	/**
+	 * Lays out children of container.
+	 * @return bounds of last child, which depend on all children
+	 */
+	@Benchmark
+	public Object layoutContainer() {
+		int changed = invalidate();
+		layout.layoutContainer(container);
+		validate(changed);
+		return container.getComponent(children - 1).getBounds();
+	}
+
+	/**
+	 * Adds child after last child, computes preferred size and removes child.
+	 * @return preferred size with added child
+	 */
+	@Benchmark
+	public Dimension addRemove() {
+		container.add(extra);
+		Dimension size = layout.preferredLayoutSize(container);
+		container.remove(children);
+		return size;
+	}
+
+	/**
+	 * Creates child with height of a few lines of text.
+	 * @param index child index
+	 * @return child
+	 */
+	private static Child filler(int index) {
+		int height = 5 + index % 21;
+		return new Child(new Dimension(10, height), new Dimension(100 + index % 300, height + 10),
+				new Dimension(Short.MAX_VALUE, height + 50));
+	}
+
+	/**
+	 * Invalidates one child, next one every time, or all of them, and container.
+	 * @return index of invalidated child, -1 if all were invalidated
+	 */
+	private int invalidate() {
+		int changed = -1;
+		if (all) {
+			for (int i = 0; i < children; i++) {
+				container.getComponent(i).invalidate();
+			}
+		} else {
+			changed = next;
+			next = (next + 1) % children;
+			container.getComponent(changed).invalidate();
+		}
+		container.invalidate();
+		return changed;
+	}
+
+	/**
+	 * Validates invalidated children.
+	 * @param changed index of invalidated child, -1 if all were invalidated
+	 */
+	private void validate(int changed) {
+		if (changed >= 0) {
+			container.getComponent(changed).validate();
+		} else {
+			for (int i = 0; i < children; i++) {
+				container.getComponent(i).validate();
+			}
+		}
+	}
+
+	/**
+	 * Filler which is valid after it is validated, also without a peer.
+	 * @author Dario Vidas
+	 */
+	private static final class Child extends Box.Filler {
+
+		private static final long serialVersionUID = 2957126604881187436L;
+
+		/** Set when child was validated and not invalidated since. */
+		private boolean valid;
+
+		/**
+		 * Constructor.
+		 * @param min minimum size
+		 * @param pref preferred size
+		 * @param max maximum size
+		 */
+		Child(Dimension min, Dimension pref, Dimension max) {
+			super(min, pref, max);
+		}
+
+		@Override
+		public void invalidate() {
+			valid = false;
+			super.invalidate();
+		}
+
+		@Override
+		public void validate() {
+			super.validate();
+			valid = true;
+		}
+
+		@Override
+		public boolean isValid() {
+			return valid;
+		}
+	}
+}
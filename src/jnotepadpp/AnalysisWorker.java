@@ -0,0 +1,57 @@
+package jnotepadpp;
+
+import jnotepadpp.analysis.TextAnalysis;
+import jnotepadpp.analysis.TextAnalyzer;
+import jnotepadpp.document.TextSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.swing.SwingWorker;
+
+/**
+ * Analyzes file or snapshot of a tab on background thread. Analysis itself runs in
+ * parallel on common fork/join pool, this worker only waits for it so the event
+ * dispatch thread is never blocked.
+ * @author Dario Vidas
+ */
+class AnalysisWorker extends SwingWorker<TextAnalysis, Void> {
+
+	/** Number of most frequent words in result. */
+	static final int TOP_WORDS = 10;
+
+	/** File to analyze, <code>null</code> if snapshot is analyzed. */
+	private final File file;
+
+	/** Snapshot to analyze, <code>null</code> if file is analyzed. */
+	private final TextSnapshot text;
+
+	/**
+	 * Constructor for analysis of a file that is not opened.
+	 * @param file file
+	 */
+	AnalysisWorker(File file) {
+		super();
+		this.file = file;
+		this.text = null;
+	}
+
+	/**
+	 * Constructor for analysis of an opened document.
+	 * @param text snapshot of document
+	 */
+	AnalysisWorker(TextSnapshot text) {
+		super();
+		this.file = null;
+		this.text = text;
+	}
+
+	@Override
+	protected TextAnalysis doInBackground() throws IOException {
+		TextAnalyzer analyzer = new TextAnalyzer(TOP_WORDS);
+		if (file != null) {
+			return analyzer.analyze(file.toPath());
+		}
+		return analyzer.analyze(text);
+	}
+}
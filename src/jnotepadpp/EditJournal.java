@@ -0,0 +1,732 @@
+package jnotepadpp;
+
+import jnotepadpp.document.ReusableSegment;
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextSnapshot;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Segment;
+
+/**
+ * Write-ahead journal of edits of a dirty tab, so unsaved text survives a crash.
+ * Edits are only queued on event dispatch thread, as snapshot slices which do not
+ * copy text. One background thread shared by all tabs appends queued edits to the
+ * journal file every {@value #COMMIT_INTERVAL} milliseconds and forces them to disk
+ * with one <code>force</code> call for all of them. Journal starts from the saved
+ * file, or from a snapshot of whole text, and when it grows over
+ * {@value #COMPACT_SIZE} bytes and over twice the size of text it is rewritten as a
+ * snapshot. Every record has its CRC-32, so a record torn by a crash is recognized
+ * and journal is replayed only up to it on next start.
+ * @author Dario Vidas
+ */
+final class EditJournal implements DocumentListener {
+
+	/** Directory of journal files. */
+	private static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".jnotepadpp", "journal");
+
+	/** Extension of journal files. */
+	private static final String EXTENSION = ".journal";
+
+	/** First int of journal file. */
+	private static final int MAGIC = 0x4A4E4A31;
+
+	/** Record of file that journal starts from. */
+	private static final byte BASE_FILE = 1;
+
+	/** Record of whole text. */
+	private static final byte SNAPSHOT = 2;
+
+	/** Record of insert. */
+	private static final byte INSERT = 3;
+
+	/** Record of remove. */
+	private static final byte REMOVE = 4;
+
+	/** Milliseconds between two commits. */
+	private static final long COMMIT_INTERVAL = 1000;
+
+	/** Journal longer than this can be compacted. */
+	private static final long COMPACT_SIZE = 4 * 1024 * 1024;
+
+	/** Size of write buffer. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Thread which writes all journals. */
+	private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "journal");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** Counter used in names of journal files. */
+	private static int journalCount;
+
+	/** Journal file. */
+	private final Path path;
+
+	/** Guards queued edits and fields which tell writer how to write them. */
+	private final Object lock = new Object();
+
+	/** Edits not written yet. */
+	private final List<Edit> queue = new ArrayList<>();
+
+	/** Text after the last queued edit. */
+	private TextSnapshot latest;
+
+	/** File of tab, <code>null</code> for new tab. */
+	private File target;
+
+	/** Set if journal is to be rewritten from <code>latest</code>. */
+	private boolean rewrite;
+
+	/** Size of file that journal starts from. */
+	private final long baseSize;
+
+	/** Modification time of file that journal starts from. */
+	private final long baseTime;
+
+	/** Length of valid part of existing journal file, -1 if file is new. */
+	private long resumeAt;
+
+	/** Journal file channel, used only on writer thread. */
+	private FileChannel channel;
+
+	/** Number of bytes in journal file, used only on writer thread. */
+	private long written;
+
+	/** Write buffer, used only on writer thread. */
+	private ByteBuffer buffer;
+
+	/** Document whose edits are queued, <code>null</code> if journal is detached. */
+	private TextDocument document;
+
+	/** Scheduled commits. */
+	private final ScheduledFuture<?> task;
+
+	/**
+	 * Constructor.
+	 * @param path journal file
+	 * @param target file of tab, <code>null</code> for new tab
+	 * @param baseSize size of file that journal starts from
+	 * @param baseTime modification time of file that journal starts from
+	 * @param resumeAt length of valid part of existing journal file, -1 if it is new
+	 */
+	private EditJournal(Path path, File target, long baseSize, long baseTime, long resumeAt) {
+		this.path = path;
+		this.target = target;
+		this.baseSize = baseSize;
+		this.baseTime = baseTime;
+		this.resumeAt = resumeAt;
+		task = WRITER.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				commit();
+			}
+		}, COMMIT_INTERVAL, COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts journal of edits made to text of saved file.
+	 * @param file saved file, text of tab must be its content
+	 * @param size size of file when it was loaded or saved
+	 * @param time modification time of file when it was loaded or saved
+	 * @return journal
+	 */
+	static EditJournal fromFile(File file, long size, long time) {
+		return new EditJournal(newPath(), file, size, time, -1);
+	}
+
+	/**
+	 * Starts journal of edits made to given text.
+	 * @param file file of tab, <code>null</code> for new tab
+	 * @param text current text of tab
+	 * @return journal
+	 */
+	static EditJournal fromSnapshot(File file, TextSnapshot text) {
+		EditJournal journal = new EditJournal(newPath(), file, 0, 0, -1);
+		journal.rebase(file, text);
+		return journal;
+	}
+
+	/**
+	 * Returns path of a new journal file.
+	 * @return path
+	 */
+	private static synchronized Path newPath() {
+		journalCount++;
+		return DIRECTORY.resolve(System.currentTimeMillis() + "-" + journalCount + EXTENSION);
+	}
+
+	/**
+	 * Starts queuing edits of document.
+	 * @param newDocument document, must have the text journal ends with
+	 */
+	void attach(TextDocument newDocument) {
+		detach();
+		document = newDocument;
+		document.addDocumentListener(this);
+	}
+
+	/**
+	 * Stops queuing edits. Queued edits are still written.
+	 */
+	void detach() {
+		if (document != null) {
+			document.removeDocumentListener(this);
+			document = null;
+		}
+	}
+
+	/**
+	 * Queues edit which happened before journal was attached. Journal must already be
+	 * attached to document of the edit, text of the edit is read from it.
+	 * @param e document event
+	 */
+	void record(DocumentEvent e) {
+		if (e.getType() == DocumentEvent.EventType.INSERT) {
+			insertUpdate(e);
+		} else if (e.getType() == DocumentEvent.EventType.REMOVE) {
+			removeUpdate(e);
+		}
+	}
+
+	/**
+	 * Makes journal start from given text, for example after text was saved while
+	 * it was being edited. Queued edits are dropped, text already has them.
+	 * @param file file of tab, <code>null</code> for new tab
+	 * @param text current text of tab
+	 */
+	void rebase(File file, TextSnapshot text) {
+		synchronized (lock) {
+			queue.clear();
+			latest = text;
+			target = file;
+			rewrite = true;
+		}
+	}
+
+	/**
+	 * Stops journal after queued edits are written. Journal file is kept, so its
+	 * edits are recovered on next start unless journal is deleted meanwhile.
+	 */
+	void close() {
+		detach();
+		task.cancel(false);
+		WRITER.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				commit();
+				closeChannel();
+			}
+		});
+	}
+
+	/**
+	 * Stops journal and deletes journal file, after edits that are being written.
+	 */
+	void delete() {
+		detach();
+		task.cancel(false);
+		WRITER.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					closeChannel();
+					Files.deleteIfExists(path);
+				} catch (IOException ignorable) {
+					//stale journal is replayed on next start, nothing else can be done
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits until writer thread finishes closing and deleting journals. Called before
+	 * program exits.
+	 */
+	static void shutdown() {
+		WRITER.shutdown();
+		try {
+			WRITER.awaitTermination(COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ignorable) {
+			//exiting anyway
+		}
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		TextSnapshot text = document.snapshot();
+		queue(new Edit(INSERT, e.getOffset(), e.getLength(), text.slice(e.getOffset(), e.getLength())), text);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		queue(new Edit(REMOVE, e.getOffset(), e.getLength(), null), document.snapshot());
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		//attributes are not used
+	}
+
+	/**
+	 * Queues edit.
+	 * @param edit edit
+	 * @param text text after edit
+	 */
+	private void queue(Edit edit, TextSnapshot text) {
+		synchronized (lock) {
+			queue.add(edit);
+			latest = text;
+		}
+	}
+
+	/**
+	 * Writes queued edits and forces them to disk. Journal is rewritten from text if
+	 * it was rebased or if it got too long. Called on writer thread.
+	 */
+	private void commit() {
+		List<Edit> edits;
+		TextSnapshot text;
+		File file;
+		boolean rebased;
+		synchronized (lock) {
+			if (queue.isEmpty() && !rewrite) {
+				return;
+			}
+			edits = new ArrayList<>(queue);
+			queue.clear();
+			text = latest;
+			file = target;
+			rebased = rewrite;
+			rewrite = false;
+		}
+
+		try {
+			if (buffer == null) {
+				buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			}
+			if (rebased || channel != null && written > COMPACT_SIZE && written > 4L * text.length()) {
+				rewrite(file, text);
+				return;
+			}
+			if (channel == null) {
+				open(file);
+			}
+			for (Edit edit : edits) {
+				writeRecord(edit.type, edit.offset, edit.length, edit.text);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			closeChannel();		//journal is written again from text on next commit
+			synchronized (lock) {
+				rewrite = true;
+			}
+		}
+	}
+
+	/**
+	 * Opens journal file. New file gets header which starts from the saved file,
+	 * existing file is cut after its valid part.
+	 * @param file file of tab
+	 * @throws IOException if opening fails
+	 */
+	private void open(File file) throws IOException {
+		if (resumeAt >= 0) {
+			channel = FileChannel.open(path, StandardOpenOption.WRITE);
+			channel.truncate(resumeAt);
+			channel.position(resumeAt);
+			written = resumeAt;
+			resumeAt = -1;
+			return;
+		}
+		PrivateFiles.createDirectories(DIRECTORY);
+		channel = PrivateFiles.create(path);
+		written = 0;
+		writeHeader(file);
+		buffer.put(BASE_FILE).putLong(baseSize).putLong(baseTime);
+		endRecord(new CRC32());
+	}
+
+	/**
+	 * Writes journal again as a snapshot of text, into a temporary file which then
+	 * replaces the journal.
+	 * @param file file of tab
+	 * @param text whole text
+	 * @throws IOException if writing fails
+	 */
+	private void rewrite(File file, TextSnapshot text) throws IOException {
+		closeChannel();
+		PrivateFiles.createDirectories(DIRECTORY);
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		channel = PrivateFiles.create(temp);
+		written = 0;
+		resumeAt = -1;
+		writeHeader(file);
+		writeRecord(SNAPSHOT, 0, text.length(), text);
+		channel.force(false);
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes journal header: magic number and path of file of tab.
+	 * @param file file of tab, <code>null</code> for new tab
+	 * @throws IOException if writing fails
+	 */
+	private void writeHeader(File file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeUTF(file == null ? "" : file.getAbsolutePath());
+		out.flush();
+		buffer.put(bytes.toByteArray());
+		drain(null);
+	}
+
+	/**
+	 * Writes record with its CRC-32.
+	 * @param type record type
+	 * @param offset offset of edit
+	 * @param length number of chars
+	 * @param text text of record, <code>null</code> if it has none
+	 * @throws IOException if writing fails
+	 */
+	private void writeRecord(byte type, int offset, int length, TextSnapshot text) throws IOException {
+		CRC32 crc = new CRC32();
+		buffer.put(type).putInt(offset).putInt(length);
+		if (text != null) {
+			Segment txt = new ReusableSegment();
+			for (int pos = 0; pos < length; pos += txt.count) {
+				text.getChars(pos, length - pos, txt);
+				for (int i = 0; i < txt.count; i++) {
+					if (buffer.remaining() < 2) {
+						drain(crc);
+					}
+					buffer.putChar(txt.array[txt.offset + i]);
+				}
+			}
+		}
+		endRecord(crc);
+	}
+
+	/**
+	 * Writes rest of record and its CRC-32.
+	 * @param crc CRC-32 of bytes of record that were already written
+	 * @throws IOException if writing fails
+	 */
+	private void endRecord(CRC32 crc) throws IOException {
+		drain(crc);
+		buffer.putInt((int) crc.getValue());
+		drain(null);
+	}
+
+	/**
+	 * Writes buffer to journal file.
+	 * @param crc CRC-32 updated with written bytes, can be <code>null</code>
+	 * @throws IOException if writing fails
+	 */
+	private void drain(CRC32 crc) throws IOException {
+		buffer.flip();
+		if (crc != null) {
+			crc.update(buffer.duplicate());
+		}
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Closes journal file channel. Called on writer thread.
+	 */
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ignorable) {
+				//nothing was lost, everything is forced after writing
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Replays journals left by a previous run which did not exit normally. Journals
+	 * which can not be replayed are deleted.
+	 * @return recovered texts
+	 */
+	static List<Recovery> recover() {
+		List<Recovery> recovered = new ArrayList<>();
+		if (!Files.isDirectory(DIRECTORY)) {
+			return recovered;
+		}
+		try (DirectoryStream<Path> journals = Files.newDirectoryStream(DIRECTORY, "*" + EXTENSION)) {
+			for (Path journal : journals) {
+				Recovery recovery = null;
+				try {
+					recovery = replay(journal);
+				} catch (IOException e) {
+					recovery = null;
+				}
+				if (recovery != null) {
+					recovered.add(recovery);
+				} else {
+					Files.deleteIfExists(journal);
+				}
+			}
+		} catch (IOException e) {
+			//journals that were not read stay for next start
+		}
+		return recovered;
+	}
+
+	/**
+	 * Replays journal up to the first torn or invalid record.
+	 * @param journal journal file
+	 * @return recovered text, <code>null</code> if journal has no edits or its
+	 *         saved file has changed
+	 * @throws IOException if journal can not be read
+	 */
+	private static Recovery replay(Path journal) throws IOException {
+		CRC32 crc = new CRC32();
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(journal))) {
+			DataInputStream in = new DataInputStream(new CheckedInputStream(stream, crc));
+			if (in.readInt() != MAGIC) {
+				return null;
+			}
+			String name = in.readUTF();
+			File file = name.isEmpty() ? null : new File(name);
+			long valid = 4 + 2 + name.getBytes(StandardCharsets.UTF_8).length;
+
+			TextDocument document = null;
+			boolean edited = false;
+			while (true) {
+				crc.reset();
+				long size;
+				try {
+					byte type = in.readByte();
+					if (type == BASE_FILE) {
+						long baseSize = in.readLong();
+						long baseTime = in.readLong();
+						if (document != null || !checkRecord(in, crc)) {
+							break;
+						}
+						if (file == null || file.length() != baseSize || file.lastModified() != baseTime) {
+							return null;		//edits were made to text which is no longer there
+						}
+						document = read(file);
+						size = 1 + 8 + 8 + 4;
+					} else {
+						int offset = in.readInt();
+						int length = in.readInt();
+						String text = type == INSERT || type == SNAPSHOT ? readChars(in, length) : null;
+						if (!checkRecord(in, crc)) {
+							break;
+						}
+						if (type == SNAPSHOT) {
+							document = new TextDocument();
+							document.insertString(0, text, null);
+						} else if (document == null || offset < 0 || offset > document.getLength()) {
+							break;
+						} else if (type == INSERT) {
+							document.insertString(offset, text, null);
+						} else if (type == REMOVE && offset + length <= document.getLength()) {
+							document.remove(offset, length);
+						} else {
+							break;
+						}
+						edited = true;
+						size = 1 + 4 + 4 + (text == null ? 0 : 2L * length) + 4;
+					}
+				} catch (EOFException e) {
+					break;		//last record is torn
+				} catch (BadLocationException e) {
+					break;
+				}
+				valid += size;
+			}
+
+			if (document == null || !edited) {
+				return null;
+			}
+			return new Recovery(file, document, new EditJournal(journal, file, 0, 0, valid));
+		}
+	}
+
+	/**
+	 * Reads CRC-32 at the end of record and checks it.
+	 * @param in journal input
+	 * @param crc CRC-32 of record bytes read so far
+	 * @return <code>true</code> if record is valid
+	 * @throws IOException if reading fails
+	 */
+	private static boolean checkRecord(DataInputStream in, CRC32 crc) throws IOException {
+		int expected = (int) crc.getValue();
+		return in.readInt() == expected;
+	}
+
+	/**
+	 * Reads UTF-16 chars of record.
+	 * @param in journal input
+	 * @param length number of chars
+	 * @return chars
+	 * @throws IOException if reading fails
+	 */
+	private static String readChars(DataInputStream in, int length) throws IOException {
+		if (length < 0) {
+			throw new EOFException("Invalid length");
+		}
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = in.readChar();
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Reads saved file that journal starts from. Big files are memory-mapped, like
+	 * when they are opened.
+	 * @param file file
+	 * @return document with file content
+	 * @throws IOException if file can not be read
+	 */
+	private static TextDocument read(File file) throws IOException {
+		if (file.length() >= FileLoader.MAPPING_THRESHOLD) {
+			return TextDocument.map(file, StandardCharsets.UTF_8, null);
+		}
+		TextDocument document = new TextDocument();
+		try {
+			document.insertString(0, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), null);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+		return document;
+	}
+
+	/**
+	 * Queued edit.
+	 * @author Dario Vidas
+	 */
+	private static final class Edit {
+
+		/** Record type. */
+		final byte type;
+
+		/** Offset of edit. */
+		final int offset;
+
+		/** Number of chars. */
+		final int length;
+
+		/** Inserted text, <code>null</code> for remove. */
+		final TextSnapshot text;
+
+		/**
+		 * Constructor.
+		 * @param type record type
+		 * @param offset offset of edit
+		 * @param length number of chars
+		 * @param text inserted text, <code>null</code> for remove
+		 */
+		Edit(byte type, int offset, int length, TextSnapshot text) {
+			this.type = type;
+			this.offset = offset;
+			this.length = length;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Text recovered from journal.
+	 * @author Dario Vidas
+	 */
+	static final class Recovery {
+
+		/** File of tab, <code>null</code> for new tab. */
+		private final File file;
+
+		/** Recovered text. */
+		private final TextDocument document;
+
+		/** Journal which goes on after recovered text. */
+		private final EditJournal journal;
+
+		/**
+		 * Constructor.
+		 * @param file file of tab, <code>null</code> for new tab
+		 * @param document recovered text
+		 * @param journal journal which goes on after recovered text
+		 */
+		Recovery(File file, TextDocument document, EditJournal journal) {
+			this.file = file;
+			this.document = document;
+			this.journal = journal;
+		}
+
+		/**
+		 * Returns file of tab.
+		 * @return file, <code>null</code> for new tab
+		 */
+		File getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns recovered text.
+		 * @return document
+		 */
+		TextDocument getDocument() {
+			return document;
+		}
+
+		/**
+		 * Returns journal which goes on after recovered text.
+		 * @return journal
+		 */
+		EditJournal getJournal() {
+			return journal;
+		}
+	}
+}
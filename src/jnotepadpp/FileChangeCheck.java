@@ -0,0 +1,63 @@
+package jnotepadpp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import javax.swing.SwingWorker;
+
+/**
+ * Checks on background thread if file content differs from the content that was
+ * loaded or saved. File of different size is changed. File of the same size is read
+ * only to compute its CRC-32, which is compared with checksum of loaded or saved
+ * content; without that checksum file is taken as changed.
+ * @author Dario Vidas
+ */
+class FileChangeCheck extends SwingWorker<Boolean, Void> {
+
+	/** Number of bytes read at once. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** Checked file. */
+	private final File file;
+
+	/** Size of loaded or saved content. */
+	private final long size;
+
+	/** CRC-32 of loaded or saved content, -1 if not known. */
+	private final long checksum;
+
+	/**
+	 * Constructor.
+	 * @param file checked file
+	 * @param size size of loaded or saved content
+	 * @param checksum CRC-32 of loaded or saved content, -1 if not known
+	 */
+	FileChangeCheck(File file, long size, long checksum) {
+		super();
+		this.file = file;
+		this.size = size;
+		this.checksum = checksum;
+	}
+
+	@Override
+	protected Boolean doInBackground() throws IOException {
+		if (file.length() != size || checksum < 0) {
+			return true;
+		}
+
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (channel.read(buffer) > 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue() != checksum;
+	}
+}
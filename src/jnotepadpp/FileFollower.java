@@ -0,0 +1,219 @@
+package jnotepadpp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Follows a growing file, like <code>tail -f</code>. File is polled on a background
+ * thread shared by all followed files, and only bytes written after the last read
+ * offset are read, with positional reads. Bytes read in one poll are decoded into
+ * one string which listener gets on event dispatch thread, so it can append them
+ * with a single insert. If file gets shorter than the read offset (truncated) or is
+ * replaced by another file (rotated), it is read again from the start.
+ * <p>
+ * Follower is started and stopped on event dispatch thread. Read offset and decoder
+ * are used only by poller thread, so polling takes no lock and a slow read never
+ * blocks <code>stop()</code>.
+ * </p>
+ * @author Dario Vidas
+ */
+class FileFollower {
+
+	/** Milliseconds between two polls. */
+	private static final long POLL_INTERVAL = 500;
+
+	/** Number of bytes read at once. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** Most bytes read in one poll, rest is read in next poll. */
+	private static final int MAX_READ = 4 * 1024 * 1024;
+
+	/** Thread which polls all followed files. */
+	private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "follow");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** Followed file. */
+	private final Path file;
+
+	/** Gets appended text. */
+	private final Listener listener;
+
+	/** Decoder of file content, keeps bytes of a char split between two reads. */
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/** Bytes read but not decoded yet. */
+	private final ByteBuffer in = ByteBuffer.allocate(CHUNK_SIZE);
+
+	/** Decoded chars. */
+	private final CharBuffer out = CharBuffer.allocate(CHUNK_SIZE);
+
+	/** Offset in file of next byte to read. */
+	private long position;
+
+	/** Key of followed file, changes when file is rotated; <code>null</code> if unknown. */
+	private Object fileKey;
+
+	/** Scheduled polling, <code>null</code> if file is not followed. */
+	private ScheduledFuture<?> task;
+
+	/** Set when following is stopped, poll that is running then delivers no more text. */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor.
+	 * @param file followed file
+	 * @param position number of bytes already read
+	 * @param listener listener that gets appended text
+	 */
+	FileFollower(Path file, long position, Listener listener) {
+		this.file = file;
+		this.position = position;
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts following file.
+	 */
+	void start() {
+		if (task != null) {
+			return;
+		}
+		try {
+			fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+		} catch (IOException e) {
+			fileKey = null;
+		}
+		task = POLLER.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				poll();
+			}
+		}, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops following file. Text read in the last poll can still be delivered.
+	 */
+	void stop() {
+		stopped = true;
+		if (task != null) {
+			task.cancel(false);
+			task = null;
+		}
+	}
+
+	/**
+	 * Reads bytes appended since last poll and passes them to listener. Called on
+	 * poller thread.
+	 */
+	private void poll() {
+		if (stopped) {
+			return;
+		}
+
+		boolean reset;
+		StringBuilder text = new StringBuilder();
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			Object key = attributes.fileKey();
+			long size = attributes.size();
+			reset = size < position || key != null && !key.equals(fileKey);
+			if (reset) {
+				fileKey = key;
+				position = 0;
+				decoder.reset();
+				in.clear();
+			} else if (size == position) {
+				return;
+			}
+			read(Math.min(size, position + MAX_READ), text);
+		} catch (NoSuchFileException e) {
+			return;		//rotated away, new file is read when it appears
+		} catch (IOException e) {
+			return;		//file can be locked for a moment, tried again in next poll
+		}
+		if (stopped) {
+			return;
+		}
+
+		final boolean truncated = reset;
+		final String appended = text.toString();
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				listener.appended(FileFollower.this, appended, truncated);
+			}
+		});
+	}
+
+	/**
+	 * Reads and decodes bytes from current position.
+	 * @param end offset where reading stops
+	 * @param text builder that gets decoded text
+	 * @throws IOException if reading fails
+	 */
+	private void read(long end, StringBuilder text) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (position < end) {
+				in.limit((int) Math.min(in.capacity(), in.position() + end - position));
+				int n = channel.read(in, position);
+				if (n <= 0) {
+					break;
+				}
+				position += n;
+
+				in.flip();
+				decoder.decode(in, out, false);
+				in.compact();
+				out.flip();
+				text.append(out);
+				out.clear();
+			}
+		}
+	}
+
+	/**
+	 * Listener of followed file.
+	 * @author Dario Vidas
+	 */
+	interface Listener {
+
+		/**
+		 * Called on event dispatch thread with text appended to file.
+		 * @param source follower that read the text
+		 * @param text appended text, can be empty
+		 * @param truncated <code>true</code> if file was truncated or rotated and
+		 *        text is read from its start
+		 */
+		void appended(FileFollower source, String text, boolean truncated);
+	}
+}
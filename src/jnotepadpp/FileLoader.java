@@ -0,0 +1,192 @@
+package jnotepadpp;
+
+import jnotepadpp.document.MappedTextSource;
+import jnotepadpp.document.TextDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.swing.SwingWorker;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Loads file content on background thread. Small files are decoded in chunks which
+ * are appended to given document as soon as they are decoded. Big files are
+ * memory-mapped, unless mapping is turned off, and the resulting document is
+ * returned as worker result. Loading progress (0-100) is reported through
+ * <code>progress</code> property and loading is stopped with <code>cancel(true)</code>.
+ * @author Dario Vidas
+ */
+class FileLoader extends SwingWorker<TextDocument, String> {
+
+	/** Files of this size or bigger are memory-mapped instead of read. */
+	static final long MAPPING_THRESHOLD = 16L * 1024 * 1024;
+
+	/** Number of bytes read at once. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** File to load. */
+	private final File file;
+
+	/** Document that receives chunks of small files. */
+	private final Document document;
+
+	/** Set if big file is mapped, otherwise it is read like a small one. */
+	private final boolean mappable;
+
+	/** Mapped document, kept so it can be closed if loading is cancelled. */
+	private volatile TextDocument mapped;
+
+	/** Number of bytes loaded. */
+	private volatile long loadedBytes;
+
+	/** CRC-32 of loaded bytes, -1 if file was mapped. */
+	private volatile long checksum = -1;
+
+	/**
+	 * Constructor.
+	 * @param file file to load
+	 * @param document document that receives content of small files
+	 */
+	FileLoader(File file, Document document) {
+		this(file, document, true);
+	}
+
+	/**
+	 * Constructor.
+	 * @param file file to load
+	 * @param document document that receives content of small files
+	 * @param mappable <code>false</code> if file is read even if it is big, because
+	 *        it is deleted when loaded
+	 */
+	FileLoader(File file, Document document, boolean mappable) {
+		super();
+		this.file = file;
+		this.document = document;
+		this.mappable = mappable;
+	}
+
+	@Override
+	protected TextDocument doInBackground() throws IOException {
+		if (mappable && file.length() >= MAPPING_THRESHOLD) {
+			mapped = TextDocument.map(file, StandardCharsets.UTF_8, new MappedTextSource.ScanListener() {
+
+				@Override
+				public void pageScanned(CharBuffer chars, long bytesRead, long totalBytes) {
+					loadedBytes = totalBytes;
+					setProgress((int) (bytesRead * 100 / totalBytes));
+				}
+			});
+			return mapped;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			ByteBuffer in = ByteBuffer.allocate(CHUNK_SIZE);
+			CharBuffer out = CharBuffer.allocate(CHUNK_SIZE);
+			long size = Math.max(channel.size(), 1);
+			long read = 0;
+			CRC32 crc = new CRC32();
+
+			boolean eof = false;
+			while (!eof && !isCancelled()) {
+				int n = channel.read(in);
+				eof = n < 0;
+				read += Math.max(n, 0);
+				loadedBytes = read;
+				if (n > 0) {
+					crc.update(in.array(), in.position() - n, n);
+				}
+
+				in.flip();
+				decoder.decode(in, out, eof);
+				if (eof) {
+					decoder.flush(out);
+				}
+				in.compact();
+
+				out.flip();
+				if (out.hasRemaining()) {
+					chunk(out.toString());
+				}
+				out.clear();
+				setProgress((int) (Math.min(read, size) * 100 / size));
+			}
+			checksum = crc.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Passes decoded chunk on. Chunk is published, so it is appended to document on
+	 * EDT by <code>process</code>.
+	 * @param chunk decoded chunk
+	 */
+	void chunk(String chunk) {
+		publish(chunk);
+	}
+
+	/**
+	 * Returns number of bytes loaded, file can be longer if it grew while loading.
+	 * @return number of loaded bytes
+	 */
+	long getLoadedBytes() {
+		return loadedBytes;
+	}
+
+	/**
+	 * Returns CRC-32 of loaded bytes. It is not known for mapped files, they are not
+	 * read while loading.
+	 * @return checksum, -1 if not known
+	 */
+	long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Appends decoded chunks to the end of document.
+	 * @param chunks decoded chunks
+	 */
+	@Override
+	protected void process(List<String> chunks) {
+		if (isCancelled()) {
+			return;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (String chunk : chunks) {
+			builder.append(chunk);
+		}
+		try {
+			document.insertString(document.getLength(), builder.toString(), null);
+		} catch (BadLocationException ignorable) {
+			//end of document is always valid
+		}
+	}
+
+	/**
+	 * Closes mapped document if loading was cancelled after it was created.
+	 */
+	@Override
+	protected void done() {
+		if (isCancelled() && mapped != null) {
+			try {
+				mapped.close();
+			} catch (IOException ignorable) {
+				//tab is gone, nothing to report
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package jnotepadpp;
+
+import jnotepadpp.document.ReusableSegment;
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import javax.swing.SwingWorker;
+import javax.swing.text.Segment;
+
+/**
+ * Saves text on background thread. Text is read in segments, encoded straight into
+ * a temporary file next to the target and the temporary file is then renamed over
+ * the target, so target is either old or completely written new file. Whole text is
+ * never copied into one string. When the target is mapped by the document being
+ * saved, document text is first read into memory, because a mapped file can not be
+ * replaced on every platform.
+ * @author Dario Vidas
+ */
+class FileSaver extends SwingWorker<Void, Void> {
+
+	/** Number of chars encoded at once. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** Milliseconds to wait for released mapping before the target is replaced again. */
+	private static final int UNMAP_WAIT = 200;
+
+	/** Text to save. */
+	private final TextSnapshot text;
+
+	/** Target file. */
+	private final File file;
+
+	/** Document which maps the target, <code>null</code> if none. */
+	private final TextDocument mapping;
+
+	/** CRC-32 of written bytes. */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Constructor.
+	 * @param text text to save, must not change while saving
+	 * @param file target file
+	 */
+	FileSaver(TextSnapshot text, File file) {
+		this(text, file, null);
+	}
+
+	/**
+	 * Constructor for saving over file mapped by the document.
+	 * @param text text to save, must not change while saving
+	 * @param file target file
+	 * @param mapping document which maps the target, is unmapped before the target is
+	 * replaced, <code>null</code> if none
+	 */
+	FileSaver(TextSnapshot text, File file, TextDocument mapping) {
+		super();
+		this.text = text;
+		this.file = file;
+		this.mapping = mapping;
+	}
+
+	/**
+	 * Returns target file.
+	 * @return target file
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns CRC-32 of saved file, valid when saving is done.
+	 * @return checksum
+	 */
+	long getChecksum() {
+		return crc.getValue();
+	}
+
+	@Override
+	protected Void doInBackground() throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = target.resolveSibling("." + target.getFileName() + "." + System.nanoTime() + ".tmp");
+
+		if (mapping != null) {
+			mapping.unmap();
+		}
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				write(channel);
+				channel.force(true);
+			}
+			if (Files.exists(target)) {
+				copyPermissions(target, temp);
+			}
+			try {
+				replace(temp, target);
+			} catch (FileSystemException e) {
+				if (mapping == null) {
+					throw e;
+				}
+				//closed mapping is released only when garbage collected
+				System.gc();
+				try {
+					Thread.sleep(UNMAP_WAIT);
+				} catch (InterruptedException ie) {
+					throw new InterruptedIOException("Saving interrupted");
+				}
+				replace(temp, target);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return null;
+	}
+
+	/**
+	 * Renames temporary file over the target, atomically where supported.
+	 * @param temp temporary file
+	 * @param target target file
+	 * @throws IOException if renaming fails
+	 */
+	private static void replace(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Encodes text into channel.
+	 * @param channel channel
+	 * @throws IOException if writing fails
+	 */
+	private void write(FileChannel channel) throws IOException {
+		CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer out = ByteBuffer.allocate(CHUNK_SIZE * 2);
+		Segment txt = new ReusableSegment();
+
+		int length = text.length();
+		int offset = 0;
+		while (offset < length) {
+			text.getChars(offset, Math.min(CHUNK_SIZE, length - offset), txt);
+			if (txt.count > 1 && Character.isHighSurrogate(txt.array[txt.offset + txt.count - 1])
+					&& offset + txt.count < length) {
+				txt.count--;		//keep surrogate pair in the same chunk
+			} else if (txt.count == 1 && Character.isHighSurrogate(txt.array[txt.offset])
+					&& offset + 1 < length) {
+				txt.setPartialReturn(false);
+				text.getChars(offset, 2, txt);
+				txt.setPartialReturn(true);
+			}
+			offset += txt.count;
+
+			CharBuffer in = CharBuffer.wrap(txt.array, txt.offset, txt.count);
+			while (true) {
+				CoderResult result = encoder.encode(in, out, offset == length);
+				if (!result.isOverflow()) {
+					break;
+				}
+				drain(out, channel);
+			}
+		}
+
+		encoder.encode(CharBuffer.allocate(0), out, true);
+		while (encoder.flush(out).isOverflow()) {
+			drain(out, channel);
+		}
+		drain(out, channel);
+	}
+
+	/**
+	 * Writes buffer content into channel, adds it to checksum and clears buffer.
+	 * @param out buffer
+	 * @param channel channel
+	 * @throws IOException if writing fails
+	 */
+	private void drain(ByteBuffer out, FileChannel channel) throws IOException {
+		out.flip();
+		crc.update(out.array(), 0, out.limit());
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Copies POSIX permissions of existing file, temporary file would otherwise
+	 * change them when it replaces the target.
+	 * @param from existing file
+	 * @param to temporary file
+	 */
+	private static void copyPermissions(Path from, Path to) {
+		try {
+			Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+		} catch (UnsupportedOperationException | IOException ignorable) {
+			//not a POSIX file system, default permissions are used
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package jnotepadpp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Notices when files of open tabs are changed by other programs. One
+ * <code>WatchService</code> thread watches parent directories of all watched files,
+ * every directory is registered only once no matter how many of its files are open.
+ * Events are debounced: listener is notified once a file had no events for
+ * {@value #DEBOUNCE} milliseconds, so a program writing a file in many small writes
+ * causes only one notification. Class is singleton.
+ * @author Dario Vidas
+ */
+final class FileWatcher {
+
+	/** Milliseconds without events after which listeners are notified. */
+	private static final long DEBOUNCE = 300;
+
+	/** Static instance. */
+	private static FileWatcher instance = new FileWatcher();
+
+	/** Watch service, <code>null</code> if file system does not support watching. */
+	private final WatchService service;
+
+	/** Keys of watched directories. */
+	private final Map<Path, WatchKey> keys = new HashMap<>();
+
+	/** Listeners of watched files. */
+	private final Map<Path, List<Listener>> listeners = new HashMap<>();
+
+	/** Thread that waits for events, started when first file is watched. */
+	private Thread thread;
+
+	/**
+	 * Private constructor used for singleton class.
+	 */
+	private FileWatcher() {
+		WatchService watchService;
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException | UnsupportedOperationException e) {
+			watchService = null;		//files are simply not watched
+		}
+		service = watchService;
+	}
+
+	/**
+	 * Returns instance of this class.
+	 * @return instance
+	 */
+	static FileWatcher getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts watching file.
+	 * @param file watched file
+	 * @param listener listener notified on event dispatch thread when file changes
+	 */
+	synchronized void watch(File file, Listener listener) {
+		if (service == null) {
+			return;
+		}
+		Path path = file.toPath().toAbsolutePath().normalize();
+		Path dir = path.getParent();
+		if (dir == null) {
+			return;
+		}
+		if (!keys.containsKey(dir)) {
+			try {
+				keys.put(dir, dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY));
+			} catch (IOException e) {
+				return;		//directory can not be watched, file is not watched either
+			}
+		}
+
+		List<Listener> list = listeners.get(path);
+		if (list == null) {
+			list = new ArrayList<>(1);
+			listeners.put(path, list);
+		}
+		list.add(listener);
+
+		if (thread == null) {
+			thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					waitForEvents();
+				}
+			}, "file watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops watching file. Directory is no longer watched if none of its files is.
+	 * @param file watched file
+	 * @param listener listener given to {@link #watch(File, Listener)}
+	 */
+	synchronized void unwatch(File file, Listener listener) {
+		Path path = file.toPath().toAbsolutePath().normalize();
+		List<Listener> list = listeners.get(path);
+		if (list == null || !list.remove(listener)) {
+			return;
+		}
+		if (!list.isEmpty()) {
+			return;
+		}
+		listeners.remove(path);
+
+		Path dir = path.getParent();
+		for (Path watched : listeners.keySet()) {
+			if (watched.getParent().equals(dir)) {
+				return;
+			}
+		}
+		WatchKey key = keys.remove(dir);
+		if (key != null) {
+			key.cancel();
+		}
+	}
+
+	/**
+	 * Waits for events and notifies listeners of files which had no events for
+	 * {@value #DEBOUNCE} milliseconds. Runs on watcher thread.
+	 */
+	private void waitForEvents() {
+		Map<Path, Long> pending = new HashMap<>();		//last event time of changed files
+		while (true) {
+			WatchKey key;
+			try {
+				key = pending.isEmpty() ? service.take() : service.poll(DEBOUNCE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			long now = System.nanoTime();
+			if (key != null) {
+				Path dir = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						for (Path file : watchedFiles(dir)) {
+							pending.put(file, now);
+						}
+					} else {
+						Path file = dir.resolve((Path) event.context());
+						if (isWatched(file)) {
+							pending.put(file, now);
+						}
+					}
+				}
+				key.reset();
+			}
+
+			Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Path, Long> entry = it.next();
+				if (now - entry.getValue() >= TimeUnit.MILLISECONDS.toNanos(DEBOUNCE)) {
+					it.remove();
+					notifyListeners(entry.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if file is watched.
+	 * @param file file
+	 * @return <code>true</code> if it is, <code>false</code> otherwise
+	 */
+	private synchronized boolean isWatched(Path file) {
+		return listeners.containsKey(file);
+	}
+
+	/**
+	 * Returns watched files of directory.
+	 * @param dir directory
+	 * @return watched files
+	 */
+	private synchronized List<Path> watchedFiles(Path dir) {
+		List<Path> files = new ArrayList<>();
+		for (Path file : listeners.keySet()) {
+			if (file.getParent().equals(dir)) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Notifies listeners of file on event dispatch thread.
+	 * @param file changed file
+	 */
+	private synchronized void notifyListeners(Path file) {
+		List<Listener> list = listeners.get(file);
+		if (list == null) {
+			return;
+		}
+		for (final Listener listener : list) {
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					listener.fileChanged();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Listener of watched file.
+	 * @author Dario Vidas
+	 */
+	interface Listener {
+
+		/**
+		 * Called on event dispatch thread when file may have been changed. File may
+		 * also be unchanged, for example if it was only touched or saved by this
+		 * program.
+		 */
+		void fileChanged();
+	}
+}
@@ -0,0 +1,322 @@
+package jnotepadpp;
+
+import jnotepadpp.localization.ILocalizationProvider;
+import jnotepadpp.search.DocumentCharSequence;
+import jnotepadpp.search.Finder;
+
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+
+/**
+ * Find bar shown under the tabs. Text is searched while it is typed: first match
+ * after the caret is selected and all matches in the visible part of text area are
+ * highlighted. Only visible part is highlighted (again after every scroll), so
+ * highlighting costs the same on any file size. Text is searched through a
+ * <code>DocumentCharSequence</code>, so document is never copied.
+ * @author Dario Vidas
+ */
+class FindBar extends JPanel {
+
+	private static final long serialVersionUID = 2468135792468135790L;
+
+	/** Width of search field in columns. */
+	private static final int COLUMNS = 20;
+
+	/** Most matches highlighted at once. */
+	private static final int MAX_HIGHLIGHTS = 1000;
+
+	/** Color of match highlights. */
+	private static final Color HIGHLIGHT = new Color(255, 230, 120);
+
+	/** Search text field. */
+	private final JTextField field = new JTextField(COLUMNS);
+
+	/** Match case option. */
+	private final JCheckBox matchCase;
+
+	/** Regular expression option. */
+	private final JCheckBox regex;
+
+	/** Shows when nothing is found or expression is invalid. */
+	private final JLabel status = new JLabel();
+
+	/** Localization provider. */
+	private final ILocalizationProvider provider;
+
+	/** Painter of match highlights. */
+	private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(HIGHLIGHT);
+
+	/** Highlights added to text area. */
+	private final List<Object> highlights = new ArrayList<>();
+
+	/** Highlights visible matches when text area is scrolled. */
+	private final ChangeListener scrollListener = new ChangeListener() {
+
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			highlightVisible();
+		}
+	};
+
+	/** Searched text area, <code>null</code> if there is no tab. */
+	private JTextArea textArea;
+
+	/** Finder of current search, <code>null</code> if there is nothing to search. */
+	private Finder finder;
+
+	/** Offset where search started, search is repeated from it while typing. */
+	private int anchor;
+
+	/**
+	 * Constructor.
+	 * @param provider localization provider
+	 */
+	FindBar(ILocalizationProvider provider) {
+		super(new FlowLayout(FlowLayout.LEFT));
+		this.provider = provider;
+
+		matchCase = new JCheckBox(new LocalizableAction("matchCase", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				update();
+			}
+		});
+		regex = new JCheckBox(new LocalizableAction("regex", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				update();
+			}
+		});
+		LocalizableAction next = new LocalizableAction("findNext", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				findNext();
+			}
+		};
+		LocalizableAction close = new LocalizableAction("close", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				close();
+			}
+		};
+
+		field.getDocument().addDocumentListener(new DocumentListener() {
+
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				update();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				update();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				update();
+			}
+		});
+		field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "findNext");
+		field.getActionMap().put("findNext", next);
+		getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
+				KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "close");
+		getActionMap().put("close", close);
+
+		add(field);
+		add(matchCase);
+		add(regex);
+		add(new JButton(next));
+		add(new JButton(close));
+		add(status);
+		setVisible(false);
+	}
+
+	/**
+	 * Shows find bar for text area. Search starts at the start of current selection
+	 * and selected text becomes searched text.
+	 * @param area searched text area
+	 */
+	void open(JTextArea area) {
+		setTarget(area);
+		anchor = area.getSelectionStart();
+		String selected = area.getSelectedText();
+		if (selected != null && selected.indexOf('\n') < 0) {
+			field.setText(selected);
+		}
+		setVisible(true);
+		revalidate();
+		field.selectAll();
+		field.requestFocusInWindow();
+		update();
+	}
+
+	/**
+	 * Hides find bar and removes highlights.
+	 */
+	void close() {
+		setVisible(false);
+		revalidate();
+		clearHighlights();
+		if (textArea != null) {
+			textArea.requestFocusInWindow();
+		}
+	}
+
+	/**
+	 * Changes searched text area, called when selected tab changes. Highlights are
+	 * moved to the new text area if bar is shown.
+	 * @param area new text area, <code>null</code> if there is no tab
+	 */
+	void setTarget(JTextArea area) {
+		if (area == textArea) {
+			return;
+		}
+		clearHighlights();
+		if (textArea != null && textArea.getParent() instanceof JViewport) {
+			((JViewport) textArea.getParent()).removeChangeListener(scrollListener);
+		}
+		textArea = area;
+		if (textArea != null && textArea.getParent() instanceof JViewport) {
+			((JViewport) textArea.getParent()).addChangeListener(scrollListener);
+		}
+		highlightVisible();
+	}
+
+	/**
+	 * Finds next match after current selection and selects it. Search continues from
+	 * the start of text if there is no match after selection.
+	 * @return <code>true</code> if match was found
+	 */
+	boolean findNext() {
+		if (textArea == null || finder == null) {
+			return false;
+		}
+		boolean found = select(textArea.getSelectionEnd());
+		if (found) {
+			anchor = finder.start();
+		}
+		return found;
+	}
+
+	/**
+	 * Checks if there is a search that can be repeated.
+	 * @return <code>true</code> if find next can search
+	 */
+	boolean hasSearch() {
+		return finder != null;
+	}
+
+	/**
+	 * Creates finder for current options and searches from anchor.
+	 */
+	private void update() {
+		status.setText("");
+		finder = null;
+		String pattern = field.getText();
+		if (!pattern.isEmpty()) {
+			try {
+				finder = Finder.create(pattern, matchCase.isSelected(), regex.isSelected());
+			} catch (PatternSyntaxException e) {
+				status.setText(provider.getString("invalidPattern"));
+			}
+		}
+		if (textArea != null && finder != null) {
+			select(anchor);
+		}
+		highlightVisible();
+	}
+
+	/**
+	 * Finds first match at or after offset and selects it.
+	 * @param from search start
+	 * @return <code>true</code> if match was found
+	 */
+	private boolean select(int from) {
+		Document document = textArea.getDocument();
+		CharSequence text = new DocumentCharSequence(document);
+		if (!finder.findWrapping(text, Math.min(from, text.length()))) {
+			status.setText(provider.getString("notFound"));
+			return false;
+		}
+		status.setText("");
+		textArea.select(finder.start(), finder.end());
+		textArea.getCaret().setSelectionVisible(true);
+		return true;
+	}
+
+	/**
+	 * Highlights matches in visible part of text area.
+	 */
+	private void highlightVisible() {
+		clearHighlights();
+		if (textArea == null || finder == null || !isVisible()) {
+			return;
+		}
+
+		Rectangle visible = textArea.getVisibleRect();
+		int first = textArea.viewToModel2D(new Point(visible.x, visible.y));
+		int last = textArea.viewToModel2D(new Point(visible.x + visible.width, visible.y + visible.height));
+		Document document = textArea.getDocument();
+		int from = document.getDefaultRootElement().getElement(
+				document.getDefaultRootElement().getElementIndex(first)).getStartOffset();
+		int to = Math.min(document.getLength(), document.getDefaultRootElement().getElement(
+				document.getDefaultRootElement().getElementIndex(last)).getEndOffset());
+
+		CharSequence text = new DocumentCharSequence(document);
+		Highlighter highlighter = textArea.getHighlighter();
+		try {
+			while (highlights.size() < MAX_HIGHLIGHTS && from < to && finder.find(text, from, to)) {
+				highlights.add(highlighter.addHighlight(finder.start(), finder.end(), painter));
+				from = finder.end();
+			}
+		} catch (BadLocationException ignorable) {
+			//matches are inside document
+		}
+	}
+
+	/**
+	 * Removes all highlights.
+	 */
+	private void clearHighlights() {
+		if (textArea != null) {
+			for (Object highlight : highlights) {
+				textArea.getHighlighter().removeHighlight(highlight);
+			}
+		}
+		highlights.clear();
+	}
+}
@@ -0,0 +1,300 @@
+package jnotepadpp;
+
+import jnotepadpp.localization.ILocalizationListener;
+import jnotepadpp.localization.ILocalizationProvider;
+import jnotepadpp.search.FileSearch;
+import jnotepadpp.search.SearchHit;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+
+/**
+ * Dialog for searching text in all files of a directory tree. Hits are added to the
+ * result list while search is running and double click on a hit opens it in a tab.
+ * Search can be cancelled and stops by itself after {@value #MAX_HITS} hits, so
+ * result list never grows without limit.
+ * @author Dario Vidas
+ */
+class FindInFilesDialog extends JDialog {
+
+	private static final long serialVersionUID = -3412580933287405661L;
+
+	/** Most hits kept in result list. */
+	private static final int MAX_HITS = 10000;
+
+	/** Files bigger than this are not searched. */
+	private static final long MAX_FILE_SIZE = 512L * 1024 * 1024;
+
+	/** Width of text fields in columns. */
+	private static final int COLUMNS = 30;
+
+	/** Dialog size. */
+	private static final int WIDTH = 700;
+	private static final int HEIGHT = 450;
+
+	/** Searched text. */
+	private final JTextField pattern = new JTextField(COLUMNS);
+
+	/** Searched directory. */
+	private final JTextField directory = new JTextField(COLUMNS);
+
+	/** Match case option. */
+	private final JCheckBox matchCase;
+
+	/** Regular expression option. */
+	private final JCheckBox regex;
+
+	/** Label of searched text field. */
+	private final JLabel patternLabel = new JLabel();
+
+	/** Label of directory field. */
+	private final JLabel directoryLabel = new JLabel();
+
+	/** Search progress and result. */
+	private final JLabel status = new JLabel(" ");
+
+	/** Found hits. */
+	private final DefaultListModel<SearchHit> hits = new DefaultListModel<>();
+
+	/** Localization provider. */
+	private final ILocalizationProvider provider;
+
+	/** Main frame, opens hits. */
+	private final JnotepadPP frame;
+
+	/** Listener of provider. */
+	private final ILocalizationListener listener;
+
+	/** Running search, <code>null</code> if search is not running. */
+	private SearchWorker worker;
+
+	/**
+	 * Constructor.
+	 * @param frame main frame
+	 * @param provider localization provider
+	 */
+	FindInFilesDialog(JnotepadPP frame, ILocalizationProvider provider) {
+		super(frame, false);
+		this.frame = frame;
+		this.provider = provider;
+		setSize(WIDTH, HEIGHT);
+		setLocationRelativeTo(frame);
+
+		matchCase = new JCheckBox(new LocalizableAction("matchCase", provider));
+		regex = new JCheckBox(new LocalizableAction("regex", provider));
+
+		JPanel fields = new JPanel(new GridLayout(2, 1));
+		JPanel patternRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		patternRow.add(patternLabel);
+		patternRow.add(pattern);
+		patternRow.add(matchCase);
+		patternRow.add(regex);
+		fields.add(patternRow);
+
+		JPanel directoryRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		directoryRow.add(directoryLabel);
+		directoryRow.add(directory);
+		directoryRow.add(new JButton(new LocalizableAction("browse", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				chooseDirectory();
+			}
+		}));
+		directoryRow.add(new JButton(new LocalizableAction("search", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				search();
+			}
+		}));
+		directoryRow.add(new JButton(new LocalizableAction("cancel", provider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				cancel();
+			}
+		}));
+		fields.add(directoryRow);
+
+		final JList<SearchHit> list = new JList<>(hits);
+		list.addMouseListener(new MouseAdapter() {
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				SearchHit hit = list.getSelectedValue();
+				if (e.getClickCount() == 2 && hit != null) {
+					FindInFilesDialog.this.frame.openHit(hit);
+				}
+			}
+		});
+
+		setLayout(new BorderLayout());
+		add(fields, BorderLayout.NORTH);
+		add(new JScrollPane(list), BorderLayout.CENTER);
+		add(status, BorderLayout.SOUTH);
+
+		listener = new ILocalizationListener() {
+
+			@Override
+			public void localizationChanged() {
+				updateLanguage();
+			}
+		};
+		provider.addLocalizationListener(listener);
+		updateLanguage();
+		setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+	}
+
+	/**
+	 * Updates title and labels.
+	 */
+	private void updateLanguage() {
+		setTitle(provider.getString("findInFiles"));
+		patternLabel.setText(provider.getString("findWhat"));
+		directoryLabel.setText(provider.getString("directory"));
+	}
+
+	/**
+	 * Shows dialog with directory preset to given directory if none is chosen yet.
+	 * @param dir initial directory, can be <code>null</code>
+	 */
+	void open(File dir) {
+		if (directory.getText().isEmpty() && dir != null) {
+			directory.setText(dir.getAbsolutePath());
+		}
+		setVisible(true);
+		pattern.requestFocusInWindow();
+	}
+
+	/**
+	 * Lets user choose searched directory.
+	 */
+	private void chooseDirectory() {
+		JFileChooser chooser = new JFileChooser(directory.getText());
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+			directory.setText(chooser.getSelectedFile().getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Starts new search, cancelling running one.
+	 */
+	private void search() {
+		cancel();
+		hits.clear();
+		File dir = new File(directory.getText());
+		if (pattern.getText().isEmpty() || !dir.isDirectory()) {
+			return;
+		}
+
+		FileSearch search;
+		try {
+			search = new FileSearch(dir.toPath(), pattern.getText(), matchCase.isSelected(), regex.isSelected(),
+					MAX_FILE_SIZE, MAX_HITS);
+		} catch (PatternSyntaxException e) {
+			status.setText(provider.getString("invalidPattern"));
+			return;
+		}
+		status.setText(provider.getString("searching"));
+		worker = new SearchWorker(search);
+		worker.execute();
+	}
+
+	/**
+	 * Cancels running search.
+	 */
+	private void cancel() {
+		if (worker != null) {
+			worker.search.cancel();
+			worker.cancel(true);
+			status.setText(String.format(provider.getString("searchCancelled"), worker.search.getHits(),
+					worker.search.getFiles()));
+			worker = null;
+		}
+	}
+
+	/**
+	 * Worker that runs search and adds hits to result list.
+	 * @author Dario Vidas
+	 */
+	private final class SearchWorker extends SwingWorker<Void, SearchHit> {
+
+		/** Running search. */
+		private final FileSearch search;
+
+		/**
+		 * Constructor.
+		 * @param search search to run
+		 */
+		SearchWorker(FileSearch search) {
+			super();
+			this.search = search;
+		}
+
+		@Override
+		protected Void doInBackground() throws IOException, InterruptedException {
+			search.run(new FileSearch.HitListener() {
+
+				@Override
+				public void hit(SearchHit hit) {
+					publish(hit);
+				}
+			});
+			return null;
+		}
+
+		@Override
+		protected void process(List<SearchHit> chunks) {
+			if (worker != this) {
+				return;
+			}
+			for (SearchHit hit : chunks) {
+				hits.addElement(hit);
+			}
+			status.setText(String.format(provider.getString("searchProgress"), search.getHits(), search.getFiles()));
+		}
+
+		@Override
+		protected void done() {
+			if (worker != this) {		//cancelled, status is already set
+				return;
+			}
+			worker = null;
+
+			String key = search.isLimitReached() ? "searchLimit" : "searchDone";
+			try {
+				get();
+			} catch (InterruptedException | ExecutionException e) {
+				key = "readingFileContentError";
+			}
+			status.setText(String.format(provider.getString(key), search.getHits(), search.getFiles()));
+		}
+	}
+}
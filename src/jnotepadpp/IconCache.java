@@ -0,0 +1,45 @@
+package jnotepadpp;
+
+import java.awt.Image;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decoded images from <code>res</code>, shared by all components. Every image is
+ * decoded once, on the first thread that asks for it.
+ * @author Dario Vidas
+ */
+final class IconCache {
+
+	/** Decoded images by name. */
+	private static final Map<String, Image> IMAGES = new HashMap<>();
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private IconCache() {
+	}
+
+	/**
+	 * Returns decoded image, decoding it if it was not decoded yet.
+	 * @param name image name, file in <code>res</code> without extension
+	 * @return image
+	 * @throws IOException if image can not be read
+	 */
+	static synchronized Image get(String name) throws IOException {
+		Image image = IMAGES.get(name);
+		if (image == null) {
+			URL url = IconCache.class.getResource("res/" + name + ".png");
+			if (url == null) {
+				throw new IOException("No image " + name);
+			}
+			image = ImageIO.read(url);
+			IMAGES.put(name, image);
+		}
+		return image;
+	}
+}
@@ -1,33 +1,48 @@
 package jnotepadpp;
 
+import jnotepadpp.analysis.TextAnalysis;
 import jnotepadpp.localization.FormLocalizationProvider;
 import jnotepadpp.localization.ILocalizationListener;
 import jnotepadpp.localization.LocalizationProvider;
+import jnotepadpp.search.SearchHit;
 
 import java.awt.BorderLayout;
 import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
 import java.awt.event.ActionEvent;
 import static java.awt.event.InputEvent.CTRL_DOWN_MASK;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.Action;
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JRootPane;
 import javax.swing.JSeparator;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.WindowConstants;
@@ -52,20 +67,48 @@ public class JnotepadPP extends JFrame {
 	/** Reference to localization provider. */
 	private FormLocalizationProvider flp;
 
+	/** Find bar, shown under the tabs. Created when frame is first painted or used. */
+	private FindBar findBar;
+
+	/** Languages menu, filled when frame is first painted. */
+	private JMenu languagesChooser;
+
+	/** Toolbar buttons whose icons are being loaded, with icon names. */
+	private Map<ToolbarButton, String> pendingIcons = new LinkedHashMap<>();
+
+	/** Set when frame has been painted. Not initialized, root pane is created by super constructor. */
+	private boolean painted;
+
+	/** Find in files dialog, created when first used. */
+	private FindInFilesDialog findInFilesDialog;
+
+	/** Hibernates least recently selected tabs. */
+	private TabHibernator hibernator;
+
+	/** Listener of language changes. */
+	private ILocalizationListener localizationListener;
+
 	//GUI constants
 	private static final int INIT_SIZE_X = 520;
 	private static final int INIT_SIZE_Y = 600;
 	private static final int INIT_POS_X = 30;
 	private static final int INIT_POS_Y = 30;
+	private static final int ICON_SIZE = 16;
+
+	/** Empty icon shown in toolbar buttons until their icons are loaded. */
+	private static final Icon ICON_PLACEHOLDER = new ImageIcon(
+			new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB));
 
 	/**
 	 * Constructor that creates main frame and initializes GUI. Sets frame title,
-	 * opening location, initial size and layout. Calls method <code>initGUI</code>.
+	 * opening location, initial size and layout. Calls method <code>initGUI</code>
+	 * and restores tabs of previous session. Icons are loaded on background thread,
+	 * frame icon is set when they are loaded. Unsaved text is recovered from journals
+	 * after the first paint.
 	 */
 	public JnotepadPP() {
 		super();
 		setTitle("JNotepad++");
-		setIconImage(new ImageIcon(this.getClass().getResource("res/Notepad.png")).getImage());
 		setLocation(INIT_POS_X, INIT_POS_Y);
 		setSize(INIT_SIZE_X, INIT_SIZE_Y);
 		setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -74,11 +117,127 @@ public class JnotepadPP extends JFrame {
 		flp = new FormLocalizationProvider(LocalizationProvider.getInstance(), this);
 
 		initGUI();
+		Session.restore(tabs, flp);
+		changeTitle();
+		StartupTrace.mark("session");
+	}
+
+	/**
+	 * Creates root pane which notices the first paint of frame.
+	 * @return root pane
+	 */
+	@Override
+	protected JRootPane createRootPane() {
+		JRootPane rootPane = new JRootPane() {
+			private static final long serialVersionUID = 3920736518502364153L;
+
+			@Override
+			public void paint(Graphics g) {
+				super.paint(g);
+				if (!painted) {
+					painted = true;
+					firstPainted();
+				}
+			}
+		};
+		rootPane.setOpaque(true);
+		return rootPane;
+	}
+
+	/**
+	 * Called after frame is first painted. Work which is not needed for the first
+	 * paint is done when events queued until now are processed.
+	 * @see #initDeferred()
+	 */
+	private void firstPainted() {
+		StartupTrace.firstPaint();
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				initDeferred();
+			}
+		});
+	}
+
+	/**
+	 * Initializes parts of GUI which are not visible at start: languages menu and
+	 * find bar. Starts recovery of unsaved text.
+	 */
+	private void initDeferred() {
+		initLanguagesMenu();
+		getFindBar();
+		recoverJournals();
+		StartupTrace.mark("deferred");
+	}
+
+	/**
+	 * Replays journals of previous run, which did not exit normally, on background
+	 * thread and opens tabs with recovered text when they are replayed. Recovered tab
+	 * replaces clean tab of the same file restored from session, other recovered tabs
+	 * come before restored ones.
+	 * @see EditJournal#recover()
+	 */
+	private void recoverJournals() {
+		new SwingWorker<List<EditJournal.Recovery>, Void>() {
+
+			@Override
+			protected List<EditJournal.Recovery> doInBackground() {
+				return EditJournal.recover();
+			}
+
+			@Override
+			protected void done() {
+				List<EditJournal.Recovery> recovered;
+				try {
+					recovered = get();
+				} catch (InterruptedException | ExecutionException e) {
+					return;		//journals stay for next start
+				}
+				int added = 0;
+				for (EditJournal.Recovery recovery : recovered) {
+					TabComponent tab = new TabComponent(recovery.getFile(), flp, true);
+					tab.recover(recovery.getDocument(), recovery.getJournal());
+					int restored = indexOfCleanTab(recovery.getFile());
+					if (restored < 0) {
+						tabs.insert(tab, added++);
+					} else {
+						boolean selected = tabs.getSelectedIndex() == restored;
+						tabs.insert(tab, restored);
+						tabs.removeTabAt(restored + 1);
+						if (selected) {
+							tabs.setSelectedIndex(restored);
+						}
+					}
+				}
+				changeTitle();
+				StartupTrace.mark("recovery");
+			}
+		}.execute();
+	}
+
+	/**
+	 * Finds tab of file which has no unsaved changes.
+	 * @param file file, <code>null</code> for new tab
+	 * @return tab index, -1 if there is no such tab
+	 */
+	private int indexOfCleanTab(File file) {
+		if (file == null) {
+			return -1;
+		}
+		for (int i = 0; i < tabs.getTabCount(); i++) {
+			TabComponent tab = (TabComponent) tabs.getComponentAt(i);
+			if (file.equals(tab.getFile()) && !tab.isChanged()) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
 	 * Method initializes GUI. Runs other methods for initialization. Initializes
-	 * lookAndFeel, actions, menu bar, toolbar, tabbed pane and listeners.
+	 * lookAndFeel, actions, menu bar, toolbar, tabbed pane and listeners. Time of
+	 * every step is traced.
 	 * @see #initLookAndFeel()
 	 * @see #actionInit()
 	 * @see #initMenuBar()
@@ -86,32 +245,42 @@ public class JnotepadPP extends JFrame {
 	 * @see #initTabbedPane()
 	 * @see #initWindowEvent()
 	 * @see #initTabChangeListener()
-	 * @see #initDialogLanguage()
+	 * @see #initLocalizationListener()
+	 * @see StartupTrace
 	 */
 	private void initGUI() {
 		initLookAndFeel();
+		StartupTrace.mark("look and feel");
 		actionInit();
+		StartupTrace.mark("actions");
 		initMenuBar();
 		initLocalizationListener();
+		StartupTrace.mark("menu bar");
 		initToolBar();
+		StartupTrace.mark("toolbar");
 		initTabbedPane();
 		initWindowEvent();
 		initTabChangeListener();
+		StartupTrace.mark("tabs");
 	}
 
 	/**
 	 * Initializes language of option dialogs. Initializes some, not all components.
-	 * Initializes localization listener.
+	 * Initializes localization listener, which also updates action short
+	 * descriptions.
 	 * @see #updateDialogLanguage()
+	 * @see #updateActionDesc()
 	 */
 	private void initLocalizationListener() {
-		flp.addLocalizationListener(new ILocalizationListener() {
+		localizationListener = new ILocalizationListener() {
 			
 			@Override
 			public void localizationChanged() {
+				updateActionDesc();
 				updateDialogLanguage();
 			}
-		});
+		};
+		flp.addLocalizationListener(localizationListener);
 		updateDialogLanguage();
 	}
 
@@ -141,10 +310,12 @@ public class JnotepadPP extends JFrame {
 
 	/**
 	 * Method initializes menu bar. Menu bar has 2 menus: File and Edit. File
-	 * contains: new file, open file, save file, save file as and exit. Edit
-	 * contains: cut, copy, paste and statistics. All actions are pre-initialized by
-	 * other methods.
+	 * contains: new file, open file, save file, save file as, analyze file, follow and
+	 * exit. Edit contains: undo, redo, cut, copy, paste, find, find next, find in
+	 * files, statistics and analyze. All actions are pre-initialized by other
+	 * methods. Languages menu is filled after the first paint.
 	 * @see #actionInit()
+	 * @see #initLanguagesMenu()
 	 */
 	private void initMenuBar() {
 		JMenuBar menu = new JMenuBar();
@@ -157,18 +328,35 @@ public class JnotepadPP extends JFrame {
 		fileOperations.add(new JMenuItem(actionMap.get("save")));
 		fileOperations.add(new JMenuItem(actionMap.get("saveas")));
 		fileOperations.add(new JSeparator());
+		fileOperations.add(new JMenuItem(actionMap.get("analyzeFile")));
+		fileOperations.add(new JCheckBoxMenuItem(actionMap.get("follow")));
+		fileOperations.add(new JSeparator());
 		fileOperations.add(new JMenuItem(actionMap.get("exit")));
 
 		JMenu textOperations = new LJMenu("edit", flp);
 		menu.add(textOperations);
+		textOperations.add(new JMenuItem(actionMap.get("undo")));
+		textOperations.add(new JMenuItem(actionMap.get("redo")));
+		textOperations.add(new JSeparator());
 		textOperations.add(new JMenuItem(actionMap.get("cut")));
 		textOperations.add(new JMenuItem(actionMap.get("copy")));
 		textOperations.add(new JMenuItem(actionMap.get("paste")));
 		textOperations.add(new JSeparator());
+		textOperations.add(new JMenuItem(actionMap.get("find")));
+		textOperations.add(new JMenuItem(actionMap.get("findNext")));
+		textOperations.add(new JMenuItem(actionMap.get("findInFiles")));
+		textOperations.add(new JSeparator());
 		textOperations.add(new JMenuItem(actionMap.get("stats")));
+		textOperations.add(new JMenuItem(actionMap.get("analyze")));
 
-		JMenu languagesChooser = new LJMenu("lang", flp);
+		languagesChooser = new LJMenu("lang", flp);
 		menu.add(languagesChooser);
+	}
+
+	/**
+	 * Fills languages menu with a menu item for every language.
+	 */
+	private void initLanguagesMenu() {
 		languagesChooser.add(new JMenuItem(new LocalizableAction("croatian", flp) {
 			private static final long serialVersionUID = -226053105959290280L;
 
@@ -189,59 +377,84 @@ public class JnotepadPP extends JFrame {
 
 	/**
 	 * Initializes toolbar. Toolbar is not floatable. It is split in 4 parts. File
-	 * action: new file, save file, save file as, open file. Editing actions: cut,
-	 * copy, paste. Statistics and Exit.
+	 * action: new file, save file, save file as, open file. Editing actions: undo,
+	 * redo, cut, copy, paste. Statistics and Exit. Buttons show empty icons until
+	 * their icons are loaded on background thread.
 	 * @see #actionInit()
+	 * @see #loadIcons()
 	 */
 	private void initToolBar() {
 		JToolBar toolBar = new JToolBar();
 		toolBar.setFloatable(false);
 		add(toolBar, BorderLayout.NORTH);
 
-		Class<? extends JnotepadPP> jnCl = this.getClass();		//JnotepadPP Class
-
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Blank.png")),
-				actionMap.get("blank"),
-				flp));
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Open.png")),
-				actionMap.get("open"),
-				flp));
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Save.png")),
-				actionMap.get("save"),
-				flp));
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/SaveAs.png")),
-				actionMap.get("saveas"),
-				flp));
+		addButton(toolBar, "Blank", "blank");
+		addButton(toolBar, "Open", "open");
+		addButton(toolBar, "Save", "save");
+		addButton(toolBar, "SaveAs", "saveas");
 		toolBar.addSeparator();
 
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Cut.png")),
-				actionMap.get("cut"),
-				flp));
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Copy.png")),
-				actionMap.get("copy"),
-				flp));
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Paste.png")),
-				actionMap.get("paste"),
-				flp));
+		addButton(toolBar, "Undo", "undo");
+		addButton(toolBar, "Redo", "redo");
+		addButton(toolBar, "Cut", "cut");
+		addButton(toolBar, "Copy", "copy");
+		addButton(toolBar, "Paste", "paste");
 		toolBar.addSeparator();
 
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Stats.png")),
-				actionMap.get("stats"),
-				flp));
+		addButton(toolBar, "Stats", "stats");
 		toolBar.addSeparator();
 
-		toolBar.add(new ToolbarButton(
-				new ImageIcon(jnCl.getResource("res/Exit.png")),
-				actionMap.get("exit"),
-				flp));
+		addButton(toolBar, "Exit", "exit");
+		loadIcons();
+	}
+
+	/**
+	 * Adds button with empty icon to toolbar. Its icon is set by <code>loadIcons</code>.
+	 * @param toolBar toolbar
+	 * @param icon icon name, file in <code>res</code> without extension
+	 * @param action action key
+	 */
+	private void addButton(JToolBar toolBar, String icon, String action) {
+		ToolbarButton button = new ToolbarButton(ICON_PLACEHOLDER, actionMap.get(action), flp);
+		pendingIcons.put(button, icon);
+		toolBar.add(button);
+	}
+
+	/**
+	 * Decodes frame icon and icons of toolbar buttons into shared icon cache on
+	 * background thread and sets them when they are decoded. If an icon can not be
+	 * read, buttons keep empty icons.
+	 */
+	private void loadIcons() {
+		final Map<ToolbarButton, String> buttons = pendingIcons;
+		pendingIcons = null;
+		new SwingWorker<Map<String, Image>, Void>() {
+
+			@Override
+			protected Map<String, Image> doInBackground() throws IOException {
+				Map<String, Image> images = new HashMap<>();
+				images.put("Notepad", IconCache.get("Notepad"));
+				for (String icon : buttons.values()) {
+					images.put(icon, IconCache.get(icon));
+				}
+				return images;
+			}
+
+			@Override
+			protected void done() {
+				Map<String, Image> images;
+				try {
+					images = get();
+				} catch (InterruptedException | ExecutionException e) {
+					return;
+				}
+				setIconImage(images.get("Notepad"));
+				for (Map.Entry<ToolbarButton, String> entry : buttons.entrySet()) {
+					entry.getKey().setIcon(new ImageIcon(images.get(entry.getValue())));
+				}
+				StartupTrace.mark("icons");
+			}
+		}.execute();
 	}
 
 	/**
@@ -253,6 +466,20 @@ public class JnotepadPP extends JFrame {
 		add(tabs, BorderLayout.CENTER);
 	}
 
+	/**
+	 * Returns find bar, creating it if it was not created yet. Bar is hidden until
+	 * find action is used.
+	 * @return find bar
+	 */
+	private FindBar getFindBar() {
+		if (findBar == null) {
+			findBar = new FindBar(flp);
+			add(findBar, BorderLayout.SOUTH);
+			revalidate();
+		}
+		return findBar;
+	}
+
 	/**
 	 * Initializes window events. This method initializes window event when window is
 	 * closing. When closing window, it will call Exit action.
@@ -271,23 +498,42 @@ public class JnotepadPP extends JFrame {
 	/**
 	 * Initializes <code>ChangeListener</code> for tabs. Overrides
 	 * <code>stateChanged</code> method so whenever the tab is changed, method
-	 * <code>changeTitle</code> will be called.
+	 * <code>changeTitle</code> will be called, find bar will search the new tab and
+	 * least recently selected tabs are hibernated if they take too much memory.
 	 * @see #changeTitle()
+	 * @see TabHibernator
 	 */
 	private void initTabChangeListener() {
+		hibernator = new TabHibernator(tabs);
 		tabs.addChangeListener(new ChangeListener() {
 
 			@Override
 			public void stateChanged(ChangeEvent e) {
 				changeTitle();
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (findBar != null) {
+					findBar.setTarget(tab == null ? null : tab.getTextArea());
+				}
+				hibernator.selected(tab);
 			}
 		});
 	}
 
+	/**
+	 * Shows if selected tab is followed. Only saved files can be followed.
+	 */
+	private void updateFollowAction() {
+		TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+		Action action = actionMap.get("follow");
+		action.putValue(Action.SELECTED_KEY, tab != null && tab.isFollowing());
+		action.setEnabled(tab != null && !tab.isNew());
+	}
+
 	/**
 	 * Initializes all required actions. Action are: New Blank Document, Open File,
-	 * Save File, Save File As, Cut, Copy, Paste, Statistics, Exit. Method also
-	 * defines short descriptions and key bindings for each action.
+	 * Save File, Save File As, Undo, Redo, Cut, Copy, Paste, Find, Find Next, Find
+	 * in Files, Statistics, Analyze, Analyze File, Follow, Exit. Method also defines
+	 * short descriptions and key bindings for each action.
 	 * @see #updateActionDesc()
 	 */
 	private void actionInit() {
@@ -313,9 +559,7 @@ public class JnotepadPP extends JFrame {
 			public void actionPerformed(ActionEvent e) {
 				File file = fileOpenAction(true);	//true is flag for opening
 				if (file != null) {
-					tabs.add(new TabComponent(file, flp));
-					tabs.setSelectedIndex(tabs.getTabCount() - 1);
-					changeTitle();
+					openFile(file);
 				}
 			}
 		};
@@ -346,6 +590,36 @@ public class JnotepadPP extends JFrame {
 		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("ctrl shift S"));
 		actionMap.put("saveas", action);
 
+		// Action for undoing last edit
+		action = new LocalizableAction("undo", flp) {
+			private static final long serialVersionUID = 6084420517370362135L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab != null) {
+					tab.undo();
+				}
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_Z, CTRL_DOWN_MASK));
+		actionMap.put("undo", action);
+
+		// Action for redoing last undone edit
+		action = new LocalizableAction("redo", flp) {
+			private static final long serialVersionUID = -3912467745410872651L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab != null) {
+					tab.redo();
+				}
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_Y, CTRL_DOWN_MASK));
+		actionMap.put("redo", action);
+
 		// Action for cutting text
 		action = new LocalizableAction("cut", flp) {
 			private static final long serialVersionUID = -3255431990098608569L;
@@ -391,6 +665,61 @@ public class JnotepadPP extends JFrame {
 		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_V, CTRL_DOWN_MASK));
 		actionMap.put("paste", action);
 
+		// Action for showing find bar
+		action = new LocalizableAction("find", flp) {
+			private static final long serialVersionUID = -1829577415368230553L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab != null) {
+					getFindBar().open(tab.getTextArea());
+				}
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_F, CTRL_DOWN_MASK));
+		actionMap.put("find", action);
+
+		// Action for finding next match
+		action = new LocalizableAction("findNext", flp) {
+			private static final long serialVersionUID = 6354178036913264113L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab == null) {
+					return;
+				}
+				if (getFindBar().hasSearch()) {
+					findBar.findNext();
+				} else {
+					findBar.open(tab.getTextArea());
+				}
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+		actionMap.put("findNext", action);
+
+		// Action for finding text in all files of a directory
+		action = new LocalizableAction("findInFiles", flp) {
+			private static final long serialVersionUID = -4521879930415672018L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (findInFilesDialog == null) {
+					findInFilesDialog = new FindInFilesDialog(JnotepadPP.this, flp);
+				}
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				File dir = null;
+				if (tab != null && !tab.isNew()) {
+					dir = tab.getFile().getAbsoluteFile().getParentFile();
+				}
+				findInFilesDialog.open(dir);
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("ctrl shift F"));
+		actionMap.put("findInFiles", action);
+
 		// Action for getting statistics
 		action = new LocalizableAction("stats", flp) {
 			private static final long serialVersionUID = 1934192466083401633L;
@@ -417,6 +746,57 @@ public class JnotepadPP extends JFrame {
 		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_T, CTRL_DOWN_MASK, true));
 		actionMap.put("stats", action);
 
+		// Action for analyzing current document
+		action = new LocalizableAction("analyze", flp) {
+			private static final long serialVersionUID = -4818371523906297213L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab == null || tab.isLoading()) {
+					JOptionPane.showMessageDialog(
+							JnotepadPP.this,
+							flp.getString("noTabs"),
+							flp.getString("analyze"),
+							JOptionPane.INFORMATION_MESSAGE);
+					return;
+				}
+				analyzeAction(new AnalysisWorker(tab.getSnapshot()));
+			}
+		};
+		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("ctrl shift T"));
+		actionMap.put("analyze", action);
+
+		// Action for analyzing file without opening it
+		action = new LocalizableAction("analyzeFile", flp) {
+			private static final long serialVersionUID = 2797365400512939434L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				File file = fileOpenAction(true);
+				if (file != null) {
+					analyzeAction(new AnalysisWorker(file));
+				}
+			}
+		};
+		actionMap.put("analyzeFile", action);
+
+		// Action for following file that grows, like a log
+		action = new LocalizableAction("follow", flp) {
+			private static final long serialVersionUID = -7364120594853517330L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				TabComponent tab = (TabComponent) tabs.getSelectedComponent();
+				if (tab != null) {
+					tab.setFollowing(!tab.isFollowing());
+				}
+				updateFollowAction();
+			}
+		};
+		action.putValue(Action.SELECTED_KEY, false);
+		actionMap.put("follow", action);
+
 		// Action for exiting application
 		action = new LocalizableAction("exit", flp) {
 			private static final long serialVersionUID = 7203980126285743479L;
@@ -429,14 +809,7 @@ public class JnotepadPP extends JFrame {
 		action.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_E, CTRL_DOWN_MASK, true));
 		actionMap.put("exit", action);
 
-		// updating short descrptions
-		flp.addLocalizationListener(new ILocalizationListener() {
-
-			@Override
-			public void localizationChanged() {
-				updateActionDesc();
-			}
-		});
+		// short descriptions are updated by localization listener
 		updateActionDesc();
 	}
 
@@ -448,10 +821,18 @@ public class JnotepadPP extends JFrame {
 		actionMap.get("open").putValue(Action.SHORT_DESCRIPTION, flp.getString("openDescription"));
 		actionMap.get("save").putValue(Action.SHORT_DESCRIPTION, flp.getString("saveDescription"));
 		actionMap.get("saveas").putValue(Action.SHORT_DESCRIPTION, flp.getString("saveasDescription"));
+		actionMap.get("undo").putValue(Action.SHORT_DESCRIPTION, flp.getString("undoDescription"));
+		actionMap.get("redo").putValue(Action.SHORT_DESCRIPTION, flp.getString("redoDescription"));
 		actionMap.get("cut").putValue(Action.SHORT_DESCRIPTION, flp.getString("cutDescription"));
 		actionMap.get("copy").putValue(Action.SHORT_DESCRIPTION, flp.getString("copyDescription"));
 		actionMap.get("paste").putValue(Action.SHORT_DESCRIPTION, flp.getString("pasteDescription"));
+		actionMap.get("find").putValue(Action.SHORT_DESCRIPTION, flp.getString("findDescription"));
+		actionMap.get("findNext").putValue(Action.SHORT_DESCRIPTION, flp.getString("findNextDescription"));
+		actionMap.get("findInFiles").putValue(Action.SHORT_DESCRIPTION, flp.getString("findInFilesDescription"));
 		actionMap.get("stats").putValue(Action.SHORT_DESCRIPTION, flp.getString("statsDescription"));
+		actionMap.get("analyze").putValue(Action.SHORT_DESCRIPTION, flp.getString("analyzeDescription"));
+		actionMap.get("analyzeFile").putValue(Action.SHORT_DESCRIPTION, flp.getString("analyzeFileDescription"));
+		actionMap.get("follow").putValue(Action.SHORT_DESCRIPTION, flp.getString("followDescription"));
 		actionMap.get("exit").putValue(Action.SHORT_DESCRIPTION, flp.getString("exitDescription"));
 	}
 
@@ -481,7 +862,7 @@ public class JnotepadPP extends JFrame {
 	 */
 	private void saveAsAction() {
 		TabComponent tab = (TabComponent) tabs.getSelectedComponent();
-		if (tab == null) {
+		if (tab == null || tab.isLoading()) {		//partly loaded file must not be saved
 			return;
 		}
 
@@ -511,14 +892,63 @@ public class JnotepadPP extends JFrame {
 		}
 	}
 
+	/**
+	 * Runs analysis on background and shows its result when it is done.
+	 * @param worker analysis worker
+	 */
+	private void analyzeAction(final AnalysisWorker worker) {
+		worker.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getNewValue() == SwingWorker.StateValue.DONE) {
+					showAnalysis(worker);
+				}
+			}
+		});
+		worker.execute();
+	}
+
+	/**
+	 * Shows result of finished analysis, or error message if it failed.
+	 * @param worker finished analysis worker
+	 */
+	private void showAnalysis(AnalysisWorker worker) {
+		TextAnalysis analysis;
+		try {
+			analysis = worker.get();
+		} catch (InterruptedException | ExecutionException e) {
+			JOptionPane.showMessageDialog(
+					this,
+					flp.getString("readingFileContentError"),
+					flp.getString("error"),
+					JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
+		StringBuilder message = new StringBuilder(String.format(flp.getString("analysisStringFormat"),
+				analysis.getLines(), analysis.getChars(), analysis.getWhitespace(), analysis.getLongestLine(),
+				analysis.getBytes(), flp.getString(analysis.isValid() ? "yes" : "no")));
+		for (Map.Entry<String, Integer> word : analysis.getTopWords().entrySet()) {
+			message.append('\n').append(word.getKey()).append(" - ").append(word.getValue());
+		}
+		JOptionPane.showMessageDialog(
+				this,
+				message.toString(),
+				flp.getString("analyze"),
+				JOptionPane.INFORMATION_MESSAGE);
+	}
+
 	/**
 	 * Helper method doing "exit" action. It is called by "exit"
 	 * <code>actionPerformed</code> method. Goes through all tabs and saves them if
 	 * necessary. It is not necessary to save file if it is new and not a single
-	 * character was typed inside.
+	 * character was typed inside. Program does not exit if saving of a tab fails.
 	 * @see #actionInit()
 	 */
 	private void exitAction() {
+		List<TabComponent> saved = new ArrayList<>();
+		List<TabComponent> discarded = new ArrayList<>();
 		for (Component comp : tabs.getComponents()) {		//run all tabs
 			if (!(comp instanceof TabComponent)) {
 				continue;
@@ -526,9 +956,9 @@ public class JnotepadPP extends JFrame {
 
 			final boolean dirty = ((TabComponent) comp).isChanged();
 			final String name = ((TabComponent) comp).getTabLabel().getText().substring(1);
-			tabs.setSelectedComponent(comp);
 
 			if (dirty) {	//should i even ask?
+				tabs.setSelectedComponent(comp);
 				int option = JOptionPane.showOptionDialog(
 						JnotepadPP.this,
 						flp.getString("saveQuestion") + " " + name + "?",
@@ -541,14 +971,36 @@ public class JnotepadPP extends JFrame {
 
 				if (option == 0) {		//YES
 					saveAction();
+					saved.add((TabComponent) comp);
 					continue;
 				} else if (option == 1) {		//NO
+					discarded.add((TabComponent) comp);
 					continue;
 				}
 				return;			//Cancel or close
 			}
 		}
 
+		boolean failed = false;
+		for (Component comp : tabs.getComponents()) {		//wait for background saves
+			if (comp instanceof TabComponent && !((TabComponent) comp).awaitSave() && saved.contains(comp)) {
+				failed = true;		//reported by tab, its changes and journal are kept
+			}
+		}
+		if (failed) {
+			return;
+		}
+		Session.save(tabs);
+		for (TabComponent tab : discarded) {
+			tab.discardChanges();
+		}
+		for (Component comp : tabs.getComponents()) {		//keeps journals of unsaved changes
+			if (comp instanceof TabComponent) {
+				((TabComponent) comp).close();
+			}
+		}
+		EditJournal.shutdown();
+
 		setVisible(false);
 		dispose();		//closing if not interrupted by cancel or close on dialogs
 	}
@@ -603,9 +1055,46 @@ public class JnotepadPP extends JFrame {
 		return false;
 	}
 
+	/**
+	 * Opens file in a new tab and selects it.
+	 * @param file file to open
+	 * @return new tab
+	 */
+	private TabComponent openFile(File file) {
+		TabComponent tab = new TabComponent(file, flp);
+		tabs.add(tab);
+		tabs.setSelectedIndex(tabs.getTabCount() - 1);
+		changeTitle();
+		return tab;
+	}
+
+	/**
+	 * Shows find in files hit. File of the hit is selected if it is already open,
+	 * otherwise it is opened in a new tab.
+	 * @param hit hit to show
+	 */
+	void openHit(SearchHit hit) {
+		File file = hit.getFile().toFile().getAbsoluteFile();
+		TabComponent tab = null;
+		for (int i = 0; i < tabs.getTabCount(); i++) {
+			TabComponent other = (TabComponent) tabs.getComponentAt(i);
+			if (!other.isNew() && other.getFile().getAbsoluteFile().equals(file)) {
+				tab = other;
+				tabs.setSelectedIndex(i);
+				break;
+			}
+		}
+		if (tab == null) {
+			tab = openFile(file);
+		}
+		tab.showLine(hit.getLine(), hit.getColumn(), hit.getLength());
+		toFront();
+	}
+
 	/**
 	 * Method changes title of the main frame. Format of the new name is:
-	 * "[absolute path of current file] - JNotepad++".
+	 * "[absolute path of current file] - JNotepad++". Follow action is updated for
+	 * current tab too.
 	 */
 	void changeTitle() {
 		TabComponent tab = (TabComponent) tabs.getSelectedComponent();
@@ -614,6 +1103,7 @@ public class JnotepadPP extends JFrame {
 		} else {
 			setTitle("JNotepad++");
 		}
+		updateFollowAction();
 	}
 
 	/**
@@ -621,11 +1111,14 @@ public class JnotepadPP extends JFrame {
 	 * @param args no arguments
 	 */
 	public static void main(String[] args) {
+		StartupTrace.begin();
 		SwingUtilities.invokeLater(new Runnable() {
 
 			@Override
 			public void run() {
+				StartupTrace.mark("event thread");
 				new JnotepadPP().setVisible(true);
+				StartupTrace.mark("shown");
 			}
 		});
 	}
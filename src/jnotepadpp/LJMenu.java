@@ -2,6 +2,7 @@ package jnotepadpp;
 
 import jnotepadpp.localization.ILocalizationListener;
 import jnotepadpp.localization.ILocalizationProvider;
+import jnotepadpp.localization.MessageTable;
 
 import javax.swing.JMenu;
 
@@ -16,9 +17,15 @@ public class LJMenu extends JMenu {
 	/** Key for resource bundle. */
 	protected String key;
 
+	/** Slot of key, resolved once. */
+	private int slot;
+
 	/** Reference to localization provider. */
 	protected ILocalizationProvider provider;
 
+	/** Listener of provider. */
+	private ILocalizationListener listener;
+
 	/**
 	 * Constructs <code>JMenu</code> with key to resource bundle and localization
 	 * provider. Adds itself as a listener to localization provider.
@@ -28,20 +35,22 @@ public class LJMenu extends JMenu {
 	public LJMenu(String key, ILocalizationProvider provider) {
 		super(provider.getString(key));
 		this.key = key;
+		this.slot = MessageTable.slotOf(key);
 		this.provider = provider;
-		provider.addLocalizationListener(new ILocalizationListener() {
+		listener = new ILocalizationListener() {
 
 			@Override
 			public void localizationChanged() {
 				updateMenu();
 			}
-		});
+		};
+		provider.addLocalizationListener(listener);
 	}
 
 	/**
 	 * Updates menu text.
 	 */
 	private void updateMenu() {
-		setText(provider.getString(key));
+		setText(provider.getString(slot));
 	}
 }
@@ -2,6 +2,7 @@ package jnotepadpp;
 
 import jnotepadpp.localization.ILocalizationListener;
 import jnotepadpp.localization.ILocalizationProvider;
+import jnotepadpp.localization.MessageTable;
 
 import java.awt.event.ActionEvent;
 
@@ -18,12 +19,15 @@ public class LocalizableAction extends AbstractAction {
 
 	private static final long serialVersionUID = 5772755287356407502L;
 
-	/** Key for finding language translation in bundle. */
-	private String key;
+	/** Slot of key for finding language translation in bundle. */
+	private int key;
 
 	/** Reference to provider bridge. */
 	private ILocalizationProvider provider;
 
+	/** Listener of provider. */
+	private ILocalizationListener listener;
+
 	/**
 	 * Constructor with 2 arguments. Adds itself as listener to bridge.
 	 * @param key key for translation bundle
@@ -31,15 +35,16 @@ public class LocalizableAction extends AbstractAction {
 	 */
 	public LocalizableAction(String key, ILocalizationProvider provider) {
 		super();
-		this.key = key;
+		this.key = MessageTable.slotOf(key);
 		this.provider = provider;
-		provider.addLocalizationListener(new ILocalizationListener() {
+		listener = new ILocalizationListener() {
 
 			@Override
 			public void localizationChanged() {
 				updateAction();
 			}
-		});
+		};
+		provider.addLocalizationListener(listener);
 		updateAction();
 	}
 
@@ -1,32 +1,54 @@
 package jnotepadpp;
 
-import jnotepadpp.localization.ILocalizationListener;
 import jnotepadpp.localization.ILocalizationProvider;
 
-import java.awt.BorderLayout;
 import java.awt.Component;
-import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.event.ActionEvent;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.net.URL;
+import java.util.Map;
 
-import javax.imageio.ImageIO;
-import javax.swing.JButton;
+import javax.swing.Icon;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
-import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
+import javax.swing.ToolTipManager;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  * Class extends <code>JTabbedPane</code> and defines new method <code>add</code>
  * with single argument, <code>TabComponent component</code>.
+ * <p>
+ * Tab headers are lightweight: instead of a component, every tab has an icon which
+ * paints its title and the close image, decoded once and shared by all tabs. Clicks
+ * on close images and their tool tips are handled by the pane itself, so adding or
+ * removing a tab costs the same for any number of tabs.
+ * </p>
  * @author Dario Vidas
  */
 public class ModifiedTabbedPane extends JTabbedPane {
 
 	private static final long serialVersionUID = 6450737211342077841L;
-	
+
+	/** Gap between title and close image. */
+	private static final int CLOSE_GAP = 4;
+
+	/** Close image shared by all tabs, <code>null</code> if it can not be read. */
+	private static Image closeImage;
+
+	/** Set when close image was decoded or failed to decode. */
+	private static boolean closeLoaded;
+
 	/** Localization provider. */
 	private ILocalizationProvider provider;
 
@@ -37,6 +59,32 @@ public class ModifiedTabbedPane extends JTabbedPane {
 	public ModifiedTabbedPane(ILocalizationProvider provider) {
 		super();
 		this.provider = provider;
+
+		//lazy tabs are materialized when they are first selected
+		addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				if (getSelectedComponent() instanceof TabComponent) {
+					((TabComponent) getSelectedComponent()).materialize();
+				}
+			}
+		});
+
+		//one listener closes any tab
+		addMouseListener(new MouseAdapter() {
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if (SwingUtilities.isLeftMouseButton(e)) {
+					int index = closeAt(e.getPoint());
+					if (index >= 0) {
+						close((TabComponent) getComponentAt(index));
+					}
+				}
+			}
+		});
+		ToolTipManager.sharedInstance().registerComponent(this);
 	}
 
 	/**
@@ -44,108 +92,200 @@ public class ModifiedTabbedPane extends JTabbedPane {
 	 * @param component component
 	 */
 	public void add(TabComponent component) {
-		add((Component) component);
-		setTabComponentAt(indexOfComponent(component), new TabLook(component));
+		insert(component, getTabCount());
 	}
 
 	/**
-	 * Inner class that defines the look of tab. Adds close action.
-	 * @author Dario Vidas
+	 * Inserts component to tabbed pane at given index. Selected tab stays selected.
+	 * @param component component
+	 * @param index tab index
 	 */
-	private class TabLook extends JPanel {
+	public void insert(TabComponent component, int index) {
+		insertTab("", new TabHeader(component.getTabLabel()), component, null, index);
+	}
 
-		private static final long serialVersionUID = 6683769797477630047L;
+	/**
+	 * Removes tab and releases resources held by its component.
+	 * @param index tab index
+	 */
+	@Override
+	public void removeTabAt(int index) {
+		Component component = getComponentAt(index);
+		if (getIconAt(index) instanceof TabHeader) {
+			((TabHeader) getIconAt(index)).dispose();
+		}
+		super.removeTabAt(index);
+		if (component instanceof TabComponent) {
+			((TabComponent) component).close();
+		}
+	}
 
-		/**
-		 * Constructors tab, adds name and close action.
-		 * @param component tab component
-		 */
-		public TabLook(final TabComponent component) {
-			super();
-			setLayout(new BorderLayout());
-			setOpaque(false);
-
-			add(component.getTabLabel(), BorderLayout.CENTER);
-
-			final ImageButton closeButton = new ImageButton(getClass().getResource("res/Close.png"));
-			closeButton.setAction(new LocalizableAction("close", provider) {
-				private static final long serialVersionUID = 1L;
-
-				@Override
-				public void actionPerformed(ActionEvent e) {
-					if (component.isChanged()) {
-						final String name = component.getTabLabel().getText().substring(1);
-						int option = JOptionPane.showOptionDialog(
-								getTopLevelAncestor(),
-								provider.getString("saveQuestion") + " " + name + "?",
-								provider.getString("notSaved"),
-								JOptionPane.YES_NO_CANCEL_OPTION,
-								JOptionPane.QUESTION_MESSAGE,
-								null,
-								null,
-								2);
-
-						if (option == 0) {		//YES
-							((JnotepadPP) getTopLevelAncestor()).saveAction();
-							ModifiedTabbedPane.this.remove(component);
-						} else if (option == 1) {		//NO
-							ModifiedTabbedPane.this.remove(component);
-						}
-						return;		//Cancel or close does nothing
-					}
-					ModifiedTabbedPane.this.remove(component);
-				}
-			});
+	/**
+	 * Returns tool tip of close image under mouse, or of tab.
+	 * @param event mouse event
+	 * @return tool tip text
+	 */
+	@Override
+	public String getToolTipText(MouseEvent event) {
+		if (closeAt(event.getPoint()) >= 0) {
+			return provider.getString("closeTab");
+		}
+		return super.getToolTipText(event);
+	}
+
+	/**
+	 * Finds tab whose close image is at point.
+	 * @param point point in pane
+	 * @return tab index, -1 if there is no close image at point
+	 */
+	private int closeAt(Point point) {
+		int index = indexAtLocation(point.x, point.y);
+		if (index < 0 || !(getIconAt(index) instanceof TabHeader)) {
+			return -1;
+		}
+		return ((TabHeader) getIconAt(index)).isOverClose(point) ? index : -1;
+	}
 
-			provider.addLocalizationListener(new ILocalizationListener() {
-				
-				@Override
-				public void localizationChanged() {
-					closeButton.setToolTipText(provider.getString("closeTab"));
+	/**
+	 * Closes tab. If tab has unsaved changes, user is asked to save them first, and
+	 * tab stays open if they are not saved.
+	 * @param component tab component
+	 */
+	private void close(TabComponent component) {
+		if (component.isChanged()) {
+			final String name = component.getTabLabel().getText().substring(1);
+			setSelectedComponent(component);
+			int option = JOptionPane.showOptionDialog(
+					getTopLevelAncestor(),
+					provider.getString("saveQuestion") + " " + name + "?",
+					provider.getString("notSaved"),
+					JOptionPane.YES_NO_CANCEL_OPTION,
+					JOptionPane.QUESTION_MESSAGE,
+					null,
+					null,
+					2);
+
+			if (option == 0) {		//YES
+				((JnotepadPP) getTopLevelAncestor()).saveAction();
+				if (component.awaitSave()) {
+					remove(component);
 				}
-			});
-			closeButton.setToolTipText(provider.getString("closeTab"));
-			closeButton.setOpaque(false);
-			add(closeButton, BorderLayout.EAST);
+			} else if (option == 1) {		//NO
+				component.discardChanges();
+				remove(component);
+			}
+			return;		//Cancel or close does nothing
 		}
+		remove(component);
 	}
 
 	/**
-	 * Private class for defining image buttons.
+	 * Header of tab, painted as the icon of tab: title of tab and close image after
+	 * it. Title is read from title label of tab, header only listens to its text.
 	 * @author Dario Vidas
 	 */
-	private static class ImageButton extends JButton {
+	private final class TabHeader implements Icon, PropertyChangeListener {
 
-		private static final long serialVersionUID = 7986375418022984286L;
+		/** Title label. */
+		private final JLabel label;
+
+		/** X coordinate where header was last painted, -1 if it was not painted. */
+		private int paintedX = -1;
+
+		/** Y coordinate where header was last painted. */
+		private int paintedY;
 
 		/**
-		 * Image for button.
+		 * Constructor.
+		 * @param label title label of tab
 		 */
-		private transient Image img;
+		TabHeader(JLabel label) {
+			this.label = label;
+			label.addPropertyChangeListener("text", this);
+		}
 
 		/**
-		 * Constructs button from image.
-		 * @param imagePath path to image
+		 * Stops listening to title label, called when tab is removed.
 		 */
-		public ImageButton(URL imagePath) {
-			super();
-			try {
-				img = ImageIO.read(imagePath);
-			} catch (IOException e) {
-				//do nothing
-			}
+		void dispose() {
+			label.removePropertyChangeListener("text", this);
+		}
 
-			if (img != null) {
-				setPreferredSize(new Dimension(img.getWidth(this), img.getHeight(this)));
+		/**
+		 * Checks if point is over close image.
+		 * @param point point in pane
+		 * @return <code>true</code> if it is, <code>false</code> otherwise
+		 */
+		boolean isOverClose(Point point) {
+			Image image = closeImage();
+			if (image == null || paintedX < 0) {
+				return false;
 			}
+			int x = paintedX + getIconWidth() - image.getWidth(null);
+			int y = paintedY + (getIconHeight() - image.getHeight(null)) / 2;
+			return point.x >= x && point.x < x + image.getWidth(null)
+					&& point.y >= y && point.y < y + image.getHeight(null);
 		}
 
 		@Override
-		public void paintComponent(Graphics g) {
-			//super.paintComponent(g);
-			if (img != null) {
-				g.drawImage(img, 0, 0, this.getWidth(), this.getHeight(), this);
+		public void propertyChange(PropertyChangeEvent evt) {
+			revalidate();		//tab width depends on title
+			repaint();
+		}
+
+		@Override
+		public int getIconWidth() {
+			Image image = closeImage();
+			int width = getFontMetrics(getFont()).stringWidth(label.getText());
+			return image == null ? width : width + CLOSE_GAP + image.getWidth(null);
+		}
+
+		@Override
+		public int getIconHeight() {
+			Image image = closeImage();
+			int height = getFontMetrics(getFont()).getHeight();
+			return image == null ? height : Math.max(height, image.getHeight(null));
+		}
+
+		@Override
+		public void paintIcon(Component c, Graphics g, int x, int y) {
+			paintedX = x;
+			paintedY = y;
+			Graphics2D g2 = (Graphics2D) g.create();
+			try {
+				Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+				if (hints != null) {
+					g2.addRenderingHints(hints);
+				}
+				FontMetrics metrics = c.getFontMetrics(c.getFont());
+				g2.setFont(c.getFont());
+				g2.setColor(c.getForeground());
+				g2.drawString(label.getText(), x, y + (getIconHeight() - metrics.getHeight()) / 2 + metrics.getAscent());
+
+				Image image = closeImage();
+				if (image != null) {
+					g2.drawImage(image, x + getIconWidth() - image.getWidth(null),
+							y + (getIconHeight() - image.getHeight(null)) / 2, null);
+				}
+			} finally {
+				g2.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Returns close image shared by all tabs, decoding it the first time.
+	 * @return image, <code>null</code> if it can not be read
+	 */
+	private static Image closeImage() {
+		if (!closeLoaded) {
+			closeLoaded = true;
+			try {
+				closeImage = IconCache.get("Close");
+			} catch (IOException ignorable) {
+				//tabs can not be closed by click, close action still works
 			}
 		}
+		return closeImage;
 	}
 }
@@ -0,0 +1,98 @@
+package jnotepadpp;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Creates directories and files which hold unsaved text, like journals and spill
+ * files. On file systems with POSIX permissions only the user can read and write
+ * them: directories are created as <code>rwx------</code> and files as
+ * <code>rw-------</code>, whatever the umask is.
+ * @author Dario Vidas
+ */
+final class PrivateFiles {
+
+	/** Set if file system has POSIX permissions. */
+	private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+	/** Permissions of directories. */
+	private static final Set<PosixFilePermission> DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+	/** Permissions of files. */
+	private static final Set<PosixFilePermission> FILE = PosixFilePermissions.fromString("rw-------");
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private PrivateFiles() {
+	}
+
+	/**
+	 * Creates directory and its missing parents. Permissions of directory are set
+	 * even if it already exists.
+	 * @param dir directory
+	 * @throws IOException if directory can not be created
+	 */
+	static void createDirectories(Path dir) throws IOException {
+		if (!POSIX) {
+			Files.createDirectories(dir);
+			return;
+		}
+		Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(DIRECTORY));
+		Files.setPosixFilePermissions(dir, DIRECTORY);
+	}
+
+	/**
+	 * Creates new empty file with a unique name in directory.
+	 * @param dir directory, created if missing
+	 * @param prefix prefix of file name
+	 * @param suffix suffix of file name
+	 * @return created file
+	 * @throws IOException if file can not be created
+	 */
+	static Path createTempFile(Path dir, String prefix, String suffix) throws IOException {
+		createDirectories(dir);
+		return Files.createTempFile(dir, prefix, suffix, attributes());
+	}
+
+	/**
+	 * Opens file for writing, creating it or truncating it if it exists. Directory of
+	 * file must exist.
+	 * @param file file
+	 * @return channel
+	 * @throws IOException if file can not be opened
+	 */
+	static FileChannel create(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, EnumSet.of(StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), attributes());
+		if (POSIX) {
+			try {
+				Files.setPosixFilePermissions(file, FILE);		//file could exist before
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		return channel;
+	}
+
+	/**
+	 * Returns attributes of created files.
+	 * @return attributes, empty if file system has no POSIX permissions
+	 */
+	private static FileAttribute<?>[] attributes() {
+		if (!POSIX) {
+			return new FileAttribute<?>[0];
+		}
+		return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(FILE)};
+	}
+}
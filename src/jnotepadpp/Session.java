@@ -0,0 +1,141 @@
+package jnotepadpp;
+
+import jnotepadpp.localization.ILocalizationProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Remembers open files between two runs of program. On exit file, caret position and
+ * first visible line of every saved tab are written to
+ * <code>~/.jnotepadpp/session.properties</code>. On start tabs are restored lazily:
+ * only the selected tab loads its file, other tabs are placeholders which load their
+ * file when they are first selected, so startup does not depend on number of tabs.
+ * @author Dario Vidas
+ */
+final class Session {
+
+	/** Session file. */
+	private static final Path FILE = Paths.get(System.getProperty("user.home"), ".jnotepadpp",
+			"session.properties");
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private Session() {
+	}
+
+	/**
+	 * Writes tabs with files to session file. New tabs are not remembered. Session is
+	 * simply not saved if it can not be written.
+	 * @param tabs tabbed pane
+	 */
+	static void save(ModifiedTabbedPane tabs) {
+		Properties properties = new Properties();
+		int count = 0;
+		int selected = 0;
+		for (int i = 0; i < tabs.getTabCount(); i++) {
+			TabComponent tab = (TabComponent) tabs.getComponentAt(i);
+			if (tab.isNew()) {
+				continue;
+			}
+			if (i == tabs.getSelectedIndex()) {
+				selected = count;
+			}
+			String prefix = "tab." + count + ".";
+			properties.setProperty(prefix + "file", tab.getFile().getAbsolutePath());
+			properties.setProperty(prefix + "caret", Integer.toString(tab.getCaretPosition()));
+			properties.setProperty(prefix + "line", Integer.toString(tab.getTopLine()));
+			count++;
+		}
+		properties.setProperty("tab.count", Integer.toString(count));
+		properties.setProperty("selected", Integer.toString(selected));
+
+		try {
+			Files.createDirectories(FILE.getParent());
+			try (OutputStream out = Files.newOutputStream(FILE)) {
+				properties.store(out, "JNotepad++ session");
+			}
+		} catch (IOException e) {
+			//session is not saved
+		}
+	}
+
+	/**
+	 * Restores tabs from session file. Selected tab is added first, so it is the only
+	 * one materialized, other tabs are inserted around it. Files which no longer exist
+	 * or are already open are skipped. Restored tabs come after open tabs, which stay
+	 * selected.
+	 * @param tabs tabbed pane
+	 * @param provider localization provider of tabs
+	 * @return <code>true</code> if at least one tab was restored
+	 */
+	static boolean restore(ModifiedTabbedPane tabs, ILocalizationProvider provider) {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(FILE)) {
+			properties.load(in);
+		} catch (IOException e) {
+			return false;		//no session
+		}
+
+		Set<File> open = new HashSet<>();
+		for (int i = 0; i < tabs.getTabCount(); i++) {
+			open.add(((TabComponent) tabs.getComponentAt(i)).getFile());
+		}
+
+		int count = parse(properties, "tab.count");
+		int selected = parse(properties, "selected");
+		List<TabComponent> restored = new ArrayList<>(count);
+		int selectedIndex = 0;
+		for (int i = 0; i < count; i++) {
+			String prefix = "tab." + i + ".";
+			String name = properties.getProperty(prefix + "file");
+			if (name == null || !new File(name).isFile() || open.contains(new File(name))) {
+				continue;
+			}
+			if (i <= selected) {
+				selectedIndex = restored.size();
+			}
+			TabComponent tab = new TabComponent(new File(name), provider, true);
+			tab.setRestoredPosition(parse(properties, prefix + "caret"), parse(properties, prefix + "line"));
+			restored.add(tab);
+		}
+		if (restored.isEmpty()) {
+			return false;
+		}
+
+		int base = tabs.getTabCount();
+		tabs.add(restored.get(selectedIndex));		//first added tab is selected
+		for (int i = 0; i < selectedIndex; i++) {
+			tabs.insert(restored.get(i), base + i);
+		}
+		for (int i = selectedIndex + 1; i < restored.size(); i++) {
+			tabs.add(restored.get(i));
+		}
+		return true;
+	}
+
+	/**
+	 * Parses integer property.
+	 * @param properties properties
+	 * @param key property key
+	 * @return value, 0 if property is missing or not a non-negative integer
+	 */
+	private static int parse(Properties properties, String key) {
+		try {
+			return Math.max(0, Integer.parseInt(properties.getProperty(key, "0")));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
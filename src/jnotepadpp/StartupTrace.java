@@ -0,0 +1,65 @@
+package jnotepadpp;
+
+/**
+ * Trace of time spent in startup phases, written to standard error when system
+ * property <code>jnotepadpp.startupTrace</code> is <code>true</code>. Every phase is
+ * written when it ends, with its own time and time since <code>main</code> started.
+ * If system property <code>jnotepadpp.startupBudget</code> is set, a warning is
+ * written when the first paint comes later than that many milliseconds.
+ * @author Dario Vidas
+ */
+final class StartupTrace {
+
+	/** Set if trace is written. */
+	private static final boolean ENABLED = Boolean.getBoolean("jnotepadpp.startupTrace");
+
+	/** Most milliseconds until first paint, 0 if there is no budget. */
+	private static final int BUDGET = Integer.getInteger("jnotepadpp.startupBudget", 0);
+
+	/** Nanoseconds in millisecond. */
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	/** Time when trace started. */
+	private static long start = System.nanoTime();
+
+	/** Time when last phase ended. */
+	private static long last = start;
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private StartupTrace() {
+	}
+
+	/**
+	 * Starts trace. Called first thing in <code>main</code>.
+	 */
+	static synchronized void begin() {
+		start = System.nanoTime();
+		last = start;
+	}
+
+	/**
+	 * Ends phase and writes its time.
+	 * @param phase phase name
+	 */
+	static synchronized void mark(String phase) {
+		long now = System.nanoTime();
+		if (ENABLED) {
+			System.err.printf("startup: %-20s %8.1f ms %8.1f ms%n", phase, (now - last) / NANOS_PER_MILLI,
+					(now - start) / NANOS_PER_MILLI);
+		}
+		last = now;
+	}
+
+	/**
+	 * Ends phase which ends with the first paint of frame and checks startup budget.
+	 */
+	static synchronized void firstPaint() {
+		mark("first paint");
+		double total = (last - start) / NANOS_PER_MILLI;
+		if (BUDGET > 0 && total > BUDGET) {
+			System.err.printf("startup: first paint after %.1f ms, over budget of %d ms%n", total, BUDGET);
+		}
+	}
+}
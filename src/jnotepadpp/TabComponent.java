@@ -1,31 +1,52 @@
 package jnotepadpp;
 
+import jnotepadpp.document.EditHistory;
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextSnapshot;
+import jnotepadpp.document.TextStatistics;
 import jnotepadpp.localization.ILocalizationProvider;
+import jnotepadpp.syntax.Lexers;
+import jnotepadpp.syntax.SyntaxHighlighter;
+import jnotepadpp.syntax.SyntaxTextAreaUI;
 
 import java.awt.BorderLayout;
+import java.awt.Dialog;
 import java.awt.Font;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.InputMap;
+import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import static javax.swing.JOptionPane.showMessageDialog;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.JViewport;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 
 /**
  * Class defines tab components which saves file that is opened inside of it.
@@ -36,6 +57,20 @@ public class TabComponent extends JPanel implements DocumentListener {
 	private static final long serialVersionUID = -5727015594528397658L;
 	private static final int FONTSIZE = 12;
 
+	private static final int PERCENT = 100;
+
+	/** Most lines kept while file is followed, older lines are removed. */
+	private static final int FOLLOW_MAX_LINES = 100000;
+
+	/** Most bytes taken by undo history, megabytes are read from <code>jnotepadpp.undoBudget</code>. */
+	private static final long UNDO_BUDGET = Integer.getInteger("jnotepadpp.undoBudget", 16) * 1024L * 1024;
+
+	/** Milliseconds between two checks whether saving is done, while it is awaited. */
+	private static final int SAVE_POLL = 50;
+
+	/** Directory of spill files. */
+	private static final Path SPILL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".jnotepadpp", "spill");
+
 	/** New document counter. */
 	private static int docCount = 1;
 
@@ -57,6 +92,93 @@ public class TabComponent extends JPanel implements DocumentListener {
 	/** Localization provider. */
 	private ILocalizationProvider provider;
 
+	/** Loader of file content, <code>null</code> when file is not being loaded. */
+	private FileLoader loader;
+
+	/** Loading progress, shown only while file is being loaded. */
+	private JProgressBar progress;
+
+	/** Saver of file content, <code>null</code> when file is not being saved. */
+	private FileSaver saver;
+
+	/** File to save when current saving is done. */
+	private File queuedSave;
+
+	/** Counter of text changes. */
+	private int version;
+
+	/** Value of <code>version</code> when saving started. */
+	private int savedVersion;
+
+	/** Set when tab is removed. */
+	private boolean closed;
+
+	/** Size of file in bytes when it was loaded or saved. */
+	private long fileBytes;
+
+	/** Modification time of file when it was loaded or saved. */
+	private long fileTime;
+
+	/** CRC-32 of file when it was loaded or saved, -1 if not known. */
+	private long fileChecksum = -1;
+
+	/** Check of external change, <code>null</code> if file is not being checked. */
+	private FileChangeCheck check;
+
+	/** Caret position set when loading is finished. */
+	private int loadedCaret;
+
+	/** Line scrolled to the top when loading is finished. */
+	private int loadedTopLine;
+
+	/** Notified when file is changed by another program. */
+	private final FileWatcher.Listener watchListener = new FileWatcher.Listener() {
+
+		@Override
+		public void fileChanged() {
+			externalChange();
+		}
+	};
+
+	/** Set if file is followed, even if it is still being loaded. */
+	private boolean following;
+
+	/** Follower of file, <code>null</code> if it is not followed or still being loaded. */
+	private FileFollower follower;
+
+	/** Set while text appended to followed file is inserted. */
+	private boolean appending;
+
+	/** Syntax highlighting of text area, <code>null</code> until tab is materialized. */
+	private SyntaxHighlighter highlighter;
+
+	/** Line, column and length shown when loading is finished, <code>null</code> if none. */
+	private int[] pendingLine;
+
+	/** Set if loaded document is memory-mapped. */
+	private boolean mapped;
+
+	/** Text of dirty hibernated tab, <code>null</code> if there is none. */
+	private File spill;
+
+	/** Writer of spill file, <code>null</code> if text is not being spilled. */
+	private FileSaver spiller;
+
+	/** Value of <code>version</code> when spilling started. */
+	private int spilledVersion;
+
+	/** Set while tab is being hibernated, cleared if tab is used meanwhile. */
+	private boolean hibernating;
+
+	/** Undo history, <code>null</code> until text is loaded. Kept while tab is hibernated. */
+	private EditHistory history;
+
+	/** Journal of unsaved edits, <code>null</code> while tab is clean. Kept while tab is hibernated. */
+	private EditJournal journal;
+
+	/** Text recovered from journal, used instead of file content when tab is materialized. */
+	private TextDocument recovered;
+
 	/**
 	 * Constructor with one argument. If tab has no file (it is blank/new) then file
 	 * is <code>null</code>.
@@ -64,25 +186,75 @@ public class TabComponent extends JPanel implements DocumentListener {
 	 * @param provider localization provider
 	 */
 	public TabComponent(File file, ILocalizationProvider provider) {
+		this(file, provider, false);
+	}
+
+	/**
+	 * Constructor of tab which can be materialized later. Lazy tab has only its
+	 * title, text area is built and file is loaded when tab is first used.
+	 * @param file file that is opened inside of tab, <code>null</code> for new tab
+	 * @param provider localization provider
+	 * @param lazy <code>true</code> if tab is materialized later
+	 * @see #materialize()
+	 */
+	TabComponent(File file, ILocalizationProvider provider, boolean lazy) {
 		super(new BorderLayout());
 		this.file = file;
 		this.provider = provider;
 
-		//initial text area, main title and tab title contents
+		//main title and tab title contents
 		if (file == null) {		//blank/new
-			textArea = new JTextArea();
 			title.setText(provider.getString("newDocumentTag") + docCount);
 			incDocCount();
 			mainTitle = title.getText();
-		} else {				//existing
-			textArea = new JTextArea(readFile());
+		} else {
 			title.setText(file.getName());
 			mainTitle = file.getAbsolutePath();
 		}
+		if (!lazy) {
+			materialize();
+		}
+	}
+
+	/**
+	 * Builds text area and starts loading file, if it was not done already. Text of
+	 * dirty hibernated tab is loaded from spill file.
+	 */
+	void materialize() {
+		hibernating = false;
+		if (textArea != null || closed) {
+			return;
+		}
+		textArea = new JTextArea(new TextDocument());
+
+		//UI is set before loading, it replaces the caret
+		highlighter = new SyntaxHighlighter(textArea);
+		textArea.setUI(new SyntaxTextAreaUI(highlighter));
+		highlighter.setLexer(Lexers.forFile(file));
+		if (recovered != null) {
+			textArea.setDocument(recovered);
+			recovered = null;
+			textArea.getDocument().addDocumentListener(this);
+			attachHistory(false);
+			journal.attach((TextDocument) textArea.getDocument());
+			if (file != null) {
+				FileWatcher.getInstance().watch(file, watchListener);
+			}
+		} else if (spill != null) {		//document gets listener when spill file is loaded
+			load(spill);
+			if (file != null) {
+				FileWatcher.getInstance().watch(file, watchListener);
+			}
+		} else if (file != null) {		//existing file gets listener when loaded
+			load(file);
+			FileWatcher.getInstance().watch(file, watchListener);
+		} else {
+			textArea.getDocument().addDocumentListener(this);
+			attachHistory(false);
+		}
 
 		Font font = new Font("Lucida Console", Font.PLAIN, FONTSIZE);
 		textArea.setFont(font);
-		textArea.getDocument().addDocumentListener(this);
 
 		//overriding system hotkeys
 		InputMap inMap = textArea.getInputMap();
@@ -92,6 +264,269 @@ public class TabComponent extends JPanel implements DocumentListener {
 
 		JScrollPane pane = new JScrollPane(textArea);
 		add(pane);
+		revalidate();
+	}
+
+	/**
+	 * Starts recording undo history of current document.
+	 * @param keep <code>true</code> if document has the same text as the one history
+	 *        was recorded for, so existing records are kept
+	 */
+	private void attachHistory(boolean keep) {
+		TextDocument document = (TextDocument) textArea.getDocument();
+		if (keep && history != null) {
+			history.attach(document);
+		} else {
+			if (history != null) {
+				history.detach();
+			}
+			history = new EditHistory(document, UNDO_BUDGET);
+		}
+	}
+
+	/**
+	 * Undoes last edit.
+	 */
+	void undo() {
+		materialize();
+		if (history != null) {
+			moveCaret(history.undo());
+		}
+	}
+
+	/**
+	 * Redoes last undone edit.
+	 */
+	void redo() {
+		materialize();
+		if (history != null) {
+			moveCaret(history.redo());
+		}
+	}
+
+	/**
+	 * Moves caret after undo or redo.
+	 * @param offset new caret position, -1 if nothing was done
+	 */
+	private void moveCaret(int offset) {
+		if (offset >= 0) {
+			textArea.setCaretPosition(offset);
+			textArea.requestFocusInWindow();
+		}
+	}
+
+	/**
+	 * Sets text recovered from journal after the program did not exit normally. Tab
+	 * is dirty and its journal goes on from recovered text.
+	 * @param document recovered text, put into text area when tab is materialized
+	 * @param recoveredJournal journal of recovered text
+	 */
+	void recover(TextDocument document, EditJournal recoveredJournal) {
+		recovered = document;
+		journal = recoveredJournal;
+		if (file != null) {
+			fileBytes = file.length();
+			fileTime = file.lastModified();
+		}
+		dirty = true;
+		title.setText("*" + title.getText());
+		mainTitle = "*" + mainTitle;
+	}
+
+	/**
+	 * Starts journal of unsaved edits when tab becomes dirty. Journal of a saved file
+	 * starts from the file and records the edit, otherwise it starts from current
+	 * text which already has the edit.
+	 * @param e edit which made tab dirty
+	 */
+	private void startJournal(DocumentEvent e) {
+		TextDocument document = (TextDocument) textArea.getDocument();
+		if (file != null && !following) {
+			journal = EditJournal.fromFile(file, fileBytes, fileTime);
+			journal.attach(document);		//record reads text of attached document
+			journal.record(e);
+		} else {
+			journal = EditJournal.fromSnapshot(file, document.snapshot());
+			journal.attach(document);
+		}
+	}
+
+	/**
+	 * Deletes journal, tab has no unsaved edits.
+	 */
+	private void deleteJournal() {
+		if (journal != null) {
+			journal.delete();
+			journal = null;
+		}
+	}
+
+	/**
+	 * Deletes journal of unsaved edits which user does not want to save. Called
+	 * before tab is closed without saving.
+	 */
+	void discardChanges() {
+		deleteJournal();
+	}
+
+	/**
+	 * Stops journal of closed tab. Journal of dirty tab is kept until tab is saved,
+	 * so edits are recovered if saving fails or does not finish.
+	 */
+	private void closeJournal() {
+		if (!dirty) {
+			deleteJournal();
+		} else if (journal != null) {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Estimates heap taken by text of tab. Tab that is loading or not materialized
+	 * takes none.
+	 * @return estimated size in bytes
+	 * @see TextDocument#getHeapSize()
+	 */
+	long getHeapSize() {
+		if (textArea == null || loader != null) {
+			return 0;
+		}
+		return ((TextDocument) textArea.getDocument()).getHeapSize();
+	}
+
+	/**
+	 * Drops text area and document of tab to free memory, tab is materialized again
+	 * when it is used. Clean tab loads its file again, text of dirty tab is first
+	 * written to a spill file on background thread. Tab which is loading, saving,
+	 * followed or memory-mapped is not hibernated.
+	 * @return <code>true</code> if hibernation started, <code>false</code> otherwise
+	 */
+	boolean hibernate() {
+		if (textArea == null || loader != null || saver != null || spiller != null || check != null
+				|| following || mapped) {
+			return false;
+		}
+		if (!dirty) {
+			dematerialize();
+			return true;
+		}
+
+		try {
+			spill = PrivateFiles.createTempFile(SPILL_DIRECTORY, "jnotepadpp", ".spill").toFile();
+		} catch (IOException e) {
+			return false;		//tab stays in memory
+		}
+		spill.deleteOnExit();
+		spiller = new FileSaver(getSnapshot(), spill);
+		spilledVersion = version;
+		hibernating = true;
+		spiller.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getNewValue() == SwingWorker.StateValue.DONE) {
+					spilled();
+				}
+			}
+		});
+		spiller.execute();
+		return true;
+	}
+
+	/**
+	 * Called when spill file is written. Tab is dematerialized unless it was used or
+	 * changed meanwhile, in which case spill file is thrown away.
+	 */
+	private void spilled() {
+		FileSaver finished = spiller;
+		spiller = null;
+
+		boolean written;
+		try {
+			finished.get();
+			written = true;
+		} catch (InterruptedException | ExecutionException e) {
+			written = false;
+		}
+		if (written && hibernating && !closed && version == spilledVersion) {
+			hibernating = false;
+			dematerialize();
+			return;
+		}
+
+		hibernating = false;
+		spill.delete();
+		spill = null;
+		if (closed) {
+			closeDocument();
+		} else {
+			externalChange();		//change could be ignored while spilling
+		}
+	}
+
+	/**
+	 * Drops text area and document, keeping caret position and top line.
+	 */
+	private void dematerialize() {
+		loadedCaret = textArea.getCaretPosition();
+		loadedTopLine = getTopLine();
+		highlighter.setLexer(null);
+		if (file != null) {
+			FileWatcher.getInstance().unwatch(file, watchListener);
+		}
+		if (history != null) {
+			history.detach();
+		}
+		if (journal != null) {
+			journal.detach();
+		}
+		textArea.getDocument().removeDocumentListener(this);
+		closeDocument();
+		removeAll();
+		textArea = null;
+		highlighter = null;
+		revalidate();
+	}
+
+	/**
+	 * Checks if tab is materialized.
+	 * @return <code>true</code> if it is, <code>false</code> otherwise
+	 */
+	boolean isMaterialized() {
+		return textArea != null;
+	}
+
+	/**
+	 * Sets caret position and line at the top of view, used when tab is restored.
+	 * They are applied when file is loaded.
+	 * @param caret caret position
+	 * @param topLine line index at the top of view
+	 */
+	void setRestoredPosition(int caret, int topLine) {
+		loadedCaret = caret;
+		loadedTopLine = topLine;
+	}
+
+	/**
+	 * Returns caret position, or position that will be set when file is loaded.
+	 * @return caret position
+	 */
+	int getCaretPosition() {
+		return textArea == null || loader != null ? loadedCaret : textArea.getCaretPosition();
+	}
+
+	/**
+	 * Returns index of line at the top of view, or line that will be scrolled to
+	 * when file is loaded.
+	 * @return line index
+	 */
+	int getTopLine() {
+		if (textArea == null || loader != null) {
+			return loadedTopLine;
+		}
+		Rectangle visible = textArea.getVisibleRect();
+		int offset = textArea.viewToModel2D(new Point(visible.x, visible.y));
+		return textArea.getDocument().getDefaultRootElement().getElementIndex(Math.max(offset, 0));
 	}
 
 	/**
@@ -102,53 +537,213 @@ public class TabComponent extends JPanel implements DocumentListener {
 	}
 
 	/**
-	 * Helper method that reads file content into string.
-	 * @return string
+	 * Starts loading file content on background thread. Text area is read-only and
+	 * progress bar is shown until loading is finished. Spill file is never mapped,
+	 * it is deleted when loaded.
+	 * @param source file of tab or spill file
+	 * @see FileLoader
 	 */
-	private String readFile() {
-		StringBuilder builder = new StringBuilder();
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-				new FileInputStream(file),
-				StandardCharsets.UTF_8))) {
+	private void load(File source) {
+		textArea.setEditable(false);
+		((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+		progress = new JProgressBar(0, PERCENT);
+		progress.setStringPainted(true);
+		add(progress, BorderLayout.SOUTH);
 
-			final int buffSize = 4096;
-			char[] buffer = new char[buffSize];
-			int len;
-			while ((len = reader.read(buffer)) != -1) {
-				builder.append(buffer, 0, len);
+		loader = new FileLoader(source, textArea.getDocument(), source != spill);
+		loader.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("progress".equals(evt.getPropertyName())) {
+					progress.setValue((Integer) evt.getNewValue());
+				} else if (evt.getNewValue() == SwingWorker.StateValue.DONE) {
+					loaded();
+				}
 			}
-		} catch (IOException e) {
+		});
+		loader.execute();
+	}
+
+	/**
+	 * Called when loader is finished. Puts mapped document into text area (if file
+	 * was mapped) and makes text area editable. Spill file is deleted when loaded,
+	 * if its text can not be read the file of tab is loaded instead.
+	 */
+	private void loaded() {
+		FileLoader finished = loader;
+		loader = null;
+		File unspilled = spill;
+		spill = null;
+		long previousChecksum = fileChecksum;
+		remove(progress);
+		progress = null;
+		revalidate();
+		if (unspilled != null) {
+			unspilled.delete();
+		}
+		if (finished.isCancelled()) {
+			return;
+		}
+
+		boolean read = true;
+		try {
+			Document document = finished.get();
+			if (unspilled == null) {
+				mapped = document != null;
+				if (mapped) {
+					textArea.setDocument(document);
+				}
+				fileBytes = finished.getLoadedBytes();
+				fileChecksum = finished.getChecksum();
+				fileTime = file.lastModified();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			read = false;
 			showMessageDialog(
 					getTopLevelAncestor(),
 					provider.getString("readingFileContentError"),
 					provider.getString("error"),
 					JOptionPane.ERROR_MESSAGE);
 		}
-		return builder.toString();
+		if (unspilled != null && !read) {
+			textArea.setDocument(new TextDocument());		//text of hibernated tab is lost
+			if (file != null) {
+				load(file);
+				return;
+			}
+		}
+
+		textArea.getDocument().addDocumentListener(this);
+		if (unspilled == null) {
+			attachHistory(previousChecksum >= 0 && previousChecksum == fileChecksum);		//same text after hibernation
+		} else {
+			attachHistory(read);
+			if (read && journal != null) {
+				journal.attach((TextDocument) textArea.getDocument());
+			}
+		}
+		textArea.setCaretPosition(Math.min(loadedCaret, textArea.getDocument().getLength()));
+		loadedCaret = 0;
+		((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.UPDATE_WHEN_ON_EDT);
+		textArea.setEditable(true);
+		if (loadedTopLine > 0) {
+			scrollToLine(loadedTopLine);
+			loadedTopLine = 0;
+		}
+		if (pendingLine != null) {
+			showLine(pendingLine[0], pendingLine[1], pendingLine[2]);
+			pendingLine = null;
+		}
+		if (following) {
+			startFollowing();
+		}
+		if (unspilled != null && read && file != null) {
+			externalChange();		//changes made while tab was hibernated
+		}
 	}
 
 	/**
-	 * Method saves current text area content into file from which it read. This
-	 * method also uses dirty bit for saving. This method is used in "save" action.
+	 * Scrolls view so that line is at the top, once text area is laid out.
+	 * @param line line index
 	 */
-	void saveFile() {
-		if (dirty) {
-			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(file),
-					StandardCharsets.UTF_8))) {
+	private void scrollToLine(final int line) {
+		SwingUtilities.invokeLater(new Runnable() {
 
-				writer.write(textArea.getText());
+			@Override
+			public void run() {
+				Element root = textArea.getDocument().getDefaultRootElement();
+				try {
+					Rectangle2D start = textArea.modelToView2D(
+							root.getElement(Math.min(line, root.getElementCount() - 1)).getStartOffset());
+					if (start != null && textArea.getParent() instanceof JViewport) {
+						((JViewport) textArea.getParent()).setViewPosition(new Point(0, (int) start.getY()));
+					}
+				} catch (BadLocationException ignorable) {
+					//line start is inside of document
+				}
+			}
+		});
+	}
+
+	/**
+	 * Selects text in a line and scrolls to it. If file is still being loaded, text is
+	 * selected when loading is finished.
+	 * @param line line index, starting from 0
+	 * @param column offset of selection in line
+	 * @param length selection length
+	 */
+	void showLine(int line, int column, int length) {
+		materialize();
+		if (loader != null) {
+			pendingLine = new int[] {line, column, length};
+			return;
+		}
+		Element root = textArea.getDocument().getDefaultRootElement();
+		Element element = root.getElement(Math.min(line, root.getElementCount() - 1));
+		int start = Math.min(element.getStartOffset() + column, element.getEndOffset() - 1);
+		int end = Math.min(start + length, element.getEndOffset() - 1);
+		textArea.select(start, end);
+		textArea.getCaret().setSelectionVisible(true);
+		textArea.requestFocusInWindow();
+	}
+
+	/**
+	 * Releases resources held by tab. Called when tab is removed. Cancels loading if
+	 * file is still being loaded, saving is never cancelled. Journal of unsaved edits
+	 * is kept unless they were discarded.
+	 * @see #discardChanges()
+	 */
+	void close() {
+		if (textArea == null) {		//never materialized or hibernated
+			closed = true;
+			if (spill != null) {
+				spill.delete();
+				spill = null;
+			}
+			closeJournal();
+			return;
+		}
+		closed = true;
+		highlighter.setLexer(null);
+		if (history != null) {
+			history.detach();
+			history = null;
+		}
+		closeJournal();
+		stopFollowing();
+		if (file != null) {
+			FileWatcher.getInstance().unwatch(file, watchListener);
+		}
+		if (loader != null) {
+			loader.cancel(true);
+		}
+		if (saver == null && spiller == null) {		//otherwise closed when saved or spilled
+			closeDocument();
+		}
+	}
+
+	/**
+	 * Closes memory-mapped document.
+	 */
+	private void closeDocument() {
+		Document document = textArea.getDocument();
+		if (document instanceof TextDocument) {
+			try {
+				((TextDocument) document).close();
 			} catch (IOException ignorable) {
-				showMessageDialog(
-						getTopLevelAncestor(),
-						provider.getString("writingFileContentError"),
-						provider.getString("error"),
-						JOptionPane.ERROR_MESSAGE);
+				//nothing can be done, tab is gone anyway
 			}
+		}
+	}
 
-			dirty = false;
-			this.title.setText(file.getName());
-			this.mainTitle = file.getAbsolutePath();
+	/**
+	 * Method saves current text area content into file from which it read. This
+	 * method also uses dirty bit for saving. This method is used in "save" action.
+	 */
+	void saveFile() {
+		if (dirty) {
+			save(file);
 		}
 	}
 
@@ -158,12 +753,83 @@ public class TabComponent extends JPanel implements DocumentListener {
 	 * @param file file
 	 */
 	void saveFile(File file) {
-		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-				new FileOutputStream(file),
-				StandardCharsets.UTF_8))) {
+		save(file);
+	}
+
+	/**
+	 * Starts saving text on background thread. Text is saved from snapshot so it can
+	 * be edited while saving. If tab is already being saved, saving is repeated after
+	 * current one finishes. Mapped document saved over its own file is read into
+	 * memory first.
+	 * @param target target file
+	 * @see FileSaver
+	 */
+	private void save(File target) {
+		if (saver != null) {
+			queuedSave = target;
+			return;
+		}
 
-			writer.write(textArea.getText());
-		} catch (IOException ignorable) {
+		savedVersion = version;
+		if (mapped && target.equals(file)) {
+			saver = new FileSaver(getSnapshot(), target, (TextDocument) textArea.getDocument());
+			mapped = false;
+		} else {
+			saver = new FileSaver(getSnapshot(), target);
+		}
+		saver.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getNewValue() == SwingWorker.StateValue.DONE && evt.getSource() == saver) {
+					saved();
+				}
+			}
+		});
+		saver.execute();
+	}
+
+	/**
+	 * Called when saver is finished. Tab becomes clean if text was not changed while
+	 * it was being saved.
+	 */
+	private void saved() {
+		FileSaver finished = saver;
+		saver = null;
+
+		try {
+			finished.get();
+			if (!finished.getFile().equals(file)) {
+				if (file != null) {
+					FileWatcher.getInstance().unwatch(file, watchListener);
+				}
+				if (!closed) {
+					FileWatcher.getInstance().watch(finished.getFile(), watchListener);
+				}
+			}
+			file = finished.getFile();
+			fileBytes = file.length();
+			fileTime = file.lastModified();
+			fileChecksum = finished.getChecksum();
+			if (follower != null) {		//follow saved file from its end
+				stopFollowing();
+				startFollowing();
+			}
+			if (highlighter.getLexer() != Lexers.forFile(file)) {
+				highlighter.setLexer(Lexers.forFile(file));
+			}
+			dirty = version != savedVersion;
+			if (!dirty) {
+				deleteJournal();
+			} else if (journal != null && !closed) {
+				journal.rebase(file, ((TextDocument) textArea.getDocument()).snapshot());
+			}
+			title.setText((dirty ? "*" : "") + file.getName());
+			mainTitle = (dirty ? "*" : "") + file.getAbsolutePath();
+			if (getTopLevelAncestor() instanceof JnotepadPP) {
+				((JnotepadPP) getTopLevelAncestor()).changeTitle();
+			}
+		} catch (InterruptedException | ExecutionException e) {
 			showMessageDialog(
 					getTopLevelAncestor(),
 					provider.getString("writingFileContentError"),
@@ -171,34 +837,252 @@ public class TabComponent extends JPanel implements DocumentListener {
 					JOptionPane.ERROR_MESSAGE);
 		}
 
-		this.file = file;
-		dirty = false;
-		this.title.setText(file.getName());
-		this.mainTitle = file.getAbsolutePath();
+		if (closed) {
+			closeDocument();
+		} else if (queuedSave != null) {
+			File next = queuedSave;
+			queuedSave = null;
+			save(next);
+		}
 	}
 
 	/**
-	 * Method calculates statistics and returns them as string. Method calculates
-	 * number of lines, character count and non-blank character count.
-	 * @return string representing statistics
+	 * Waits until tab is saved. Modal dialog with progress bar is shown meanwhile, it
+	 * keeps dispatching events, so saving finishes through <code>saved()</code> as
+	 * usual and window is still painted.
+	 * @return <code>true</code> if tab has no unsaved changes after saving
 	 */
-	String getStatistics() {
-		String text = textArea.getText();
-		int rowCount = 1;
-		final int allChars = text.length();
-		int noWhitespace = 0;
-
-		for (int i = 0; i < allChars; i++) {
-			char c = text.charAt(i);
-			if (c != '\t' && c != '\n' && c != '\r' && c != ' ' && c != '\0') {
-				noWhitespace++;
+	boolean awaitSave() {
+		if (saver != null) {
+			final JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), provider.getString("saving"),
+					Dialog.ModalityType.APPLICATION_MODAL);
+			JProgressBar bar = new JProgressBar();
+			bar.setIndeterminate(true);
+			dialog.add(bar);
+			dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+			dialog.pack();
+			dialog.setLocationRelativeTo(getTopLevelAncestor());
+
+			Timer timer = new Timer(SAVE_POLL, new ActionListener() {
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					if (saver == null) {		//queued save is done as well
+						((Timer) e.getSource()).stop();
+						dialog.dispose();
+					}
+				}
+			});
+			timer.start();
+			dialog.setVisible(true);
+		}
+		return !dirty;
+	}
+
+	/**
+	 * Checks if file is followed.
+	 * @return <code>true</code> if it is, <code>false</code> otherwise
+	 */
+	boolean isFollowing() {
+		return following;
+	}
+
+	/**
+	 * Turns following of file on or off. Text appended to followed file is appended
+	 * to text area without making tab dirty. If caret is at the end of text, text
+	 * area scrolls to show appended text. Only last {@value #FOLLOW_MAX_LINES} lines
+	 * are kept. New tab can not be followed.
+	 * @param follow <code>true</code> to follow file
+	 */
+	void setFollowing(boolean follow) {
+		if (file == null || follow == following) {
+			return;
+		}
+		materialize();
+		following = follow;
+		if (!follow) {
+			stopFollowing();
+		} else if (loader == null) {		//otherwise started when loaded
+			startFollowing();
+		}
+	}
+
+	/**
+	 * Starts follower from the end of loaded or saved content.
+	 */
+	private void startFollowing() {
+		follower = new FileFollower(file.toPath(), fileBytes, new FileFollower.Listener() {
+
+			@Override
+			public void appended(FileFollower source, String text, boolean truncated) {
+				if (source == follower) {		//not stopped meanwhile
+					append(text, truncated);
+				}
+			}
+		});
+		follower.start();
+	}
+
+	/**
+	 * Stops follower.
+	 */
+	private void stopFollowing() {
+		if (follower != null) {
+			follower.stop();
+			follower = null;
+		}
+	}
+
+	/**
+	 * Appends text of followed file in one insert and removes lines over the limit
+	 * from the start of text.
+	 * @param text appended text
+	 * @param truncated <code>true</code> if file was truncated and text replaces
+	 *        current text
+	 */
+	private void append(String text, boolean truncated) {
+		Document document = textArea.getDocument();
+		boolean atEnd = textArea.getCaretPosition() == document.getLength();
+		appending = true;
+		try {
+			if (truncated) {
+				document.remove(0, document.getLength());
 			}
-			if (c == '\n' || c == '\r') {
-				rowCount++;
+			document.insertString(document.getLength(), text, null);
+
+			Element root = document.getDefaultRootElement();
+			int excess = root.getElementCount() - FOLLOW_MAX_LINES;
+			if (excess > 0) {
+				document.remove(0, root.getElement(excess).getStartOffset());
 			}
+		} catch (BadLocationException ignorable) {
+			//offsets are inside of document
+		} finally {
+			appending = false;
+		}
+		if (history != null) {
+			history.clear();		//appended text is not an edit, offsets of records changed
 		}
+		if (atEnd) {
+			textArea.setCaretPosition(document.getLength());
+		}
+	}
 
-		return String.format(provider.getString("statsStringFormat"), allChars, noWhitespace, rowCount);
+	/**
+	 * Called when file may have been changed by another program. Files that are
+	 * being loaded, saved or followed are not checked. If size and modification time
+	 * are the same as when file was loaded or saved, file is unchanged, so saves of
+	 * this tab are ignored. Otherwise file content is checked on background thread,
+	 * and if it changed, clean tab is reloaded and user is asked what to do with a
+	 * dirty one.
+	 */
+	private void externalChange() {
+		if (closed || loader != null || saver != null || spiller != null || following || check != null) {
+			return;
+		}
+		if (!file.isFile() || file.length() == fileBytes && file.lastModified() == fileTime) {
+			return;
+		}
+
+		check = new FileChangeCheck(file, fileBytes, fileChecksum);
+		check.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getNewValue() == SwingWorker.StateValue.DONE) {
+					checked();
+				}
+			}
+		});
+		check.execute();
+	}
+
+	/**
+	 * Called when check of external change is finished. Changes of mapped document
+	 * can not be kept, because its unchanged text is read from the changed file, so
+	 * it is always reloaded.
+	 */
+	private void checked() {
+		FileChangeCheck finished = check;
+		check = null;
+		if (closed || textArea == null || loader != null || saver != null || spiller != null || following) {
+			return;
+		}
+
+		boolean changed;
+		try {
+			changed = finished.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return;		//file can not be read, it is checked again on next change
+		}
+		if (!changed) {
+			fileTime = file.lastModified();		//only touched
+			return;
+		}
+
+		if (dirty && mapped) {
+			showMessageDialog(
+					getTopLevelAncestor(),
+					provider.getString("mappedFileChanged") + " " + file.getName() + ".",
+					provider.getString("fileChanged"),
+					JOptionPane.WARNING_MESSAGE);
+		} else if (dirty) {
+			int option = JOptionPane.showOptionDialog(
+					getTopLevelAncestor(),
+					provider.getString("fileChangedQuestion") + " " + file.getName() + "?",
+					provider.getString("fileChanged"),
+					JOptionPane.YES_NO_OPTION,
+					JOptionPane.WARNING_MESSAGE,
+					null,
+					null,
+					null);
+			if (option != 0) {		//keep changes, do not ask again for this change
+				fileBytes = file.length();
+				fileTime = file.lastModified();
+				fileChecksum = -1;
+				return;
+			}
+		}
+		reload();
+	}
+
+	/**
+	 * Loads file again into new document, keeping caret position. Changes in tab are
+	 * lost.
+	 */
+	private void reload() {
+		loadedCaret = textArea.getCaretPosition();
+		if (history != null) {
+			history.detach();
+			history = null;
+		}
+		textArea.getDocument().removeDocumentListener(this);
+		closeDocument();
+		textArea.setDocument(new TextDocument());
+
+		deleteJournal();
+		if (dirty) {
+			dirty = false;
+			title.setText(file.getName());
+			mainTitle = file.getAbsolutePath();
+			if (getTopLevelAncestor() instanceof JnotepadPP) {
+				((JnotepadPP) getTopLevelAncestor()).changeTitle();
+			}
+		}
+		load(file);
+	}
+
+	/**
+	 * Method returns statistics as string: character count, non-blank character
+	 * count, number of lines, number of words and size in UTF-8. Counts are kept by
+	 * the document on every edit, so nothing is computed here.
+	 * @return string representing statistics
+	 */
+	String getStatistics() {
+		materialize();
+		TextStatistics stats = ((TextDocument) textArea.getDocument()).getStatistics();
+		return String.format(provider.getString("statsStringFormat"), stats.getChars(), stats.getNonBlank(),
+				stats.getLines(), stats.getWords(), stats.getBytes());
 	}
 
 	/**
@@ -209,6 +1093,32 @@ public class TabComponent extends JPanel implements DocumentListener {
 		return dirty;
 	}
 
+	/**
+	 * Returns snapshot of current text, which can be read on any thread.
+	 * @return snapshot of text
+	 */
+	TextSnapshot getSnapshot() {
+		materialize();
+		return ((TextDocument) textArea.getDocument()).snapshot();
+	}
+
+	/**
+	 * Checks if file content is still being loaded. Tab that is not materialized is
+	 * not loaded either.
+	 * @return <code>true</code> if it is, <code>false</code> otherwise
+	 */
+	boolean isLoading() {
+		return textArea == null || loader != null;
+	}
+
+	/**
+	 * Returns file opened in tab.
+	 * @return file, <code>null</code> if tab is new
+	 */
+	File getFile() {
+		return file;
+	}
+
 	/**
 	 * Checks if this tab has not yet been saved for the first time.
 	 * @return <code>true</code> if it's new, <code>false</code> otherwise
@@ -237,6 +1147,7 @@ public class TabComponent extends JPanel implements DocumentListener {
 	 * Cuts selected text from text area into system clipboard.
 	 */
 	void cut() {
+		materialize();
 		textArea.cut();
 	}
 
@@ -244,6 +1155,7 @@ public class TabComponent extends JPanel implements DocumentListener {
 	 * Copies selected text from text area into system clipboard.
 	 */
 	void copy() {
+		materialize();
 		textArea.copy();
 	}
 
@@ -251,9 +1163,19 @@ public class TabComponent extends JPanel implements DocumentListener {
 	 * Pastes text from system clipboard to text area.
 	 */
 	void paste() {
+		materialize();
 		textArea.paste();
 	}
 
+	/**
+	 * Returns text area of this tab.
+	 * @return text area
+	 */
+	JTextArea getTextArea() {
+		materialize();
+		return textArea;
+	}
+
 	/*
 	 * next few methods are used to set dirty bit which is later used as saving
 	 * condition, just like real notepad :D
@@ -261,28 +1183,35 @@ public class TabComponent extends JPanel implements DocumentListener {
 
 	@Override
 	public void insertUpdate(DocumentEvent e) {
-		changed();
+		changed(e);
 	}
 
 	@Override
 	public void removeUpdate(DocumentEvent e) {
-		changed();
+		changed(e);
 	}
 
 	@Override
 	public void changedUpdate(DocumentEvent e) {
-		changed();
+		changed(e);
 	}
 
 	/**
-	 * If text has been changed, sets <code>dirty</code> to <code>true</code>.
+	 * If text has been changed, sets <code>dirty</code> to <code>true</code> and
+	 * starts journal of unsaved edits. Text appended to followed file does not make
+	 * tab dirty.
+	 * @param e document event
 	 */
-	private void changed() {
-		if (!dirty) {
+	private void changed(DocumentEvent e) {
+		version++;
+		if (!dirty && !appending) {
 			title.setText("*" + title.getText());
 			mainTitle = "*" + mainTitle;
-			((JnotepadPP) getTopLevelAncestor()).changeTitle();
+			if (getTopLevelAncestor() instanceof JnotepadPP) {
+				((JnotepadPP) getTopLevelAncestor()).changeTitle();
+			}
 			dirty = true;
+			startJournal(e);
 		}
 	}
 
@@ -0,0 +1,89 @@
+package jnotepadpp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps text of open tabs within a memory budget. Tabs are ordered by last selection
+ * and when text of all tabs takes more than the budget, least recently selected tabs
+ * are hibernated until it fits: their text areas are dropped, text of dirty tabs is
+ * spilled to a temporary file first. Hibernated tab is materialized again when it is
+ * selected. Selected tab is never hibernated. Budget in megabytes is read from system
+ * property <code>jnotepadpp.memoryBudget</code>, default is {@value #DEFAULT_BUDGET}.
+ * @author Dario Vidas
+ * @see TabComponent#hibernate()
+ */
+final class TabHibernator {
+
+	/** Default budget in megabytes. */
+	private static final int DEFAULT_BUDGET = 256;
+
+	/** Bytes in megabyte. */
+	private static final long MEGABYTE = 1024 * 1024;
+
+	/** Tabbed pane. */
+	private final ModifiedTabbedPane tabs;
+
+	/** Most text size in bytes. */
+	private final long budget;
+
+	/** Tabs from least to most recently selected. */
+	private final Set<TabComponent> order = new LinkedHashSet<>();
+
+	/**
+	 * Constructor with budget read from system property.
+	 * @param tabs tabbed pane
+	 */
+	TabHibernator(ModifiedTabbedPane tabs) {
+		this(tabs, Integer.getInteger("jnotepadpp.memoryBudget", DEFAULT_BUDGET) * MEGABYTE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param tabs tabbed pane
+	 * @param budget most text size in bytes
+	 */
+	TabHibernator(ModifiedTabbedPane tabs, long budget) {
+		this.tabs = tabs;
+		this.budget = budget;
+	}
+
+	/**
+	 * Marks tab as most recently selected and hibernates least recently selected tabs
+	 * if text of all tabs does not fit into budget.
+	 * @param selected selected tab, can be <code>null</code>
+	 */
+	void selected(TabComponent selected) {
+		if (selected != null) {
+			order.remove(selected);
+			order.add(selected);
+		}
+		long total = 0;
+		Iterator<TabComponent> it = order.iterator();
+		while (it.hasNext()) {
+			TabComponent tab = it.next();
+			if (tab.getParent() != tabs) {		//closed
+				it.remove();
+			} else {
+				total += tab.getHeapSize();
+			}
+		}
+		if (total <= budget) {
+			return;
+		}
+
+		List<TabComponent> candidates = new ArrayList<>(order);
+		for (TabComponent tab : candidates) {
+			if (total <= budget) {
+				break;
+			}
+			long size = tab.getHeapSize();
+			if (tab != selected && size > 0 && tab.hibernate()) {
+				total -= size;
+			}
+		}
+	}
+}
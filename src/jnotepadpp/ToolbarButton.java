@@ -21,6 +21,9 @@ public class ToolbarButton extends JButton {
 	/** Button action. */
 	private Action action;
 
+	/** Listener of provider. */
+	private ILocalizationListener listener;
+
 	/**
 	 * Constructor that sets button icon, button action and button tool tip.
 	 * @param icon icon
@@ -32,13 +35,14 @@ public class ToolbarButton extends JButton {
 		this.flp = flp;
 		this.action = action;
 		addActionListener(action);
-		this.flp.addLocalizationListener(new ILocalizationListener() {
+		listener = new ILocalizationListener() {
 
 			@Override
 			public void localizationChanged() {
 				updateToolTip();
 			}
-		});
+		};
+		this.flp.addLocalizationListener(listener);
 		updateToolTip();
 	}
 
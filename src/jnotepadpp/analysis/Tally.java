@@ -0,0 +1,163 @@
+package jnotepadpp.analysis;
+
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mutable counts of one part of text. Parts are always split after a line end, so
+ * no line or word goes over two parts and counts of neighbouring parts are simply
+ * added together with {@link #merge(Tally)}.
+ * @author Dario Vidas
+ */
+final class Tally {
+
+	/** Number of line ends. */
+	long lineEnds;
+
+	/** Number of characters. */
+	long chars;
+
+	/** Number of whitespace characters. */
+	long whitespace;
+
+	/** Length of longest line without line end. */
+	long longestLine;
+
+	/** Size of text in UTF-8, file chunks set it to their real size. */
+	long bytes;
+
+	/** Set if text is not valid UTF-8 or has unpaired surrogates. */
+	boolean invalid;
+
+	/** Occurrences of every word, counters are mutable so map is updated in place. */
+	Map<String, int[]> words = new HashMap<>();
+
+	/** Length of current line. */
+	private long lineLength;
+
+	/** Set if last char was <code>'\r'</code>. */
+	private boolean pendingReturn;
+
+	/** Set if last char was high surrogate. */
+	private boolean pendingSurrogate;
+
+	/** Word that is being read. */
+	private final StringBuilder word = new StringBuilder();
+
+	/**
+	 * Counts decoded characters.
+	 * @param chars characters
+	 */
+	void append(CharBuffer chars) {
+		append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+	}
+
+	/**
+	 * Counts characters.
+	 * @param array characters
+	 * @param offset offset in array
+	 * @param len number of characters
+	 */
+	void append(char[] array, int offset, int len) {
+		chars += len;
+		for (int i = offset, end = offset + len; i < end; i++) {
+			char c = array[i];
+			if (Character.isLetterOrDigit(c)) {
+				word.append(Character.toLowerCase(c));
+			} else if (word.length() > 0) {
+				endWord();
+			}
+
+			if (pendingSurrogate != Character.isLowSurrogate(c)) {
+				invalid = true;
+			}
+			pendingSurrogate = Character.isHighSurrogate(c);
+			bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+
+			if (c == '\n') {
+				if (!pendingReturn) {
+					endLine();
+				}
+				pendingReturn = false;
+				whitespace++;
+			} else if (c == '\r') {
+				endLine();
+				pendingReturn = true;
+				whitespace++;
+			} else {
+				pendingReturn = false;
+				lineLength++;
+				if (Character.isWhitespace(c)) {
+					whitespace++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ends counting. Must be called after last part of text is appended.
+	 * @return this tally
+	 */
+	Tally finish() {
+		if (word.length() > 0) {
+			endWord();
+		}
+		if (pendingSurrogate) {
+			invalid = true;
+		}
+		longestLine = Math.max(longestLine, lineLength);
+		lineLength = 0;
+		return this;
+	}
+
+	/**
+	 * Adds counts of other part of text.
+	 * @param other counts of other part
+	 * @return merged tally
+	 */
+	Tally merge(Tally other) {
+		Map<String, int[]> larger = words.size() >= other.words.size() ? words : other.words;
+		Map<String, int[]> smaller = larger == words ? other.words : words;
+		for (Map.Entry<String, int[]> entry : smaller.entrySet()) {
+			int[] count = larger.get(entry.getKey());
+			if (count == null) {
+				larger.put(entry.getKey(), entry.getValue());
+			} else {
+				count[0] += entry.getValue()[0];
+			}
+		}
+		words = larger;
+
+		lineEnds += other.lineEnds;
+		chars += other.chars;
+		whitespace += other.whitespace;
+		longestLine = Math.max(longestLine, other.longestLine);
+		bytes += other.bytes;
+		invalid |= other.invalid;
+		return this;
+	}
+
+	/**
+	 * Ends current line.
+	 */
+	private void endLine() {
+		lineEnds++;
+		longestLine = Math.max(longestLine, lineLength);
+		lineLength = 0;
+	}
+
+	/**
+	 * Counts current word.
+	 */
+	private void endWord() {
+		String key = word.toString();
+		int[] count = words.get(key);
+		if (count == null) {
+			words.put(key, new int[] {1});
+		} else {
+			count[0]++;
+		}
+		word.setLength(0);
+	}
+}
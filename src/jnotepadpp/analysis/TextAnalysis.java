@@ -0,0 +1,105 @@
+package jnotepadpp.analysis;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of text analysis made by <code>TextAnalyzer</code>.
+ * @author Dario Vidas
+ */
+public final class TextAnalysis {
+
+	/** Number of lines. */
+	private final long lines;
+
+	/** Number of characters. */
+	private final long chars;
+
+	/** Number of whitespace characters. */
+	private final long whitespace;
+
+	/** Length of longest line. */
+	private final long longestLine;
+
+	/** Size in bytes. */
+	private final long bytes;
+
+	/** Whether text is valid UTF-8. */
+	private final boolean valid;
+
+	/** Most frequent words. */
+	private final Map<String, Integer> topWords;
+
+	/**
+	 * Constructor.
+	 * @param tally merged counts of whole text
+	 * @param topWords most frequent words, most frequent first
+	 */
+	TextAnalysis(Tally tally, Map<String, Integer> topWords) {
+		this.lines = tally.lineEnds + 1;
+		this.chars = tally.chars;
+		this.whitespace = tally.whitespace;
+		this.longestLine = tally.longestLine;
+		this.bytes = tally.bytes;
+		this.valid = !tally.invalid;
+		this.topWords = Collections.unmodifiableMap(topWords);
+	}
+
+	/**
+	 * Returns number of lines, counted the same way as in the editor.
+	 * @return line count
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	/**
+	 * Returns number of characters.
+	 * @return character count
+	 */
+	public long getChars() {
+		return chars;
+	}
+
+	/**
+	 * Returns number of whitespace characters, line ends included.
+	 * @return whitespace count
+	 */
+	public long getWhitespace() {
+		return whitespace;
+	}
+
+	/**
+	 * Returns length of longest line in characters, without line end.
+	 * @return longest line length
+	 */
+	public long getLongestLine() {
+		return longestLine;
+	}
+
+	/**
+	 * Returns size of text in UTF-8.
+	 * @return size in bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns whether text is valid UTF-8. Text of a file is not valid if it has
+	 * malformed byte sequences, text of a document if it has unpaired surrogates.
+	 * @return <code>true</code> if valid
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Returns most frequent words with their counts, most frequent first. Words are
+	 * runs of letters and digits in lower case.
+	 * @return most frequent words
+	 */
+	public Map<String, Integer> getTopWords() {
+		return topWords;
+	}
+}
@@ -0,0 +1,421 @@
+package jnotepadpp.analysis;
+
+import jnotepadpp.document.ReusableSegment;
+import jnotepadpp.document.TextSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.swing.text.Segment;
+
+/**
+ * Analyzes text in parallel. Text is split into chunks that end after
+ * <code>'\n'</code>, chunks are counted on a <code>ForkJoinPool</code> and their
+ * counts are merged. Files are memory-mapped chunk by chunk and never loaded as a
+ * whole, so files much bigger than the heap can be analyzed without opening them.
+ * @author Dario Vidas
+ */
+public final class TextAnalyzer {
+
+	/** Smallest chunk of a file in bytes. */
+	private static final long MIN_FILE_CHUNK = 1024 * 1024;
+
+	/** Largest chunk of a file in bytes, a chunk is mapped at once. */
+	private static final long MAX_FILE_CHUNK = 256L * 1024 * 1024;
+
+	/** Smallest chunk of a snapshot in chars. */
+	private static final int MIN_TEXT_CHUNK = 256 * 1024;
+
+	/** Number of chunks per worker thread, more chunks balance uneven lines better. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** Longest UTF-8 sequence. */
+	private static final int MAX_SEQUENCE = 4;
+
+	/** Number of chars decoded at once. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Pool analysis runs on. */
+	private final ForkJoinPool pool;
+
+	/** Number of most frequent words in result. */
+	private final int topWords;
+
+	/**
+	 * Constructor for analyzer that runs on common pool.
+	 * @param topWords number of most frequent words in result
+	 */
+	public TextAnalyzer(int topWords) {
+		this(ForkJoinPool.commonPool(), topWords);
+	}
+
+	/**
+	 * Constructor.
+	 * @param pool pool analysis runs on
+	 * @param topWords number of most frequent words in result
+	 */
+	public TextAnalyzer(ForkJoinPool pool, int topWords) {
+		this.pool = pool;
+		this.topWords = topWords;
+	}
+
+	/**
+	 * Analyzes file that is not opened. File is read as UTF-8.
+	 * @param file file
+	 * @return analysis
+	 * @throws IOException if file can not be read
+	 */
+	public TextAnalysis analyze(Path file) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long[] bounds = fileChunks(channel);
+			try {
+				return result(pool.invoke(new ChunkTask(0, bounds.length - 1) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					Tally tally(int chunk) {
+						try {
+							return tallyFile(channel, bounds[chunk], bounds[chunk + 1]);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				}));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Analyzes snapshot of a document.
+	 * @param text snapshot
+	 * @return analysis
+	 */
+	public TextAnalysis analyze(final TextSnapshot text) {
+		final int[] bounds = textChunks(text);
+		return result(pool.invoke(new ChunkTask(0, bounds.length - 1) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			Tally tally(int chunk) {
+				return tallyText(text, bounds[chunk], bounds[chunk + 1]);
+			}
+		}));
+	}
+
+	/**
+	 * Splits file into chunks which end after <code>'\n'</code> byte. UTF-8
+	 * multibyte sequences never contain that byte, so chunks also end on character
+	 * boundary. A line longer than {@value #MAX_FILE_CHUNK} bytes is split on a
+	 * character boundary, so its words and length are counted in parts.
+	 * @param channel file channel
+	 * @return chunk bounds, first is 0 and last is file size
+	 * @throws IOException if reading fails
+	 */
+	private long[] fileChunks(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long nominal = size / (pool.getParallelism() * CHUNKS_PER_THREAD);
+		nominal = Math.max(MIN_FILE_CHUNK, Math.min(MAX_FILE_CHUNK, nominal));
+
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long position = 0;
+		while (size - position > nominal) {
+			long bound = lineEnd(channel, position + nominal, Math.min(size, position + MAX_FILE_CHUNK), buffer);
+			if (bound < 0) {
+				if (size - position <= MAX_FILE_CHUNK) {
+					break;		//no more line ends, rest is the last chunk
+				}
+				bound = charBoundary(channel, position + MAX_FILE_CHUNK, buffer);
+			}
+			bounds.add(bound);
+			position = bound;
+		}
+		bounds.add(size);
+
+		long[] array = new long[bounds.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = bounds.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Finds first <code>'\n'</code> byte in part of a file.
+	 * @param channel file channel
+	 * @param from start of searched part
+	 * @param to end of searched part
+	 * @param buffer read buffer
+	 * @return offset after found byte, <code>-1</code> if there is none
+	 * @throws IOException if reading fails
+	 */
+	private static long lineEnd(FileChannel channel, long from, long to, ByteBuffer buffer) throws IOException {
+		for (long position = from; position < to;) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), to - position));
+			int n = channel.read(buffer, position);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves offset forward to the start of a UTF-8 character.
+	 * @param channel file channel
+	 * @param offset file offset
+	 * @param buffer read buffer
+	 * @return offset of a byte that is not continuation byte
+	 * @throws IOException if reading fails
+	 */
+	private static long charBoundary(FileChannel channel, long offset, ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		buffer.limit(MAX_SEQUENCE);
+		int n = channel.read(buffer, offset);
+		int skip = 0;
+		while (skip < n - 1 && (buffer.get(skip) & 0xC0) == 0x80) {
+			skip++;
+		}
+		return offset + skip;
+	}
+
+	/**
+	 * Splits snapshot into chunks which end after <code>'\n'</code>.
+	 * @param text snapshot
+	 * @return chunk bounds, first is 0 and last is snapshot length
+	 */
+	private int[] textChunks(TextSnapshot text) {
+		int length = text.length();
+		int nominal = Math.max(MIN_TEXT_CHUNK, length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+
+		List<Integer> bounds = new ArrayList<>();
+		bounds.add(0);
+		Segment txt = new ReusableSegment();
+		int position = 0;
+		while (length - position > nominal) {
+			int lineEnd = -1;
+			for (int offset = position + nominal; lineEnd < 0 && offset < length; offset += txt.count) {
+				text.getChars(offset, length - offset, txt);
+				for (int i = 0; i < txt.count; i++) {
+					if (txt.array[txt.offset + i] == '\n') {
+						lineEnd = offset + i + 1;
+						break;
+					}
+				}
+			}
+			if (lineEnd < 0) {
+				break;
+			}
+			bounds.add(lineEnd);
+			position = lineEnd;
+		}
+		bounds.add(length);
+
+		int[] array = new int[bounds.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = bounds.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Counts chunk of a file. Malformed input is counted as one replacement char and
+	 * marks result invalid.
+	 * @param channel file channel
+	 * @param start chunk start
+	 * @param end chunk end
+	 * @return counts of chunk
+	 * @throws IOException if mapping fails
+	 */
+	private static Tally tallyFile(FileChannel channel, long start, long end) throws IOException {
+		Tally tally = new Tally();
+		if (start == end) {
+			return tally.finish();
+		}
+
+		MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		CharBuffer out = CharBuffer.allocate(BUFFER_SIZE);
+		while (true) {
+			CoderResult result = decoder.decode(in, out, true);
+			drain(out, tally);
+			if (result.isError()) {
+				tally.invalid = true;
+				in.position(in.position() + result.length());
+				out.put(decoder.replacement());
+			} else if (result.isUnderflow()) {
+				break;
+			}
+		}
+		decoder.flush(out);
+		drain(out, tally);
+		tally.finish();
+		tally.bytes = end - start;
+		return tally;
+	}
+
+	/**
+	 * Counts decoded chars and clears buffer.
+	 * @param out decoded chars
+	 * @param tally counts
+	 */
+	private static void drain(CharBuffer out, Tally tally) {
+		out.flip();
+		tally.append(out);
+		out.clear();
+	}
+
+	/**
+	 * Counts chunk of a snapshot.
+	 * @param text snapshot
+	 * @param start chunk start
+	 * @param end chunk end
+	 * @return counts of chunk
+	 */
+	private static Tally tallyText(TextSnapshot text, int start, int end) {
+		Tally tally = new Tally();
+		Segment txt = new ReusableSegment();
+		for (int offset = start; offset < end; offset += txt.count) {
+			text.getChars(offset, Math.min(BUFFER_SIZE, end - offset), txt);
+			tally.append(txt.array, txt.offset, txt.count);
+		}
+		return tally.finish();
+	}
+
+	/**
+	 * Creates result from merged counts, picking most frequent words with a heap.
+	 * @param tally merged counts
+	 * @return analysis
+	 */
+	private TextAnalysis result(Tally tally) {
+		PriorityQueue<Map.Entry<String, int[]>> heap = new PriorityQueue<>(topWords + 1,
+				new Comparator<Map.Entry<String, int[]>>() {
+
+					@Override
+					public int compare(Map.Entry<String, int[]> a, Map.Entry<String, int[]> b) {
+						int c = Integer.compare(a.getValue()[0], b.getValue()[0]);
+						return c != 0 ? c : b.getKey().compareTo(a.getKey());
+					}
+				});
+		for (Map.Entry<String, int[]> entry : tally.words.entrySet()) {
+			heap.add(entry);
+			if (heap.size() > topWords) {
+				heap.poll();
+			}
+		}
+
+		List<Map.Entry<String, int[]>> top = new ArrayList<>(heap.size());
+		while (!heap.isEmpty()) {
+			top.add(heap.poll());
+		}
+		Map<String, Integer> words = new LinkedHashMap<>();
+		for (int i = top.size() - 1; i >= 0; i--) {
+			words.put(top.get(i).getKey(), top.get(i).getValue()[0]);
+		}
+		return new TextAnalysis(tally, words);
+	}
+
+	/**
+	 * Task that counts a range of chunks. Range is halved until one chunk is left,
+	 * counts of halves are merged on the way back.
+	 * @author Dario Vidas
+	 */
+	private abstract static class ChunkTask extends RecursiveTask<Tally> {
+
+		private static final long serialVersionUID = -5200146627463417394L;
+
+		/** First chunk. */
+		private final int from;
+
+		/** Chunk after last chunk. */
+		private final int to;
+
+		/**
+		 * Constructor.
+		 * @param from first chunk
+		 * @param to chunk after last chunk
+		 */
+		ChunkTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Counts one chunk.
+		 * @param chunk chunk index
+		 * @return counts of chunk
+		 */
+		abstract Tally tally(int chunk);
+
+		@Override
+		protected Tally compute() {
+			if (to - from == 1) {
+				return tally(from);
+			}
+
+			int middle = (from + to) >>> 1;
+			ChunkTask left = new Half(this, from, middle);
+			ChunkTask right = new Half(this, middle, to);
+			left.fork();
+			Tally tally = right.compute();
+			return left.join().merge(tally);
+		}
+	}
+
+	/**
+	 * Part of chunk task, counts chunks with the counting method of the whole task.
+	 * @author Dario Vidas
+	 */
+	private static final class Half extends ChunkTask {
+
+		private static final long serialVersionUID = 4215316040806377893L;
+
+		/** Task this is part of. */
+		private final ChunkTask whole;
+
+		/**
+		 * Constructor.
+		 * @param whole task this is part of
+		 * @param from first chunk
+		 * @param to chunk after last chunk
+		 */
+		Half(ChunkTask whole, int from, int to) {
+			super(from, to);
+			this.whole = whole instanceof Half ? ((Half) whole).whole : whole;
+		}
+
+		@Override
+		Tally tally(int chunk) {
+			return whole.tally(chunk);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package jnotepadpp.document;
+
+import javax.swing.text.Segment;
+
+/**
+ * Chunk of inserted text. Characters are only appended to a chunk, characters
+ * that pieces point to are never changed.
+ * <p>
+ * Chunk keeps text as Latin-1 bytes, one byte per char, while all appended chars
+ * fit into a byte, which is usually the case for logs and source code. When the
+ * first wider char is appended, chunk is promoted to UTF-16 chars. Promotion copies
+ * text into a new array and publishes it at once, so readers of older text on other
+ * threads see either the old bytes or the new chars, both with the same text.
+ * </p>
+ * @author Dario Vidas
+ */
+final class CharChunk implements TextSource {
+
+	/** Highest char that is kept as a byte. */
+	private static final char MAX_LATIN1 = 0xFF;
+
+	/** Most Latin-1 chars inflated into a new array for segment with partial return. */
+	private static final int MAX_PARTIAL = ReusableSegment.CAPACITY;
+
+	/** Chunk capacity in chars. */
+	private final int capacity;
+
+	/** Text, <code>byte[]</code> of Latin-1 chars until it is promoted to <code>char[]</code>. */
+	private volatile Object text;
+
+	/** Number of used characters. */
+	private int used;
+
+	/**
+	 * Constructor.
+	 * @param capacity chunk capacity
+	 */
+	CharChunk(int capacity) {
+		this.capacity = capacity;
+		text = new byte[capacity];
+	}
+
+	/**
+	 * Returns number of characters that can still be appended.
+	 * @return free space
+	 */
+	int free() {
+		return capacity - used;
+	}
+
+	/**
+	 * Returns number of bytes taken by chunk text.
+	 * @return size of text array
+	 */
+	long size() {
+		return text instanceof byte[] ? capacity : 2L * capacity;
+	}
+
+	/**
+	 * Appends characters of string. Chunk is promoted to UTF-16 if a char does not
+	 * fit into a byte.
+	 * @param str string
+	 * @param from first char of string
+	 * @param len number of chars
+	 * @return offset of appended text in this chunk
+	 */
+	int append(String str, int from, int len) {
+		int start = used;
+		int end = from + len;
+		if (text instanceof byte[]) {
+			byte[] bytes = (byte[]) text;
+			while (from < end) {
+				char c = str.charAt(from);
+				if (c > MAX_LATIN1) {
+					break;
+				}
+				bytes[used++] = (byte) c;
+				from++;
+			}
+			if (from == end) {
+				return start;
+			}
+			promote();
+		}
+		str.getChars(from, end, (char[]) text, used);
+		used += end - from;
+		return start;
+	}
+
+	/**
+	 * Copies text into array of UTF-16 chars.
+	 */
+	private void promote() {
+		byte[] bytes = (byte[]) text;
+		char[] chars = new char[capacity];
+		for (int i = 0; i < used; i++) {
+			chars[i] = (char) (bytes[i] & MAX_LATIN1);
+		}
+		text = chars;
+	}
+
+	/**
+	 * Returns offset where next appended text will start.
+	 * @return used length
+	 */
+	int used() {
+		return used;
+	}
+
+	@Override
+	public void getChars(int where, int len, char[] dst, int dstPos) {
+		Object current = text;
+		if (current instanceof char[]) {
+			System.arraycopy((char[]) current, where, dst, dstPos, len);
+			return;
+		}
+		byte[] bytes = (byte[]) current;
+		for (int i = 0; i < len; i++) {
+			dst[dstPos + i] = (char) (bytes[where + i] & MAX_LATIN1);
+		}
+	}
+
+	/**
+	 * Fills segment with characters. Segment points directly into UTF-16 chunk,
+	 * Latin-1 text is inflated into buffer of <code>ReusableSegment</code>, or into
+	 * a new array for other segments. With partial return at most a buffer of text
+	 * is inflated.
+	 */
+	@Override
+	public void getChars(int where, int len, Segment txt) {
+		Object current = text;
+		if (current instanceof char[]) {
+			txt.array = (char[]) current;
+			txt.offset = where;
+			txt.count = len;
+			return;
+		}
+
+		int n = len;
+		char[] chars;
+		if (txt instanceof ReusableSegment && txt.isPartialReturn()) {
+			chars = ((ReusableSegment) txt).buffer();
+			n = Math.min(len, chars.length);
+		} else {
+			if (txt.isPartialReturn()) {
+				n = Math.min(len, MAX_PARTIAL);
+			}
+			chars = new char[n];
+		}
+		getChars(where, n, chars, 0);
+		txt.array = chars;
+		txt.offset = 0;
+		txt.count = n;
+	}
+}
@@ -0,0 +1,105 @@
+package jnotepadpp.document;
+
+/**
+ * Counts non-blank characters, words and UTF-8 bytes of text that is given to it in
+ * parts. A word is a run of non-blank characters, so counter remembers last char of
+ * previous part to know whether next part starts a new word.
+ * @author Dario Vidas
+ */
+final class CharCounter {
+
+	/** Number of non-blank characters. */
+	int nonBlank;
+
+	/** Number of words. */
+	int words;
+
+	/** Size of counted text in UTF-8. */
+	long bytes;
+
+	/** Character before counted text. */
+	private final char before;
+
+	/** Last counted character. */
+	private char previous;
+
+	/**
+	 * Constructor for counting from the start of text.
+	 */
+	CharCounter() {
+		this('\n');
+	}
+
+	/**
+	 * Constructor for counting from the middle of text.
+	 * @param before character before counted text
+	 */
+	CharCounter(char before) {
+		this.before = before;
+		this.previous = before;
+	}
+
+	/**
+	 * Returns whether character is blank. Same characters as in statistics of the
+	 * editor are blank.
+	 * @param c character
+	 * @return <code>true</code> if blank
+	 */
+	static boolean isBlank(char c) {
+		return c == '\t' || c == '\n' || c == '\r' || c == ' ' || c == '\0';
+	}
+
+	/**
+	 * Returns number of bytes character takes in UTF-8. Each half of surrogate pair
+	 * takes two bytes.
+	 * @param c character
+	 * @return byte count
+	 */
+	static int utf8Length(char c) {
+		if (c < 0x80) {
+			return 1;
+		} else if (c < 0x800 || Character.isSurrogate(c)) {
+			return 2;
+		}
+		return 3;
+	}
+
+	/**
+	 * Counts part of text.
+	 * @param chars characters
+	 * @param offset offset in array
+	 * @param len number of characters
+	 */
+	void append(char[] chars, int offset, int len) {
+		char prev = previous;
+		for (int i = offset, end = offset + len; i < end; i++) {
+			char c = chars[i];
+			if (!isBlank(c)) {
+				nonBlank++;
+				if (isBlank(prev)) {
+					words++;
+				}
+			}
+			bytes += utf8Length(c);
+			prev = c;
+		}
+		previous = prev;
+	}
+
+	/**
+	 * Returns character before counted text.
+	 * @return character before text
+	 */
+	char before() {
+		return before;
+	}
+
+	/**
+	 * Returns last counted character, or character before text if nothing has been
+	 * counted.
+	 * @return last character
+	 */
+	char last() {
+		return previous;
+	}
+}
@@ -0,0 +1,424 @@
+package jnotepadpp.document;
+
+import java.util.Arrays;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Segment;
+
+/**
+ * Undo and redo history of a text document, kept within a memory budget. Every edit
+ * is one record of a few values in parallel arrays, and chars typed or deleted one
+ * by one next to each other are coalesced into one record. Inserted text is not kept
+ * until the insert is undone. Small removed texts are copied into an arena of shared
+ * chunks, which keep Latin-1 text as bytes; big removed texts are kept as snapshots
+ * which share pieces with the document, so undoing a replacement of the whole text
+ * does not copy it. When records take more than the budget, oldest ones are dropped.
+ * @author Dario Vidas
+ */
+public final class EditHistory implements DocumentListener {
+
+	/** Texts longer than this are kept as snapshots instead of copied into arena. */
+	private static final int SMALL_TEXT = 4 * 1024;
+
+	/** Size of arena chunks. */
+	private static final int ARENA_CHUNK = 16 * 1024;
+
+	/** Estimated bytes taken by a record without its text. */
+	private static final int RECORD_SIZE = 32;
+
+	/** Initial number of records. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Most bytes taken by records. */
+	private final long budget;
+
+	/** Document, <code>null</code> if history is detached. */
+	private TextDocument document;
+
+	/** Document text after the last edit, removed text is read from it. */
+	private TextSnapshot previous;
+
+	/** Kind of record, <code>true</code> for insert and <code>false</code> for remove. */
+	private boolean[] inserts = new boolean[INITIAL_CAPACITY];
+
+	/** Offset of edit. */
+	private int[] offsets = new int[INITIAL_CAPACITY];
+
+	/** Number of inserted or removed chars. */
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	/** Start of text in arena chunk. */
+	private int[] starts = new int[INITIAL_CAPACITY];
+
+	/** Text of record: arena chunk, snapshot, or <code>null</code> if it is not kept. */
+	private Object[] texts = new Object[INITIAL_CAPACITY];
+
+	/** Index of oldest record. */
+	private int first;
+
+	/** Index after newest record. */
+	private int end;
+
+	/** Index after last record that can be undone, records after it can be redone. */
+	private int cursor;
+
+	/** Bytes taken by records. */
+	private long size;
+
+	/** Chunk that removed texts are appended to. */
+	private CharChunk arena = new CharChunk(ARENA_CHUNK);
+
+	/** Text of newest record while it is a remove that can still grow, else <code>null</code>. */
+	private StringBuilder pending;
+
+	/** Set if newest record can be coalesced with next edit. */
+	private boolean open;
+
+	/** Set while history changes document itself. */
+	private boolean applying;
+
+	/** Reused for reading single chars. */
+	private final Segment segment = new Segment();
+
+	/**
+	 * Constructor.
+	 * @param document document whose edits are recorded
+	 * @param budget most bytes taken by records
+	 */
+	public EditHistory(TextDocument document, long budget) {
+		this.budget = budget;
+		attach(document);
+	}
+
+	/**
+	 * Starts recording edits of document. Records are kept, so document must have
+	 * the same text as the one history was detached from.
+	 * @param newDocument document
+	 */
+	public void attach(TextDocument newDocument) {
+		detach();
+		document = newDocument;
+		previous = document.snapshot();
+		document.addDocumentListener(this);
+	}
+
+	/**
+	 * Stops recording edits. Records are kept.
+	 */
+	public void detach() {
+		if (document != null) {
+			close();
+			document.removeDocumentListener(this);
+			document = null;
+			previous = null;
+		}
+	}
+
+	/**
+	 * Drops all records.
+	 */
+	public void clear() {
+		pending = null;
+		open = false;
+		Arrays.fill(texts, first, end, null);
+		first = 0;
+		end = 0;
+		cursor = 0;
+		size = 0;
+		arena = new CharChunk(ARENA_CHUNK);
+	}
+
+	/**
+	 * Checks if there is an edit to undo.
+	 * @return <code>true</code> if there is, <code>false</code> otherwise
+	 */
+	public boolean canUndo() {
+		return cursor > first;
+	}
+
+	/**
+	 * Checks if there is an undone edit to redo.
+	 * @return <code>true</code> if there is, <code>false</code> otherwise
+	 */
+	public boolean canRedo() {
+		return cursor < end;
+	}
+
+	/**
+	 * Undoes last edit.
+	 * @return offset where caret should be put, -1 if there was nothing to undo
+	 */
+	public int undo() {
+		if (document == null || !canUndo()) {
+			return -1;
+		}
+		close();
+		int i = --cursor;
+		if (inserts[i]) {
+			keepText(i);
+			remove(i);
+			return offsets[i];
+		}
+		insert(i);
+		return offsets[i] + lengths[i];
+	}
+
+	/**
+	 * Redoes last undone edit.
+	 * @return offset where caret should be put, -1 if there was nothing to redo
+	 */
+	public int redo() {
+		if (document == null || !canRedo()) {
+			return -1;
+		}
+		close();
+		int i = cursor++;
+		if (inserts[i]) {
+			insert(i);
+			return offsets[i] + lengths[i];
+		}
+		remove(i);
+		return offsets[i];
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		if (applying) {
+			return;
+		}
+		int offset = e.getOffset();
+		int len = e.getLength();
+		int last = end - 1;
+		if (open && inserts[last] && len == 1 && offset == offsets[last] + lengths[last] && charAt(offset) != '\n') {
+			lengths[last]++;		//typing goes on
+		} else {
+			record(true, offset, len);
+			open = len == 1;
+		}
+		previous = document.snapshot();
+		trim();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		if (applying) {
+			return;
+		}
+		int offset = e.getOffset();
+		int len = e.getLength();
+		int last = end - 1;
+		if (open && pending != null && len == 1 && offset == offsets[last] - 1) {
+			pending.insert(0, charOf(offset));		//backspace goes on
+			offsets[last]--;
+			lengths[last]++;
+			size++;
+		} else if (open && pending != null && len == 1 && offset == offsets[last]) {
+			pending.append(charOf(offset));		//delete goes on
+			lengths[last]++;
+			size++;
+		} else {
+			record(false, offset, len);
+			if (len <= SMALL_TEXT) {
+				pending = new StringBuilder(len);
+				Segment txt = new Segment();
+				txt.setPartialReturn(true);
+				for (int pos = offset; pos < offset + len; pos += txt.count) {
+					previous.getChars(pos, offset + len - pos, txt);
+					pending.append(txt.array, txt.offset, txt.count);
+				}
+				open = len == 1;
+			} else {
+				texts[end - 1] = previous.slice(offset, len);
+			}
+			size += len;
+		}
+		previous = document.snapshot();
+		trim();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		//attributes are not used
+	}
+
+	/**
+	 * Adds record of new edit. Records that could be redone are dropped.
+	 * @param insert <code>true</code> for insert
+	 * @param offset offset of edit
+	 * @param len number of chars
+	 */
+	private void record(boolean insert, int offset, int len) {
+		close();
+		for (int i = cursor; i < end; i++) {
+			size -= cost(i);
+			texts[i] = null;
+		}
+		end = cursor;
+		if (end == inserts.length) {
+			grow();
+		}
+		inserts[end] = insert;
+		offsets[end] = offset;
+		lengths[end] = len;
+		texts[end] = null;
+		size += RECORD_SIZE;
+		end++;
+		cursor = end;
+	}
+
+	/**
+	 * Makes room for more records, by moving records to the start of arrays or by
+	 * making arrays bigger.
+	 */
+	private void grow() {
+		int count = end - first;
+		if (count <= inserts.length / 2) {
+			System.arraycopy(inserts, first, inserts, 0, count);
+			System.arraycopy(offsets, first, offsets, 0, count);
+			System.arraycopy(lengths, first, lengths, 0, count);
+			System.arraycopy(starts, first, starts, 0, count);
+			System.arraycopy(texts, first, texts, 0, count);
+			Arrays.fill(texts, count, end, null);
+		} else {
+			int capacity = inserts.length * 2;
+			inserts = Arrays.copyOf(inserts, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			texts = Arrays.copyOf(texts, capacity);
+		}
+		cursor -= first;
+		end -= first;
+		first = 0;
+	}
+
+	/**
+	 * Stops coalescing newest record and moves its pending text into arena.
+	 */
+	private void close() {
+		open = false;
+		if (pending == null) {
+			return;
+		}
+		int last = end - 1;
+		int len = pending.length();
+		if (arena.free() < len) {
+			arena = new CharChunk(Math.max(ARENA_CHUNK, len));
+		}
+		texts[last] = arena;
+		starts[last] = arena.append(pending.toString(), 0, len);
+		pending = null;
+	}
+
+	/**
+	 * Drops oldest records until records fit into budget. Newest record is never
+	 * dropped.
+	 */
+	private void trim() {
+		while (size > budget && first < cursor - 1) {
+			size -= cost(first);
+			texts[first] = null;
+			first++;
+		}
+	}
+
+	/**
+	 * Returns bytes taken by record.
+	 * @param i record index
+	 * @return estimated size
+	 */
+	private int cost(int i) {
+		return RECORD_SIZE + (texts[i] != null || i == end - 1 && pending != null ? lengths[i] : 0);
+	}
+
+	/**
+	 * Keeps inserted text of record before the insert is undone.
+	 * @param i record index
+	 */
+	private void keepText(int i) {
+		if (texts[i] != null) {
+			return;
+		}
+		int len = lengths[i];
+		if (len > SMALL_TEXT) {
+			texts[i] = document.snapshot().slice(offsets[i], len);
+		} else {
+			try {
+				String text = document.getText(offsets[i], len);
+				if (arena.free() < len) {
+					arena = new CharChunk(ARENA_CHUNK);
+				}
+				texts[i] = arena;
+				starts[i] = arena.append(text, 0, len);
+			} catch (BadLocationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		size += len;
+		trim();
+	}
+
+	/**
+	 * Inserts text of record into document.
+	 * @param i record index
+	 */
+	private void insert(int i) {
+		applying = true;
+		try {
+			if (texts[i] instanceof TextSnapshot) {
+				document.insert(offsets[i], (TextSnapshot) texts[i]);
+			} else {
+				char[] chars = new char[lengths[i]];
+				((CharChunk) texts[i]).getChars(starts[i], lengths[i], chars, 0);
+				document.insertString(offsets[i], new String(chars), null);
+			}
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			applying = false;
+			previous = document.snapshot();
+		}
+	}
+
+	/**
+	 * Removes text of record from document.
+	 * @param i record index
+	 */
+	private void remove(int i) {
+		applying = true;
+		try {
+			document.remove(offsets[i], lengths[i]);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			applying = false;
+			previous = document.snapshot();
+		}
+	}
+
+	/**
+	 * Returns char of document.
+	 * @param offset offset
+	 * @return char
+	 */
+	private char charAt(int offset) {
+		try {
+			document.getText(offset, 1, segment);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+		return segment.array[segment.offset];
+	}
+
+	/**
+	 * Returns char of document before the last edit.
+	 * @param offset offset
+	 * @return char
+	 */
+	private char charOf(int offset) {
+		previous.getChars(offset, 1, segment);
+		return segment.array[segment.offset];
+	}
+}
@@ -0,0 +1,443 @@
+package jnotepadpp.document;
+
+import java.util.Arrays;
+
+/**
+ * Index of lines. A line ends after <code>'\n'</code>, after <code>"\r\n"</code> or
+ * after <code>'\r'</code> that is not followed by <code>'\n'</code>, line terminator
+ * belongs to the line it ends. Lines are kept as primitive arrays of line ends split
+ * into blocks of at most {@value #BLOCK_SIZE} lines, ends in a block are relative to
+ * block start. Number of lines and characters of every block are summed in Fenwick
+ * trees, so finding line by offset or offset by line takes <code>O(log n)</code> and
+ * an edit has to touch only one block. Used by <code>TextDocument</code> instead of
+ * one element object per line.
+ * @author Dario Vidas
+ */
+final class LineIndex {
+
+	/** Maximum number of lines in a block, full block is split in two. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Initial capacity of a block. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Line ends of every block, relative to block start. */
+	private int[][] blocks = new int[INITIAL_CAPACITY][];
+
+	/** Number of lines in every block. */
+	private int[] sizes = new int[INITIAL_CAPACITY];
+
+	/** Number of blocks. */
+	private int blockCount;
+
+	/** Fenwick tree of block line counts, one entry more than there are blocks. */
+	private int[] lineTree;
+
+	/** Fenwick tree of block lengths. */
+	private int[] charTree;
+
+	/** Number of lines. */
+	private int count;
+
+	/** Length of indexed text. */
+	private int length;
+
+	/** Set while appending if last appended char was <code>'\r'</code>. */
+	private boolean pendingReturn;
+
+	/**
+	 * Constructor, creates index with one empty line.
+	 */
+	LineIndex() {
+		blocks[0] = new int[INITIAL_CAPACITY];
+		sizes[0] = 1;
+		blockCount = 1;
+		count = 1;
+		rebuildTrees();
+	}
+
+	/**
+	 * Returns whether a line ends after given character.
+	 * @param c character
+	 * @param next character after it
+	 * @return <code>true</code> if <code>c</code> is end of line
+	 */
+	static boolean isLineEnd(char c, char next) {
+		return c == '\n' || c == '\r' && next != '\n';
+	}
+
+	/**
+	 * Appends text to the end of indexed text. Used while building index, text can
+	 * be appended in any number of parts, <code>"\r\n"</code> split between two parts
+	 * still ends only one line.
+	 * @param chars characters
+	 * @param offset offset in array
+	 * @param len number of characters
+	 */
+	void append(char[] chars, int offset, int len) {
+		int end = offset + len;
+		int lineStart = offset;
+		int i = offset;
+		if (pendingReturn && len > 0) {
+			pendingReturn = false;
+			if (chars[i] == '\n') {
+				i++;
+			}
+			appendLine(i - lineStart);
+			lineStart = i;
+		}
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c == '\n') {
+				appendLine(i + 1 - lineStart);
+				lineStart = i + 1;
+			} else if (c == '\r') {
+				if (i + 1 == end) {
+					pendingReturn = true;
+				} else if (chars[i + 1] != '\n') {
+					appendLine(i + 1 - lineStart);
+					lineStart = i + 1;
+				}
+			}
+		}
+		addToLastLine(end - lineStart);
+	}
+
+	/**
+	 * Removes last line if it is empty. Called after whole content, which always ends
+	 * with newline, has been appended.
+	 */
+	void trimLastLine() {
+		if (pendingReturn) {
+			pendingReturn = false;
+			appendLine(0);
+		}
+		int last = blockCount - 1;
+		if (count > 1 && lastLength() == 0) {
+			sizes[last]--;
+			count--;
+			if (sizes[last] == 0) {
+				blockCount--;
+			}
+			rebuildTrees();
+		}
+	}
+
+	/**
+	 * Returns number of lines.
+	 * @return line count
+	 */
+	int lineCount() {
+		return count;
+	}
+
+	/**
+	 * Returns offset of first char of line.
+	 * @param line line index
+	 * @return line start
+	 */
+	int lineStart(int line) {
+		int block = find(lineTree, line);
+		int index = line - prefix(lineTree, block);
+		return prefix(charTree, block) + (index == 0 ? 0 : blocks[block][index - 1]);
+	}
+
+	/**
+	 * Returns offset after last char of line, including line terminator.
+	 * @param line line index
+	 * @return line end
+	 */
+	int lineEnd(int line) {
+		int block = find(lineTree, line);
+		int index = line - prefix(lineTree, block);
+		return prefix(charTree, block) + blocks[block][index];
+	}
+
+	/**
+	 * Returns line that contains given offset. Offsets out of range are clamped to
+	 * first or last line.
+	 * @param offset offset
+	 * @return line index
+	 */
+	int lineOfOffset(int offset) {
+		if (offset >= length) {
+			return count - 1;
+		}
+		if (offset < 0) {
+			return 0;
+		}
+		int block = find(charTree, offset);
+		int relative = offset - prefix(charTree, block);
+		int index = Arrays.binarySearch(blocks[block], 0, sizes[block], relative);
+		index = index < 0 ? -index - 1 : index + 1;		//first line ending after offset
+		return prefix(lineTree, block) + Math.min(index, sizes[block] - 1);
+	}
+
+	/**
+	 * Returns lengths of lines.
+	 * @param from first line
+	 * @param n number of lines
+	 * @return line lengths
+	 */
+	int[] lengths(int from, int n) {
+		int[] lengths = new int[n];
+		int block = n == 0 ? 0 : find(lineTree, from);
+		int index = n == 0 ? 0 : from - prefix(lineTree, block);
+		for (int i = 0; i < n; i++, index++) {
+			if (index == sizes[block]) {
+				block++;
+				index = 0;
+			}
+			lengths[i] = lineLength(block, index);
+		}
+		return lengths;
+	}
+
+	/**
+	 * Replaces lines with lines of given lengths. Lines after replaced ones are
+	 * shifted.
+	 * @param index first replaced line
+	 * @param removed number of replaced lines
+	 * @param lengths lengths of new lines
+	 */
+	void replace(int index, int removed, int[] lengths) {
+		int block = find(lineTree, index);
+		int first = index - prefix(lineTree, block);
+		int size = sizes[block];
+		int newSize = size - removed + lengths.length;
+		if (first + removed > size || newSize == 0 || newSize > BLOCK_SIZE) {
+			replaceBlocks(block, first, removed, lengths);
+			return;
+		}
+
+		int[] ends = blocks[block];
+		int oldEnd = ends[first + removed - 1];
+		if (newSize > ends.length) {
+			ends = Arrays.copyOf(ends, Math.min(Math.max(ends.length * 2, newSize), BLOCK_SIZE));
+			blocks[block] = ends;
+		}
+		System.arraycopy(ends, first + removed, ends, first + lengths.length, size - first - removed);
+		int pos = first == 0 ? 0 : ends[first - 1];
+		for (int i = 0; i < lengths.length; i++) {
+			pos += lengths[i];
+			ends[first + i] = pos;
+		}
+		int delta = pos - oldEnd;
+		if (delta != 0) {
+			for (int i = first + lengths.length; i < newSize; i++) {
+				ends[i] += delta;
+			}
+			add(charTree, block, delta);
+		}
+		if (newSize != size) {
+			add(lineTree, block, newSize - size);
+		}
+		sizes[block] = newSize;
+		count += newSize - size;
+		length += delta;
+	}
+
+	/**
+	 * Replaces lines that span more than one block, or that would leave a block
+	 * empty or overfull. Affected blocks are rebuilt and trees are recomputed.
+	 * @param block block of first replaced line
+	 * @param first index of first replaced line in block
+	 * @param removed number of replaced lines
+	 * @param lengths lengths of new lines
+	 */
+	private void replaceBlocks(int block, int first, int removed, int[] lengths) {
+		int last = block;
+		int remaining = first + removed;
+		while (remaining > sizes[last]) {
+			remaining -= sizes[last];
+			last++;
+		}
+
+		int total = 0;
+		for (int b = block; b <= last; b++) {
+			total += sizes[b];
+		}
+		int[] merged = new int[total - removed + lengths.length];
+		int pos = 0;
+		for (int i = 0; i < first; i++) {
+			merged[pos++] = lineLength(block, i);
+		}
+		System.arraycopy(lengths, 0, merged, pos, lengths.length);
+		pos += lengths.length;
+		for (int i = remaining; i < sizes[last]; i++) {
+			merged[pos++] = lineLength(last, i);
+		}
+
+		int newBlocks = (merged.length + BLOCK_SIZE / 2 - 1) / (BLOCK_SIZE / 2);
+		if (newBlocks == 0 && blockCount == last - block + 1) {
+			newBlocks = 1;		//index always has at least one block
+		}
+		int shift = newBlocks - (last - block + 1);
+		ensureBlocks(blockCount + shift);
+		System.arraycopy(blocks, last + 1, blocks, last + 1 + shift, blockCount - last - 1);
+		System.arraycopy(sizes, last + 1, sizes, last + 1 + shift, blockCount - last - 1);
+		blockCount += shift;
+
+		for (int b = 0, from = 0; b < newBlocks; b++) {
+			int n = Math.min(BLOCK_SIZE / 2, merged.length - from);
+			int[] ends = new int[Math.max(n, INITIAL_CAPACITY)];
+			int end = 0;
+			for (int i = 0; i < n; i++) {
+				end += merged[from + i];
+				ends[i] = end;
+			}
+			blocks[block + b] = ends;
+			sizes[block + b] = n;
+			from += n;
+		}
+		if (blockCount == 1 && sizes[0] == 0) {
+			sizes[0] = 1;		//index always has at least one line
+		}
+		rebuildTrees();
+	}
+
+	/**
+	 * Appends new empty line after adding given length to current last line.
+	 * @param lastLength length added to last line
+	 */
+	private void appendLine(int lastLength) {
+		addToLastLine(lastLength);
+		int last = blockCount - 1;
+		if (sizes[last] == BLOCK_SIZE) {
+			ensureBlocks(blockCount + 1);
+			blocks[blockCount] = new int[INITIAL_CAPACITY];
+			sizes[blockCount] = 1;
+			blockCount++;
+			int low = blockCount & -blockCount;		//node covers blocks (blockCount - low, blockCount]
+			lineTree[blockCount] = 1 + prefix(lineTree, blockCount - 1) - prefix(lineTree, blockCount - low);
+			charTree[blockCount] = prefix(charTree, blockCount - 1) - prefix(charTree, blockCount - low);
+		} else {
+			int[] ends = blocks[last];
+			if (sizes[last] == ends.length) {
+				ends = Arrays.copyOf(ends, Math.min(ends.length * 2, BLOCK_SIZE));
+				blocks[last] = ends;
+			}
+			ends[sizes[last]] = ends[sizes[last] - 1];
+			sizes[last]++;
+			add(lineTree, last, 1);
+		}
+		count++;
+	}
+
+	/**
+	 * Adds length to last line.
+	 * @param len added length
+	 */
+	private void addToLastLine(int len) {
+		if (len != 0) {
+			int last = blockCount - 1;
+			blocks[last][sizes[last] - 1] += len;
+			add(charTree, last, len);
+			length += len;
+		}
+	}
+
+	/**
+	 * Returns length of last line.
+	 * @return last line length
+	 */
+	private int lastLength() {
+		int last = blockCount - 1;
+		return lineLength(last, sizes[last] - 1);
+	}
+
+	/**
+	 * Returns length of line in block.
+	 * @param block block
+	 * @param index line index in block
+	 * @return line length
+	 */
+	private int lineLength(int block, int index) {
+		int[] ends = blocks[block];
+		return ends[index] - (index == 0 ? 0 : ends[index - 1]);
+	}
+
+	/**
+	 * Grows block arrays.
+	 * @param capacity needed number of blocks
+	 */
+	private void ensureBlocks(int capacity) {
+		if (capacity > sizes.length) {
+			int newCapacity = Math.max(sizes.length * 2, capacity);
+			blocks = Arrays.copyOf(blocks, newCapacity);
+			sizes = Arrays.copyOf(sizes, newCapacity);
+			lineTree = Arrays.copyOf(lineTree, newCapacity + 1);
+			charTree = Arrays.copyOf(charTree, newCapacity + 1);
+		}
+	}
+
+	/**
+	 * Recomputes both trees and totals from blocks.
+	 */
+	private void rebuildTrees() {
+		lineTree = new int[sizes.length + 1];
+		charTree = new int[sizes.length + 1];
+		count = 0;
+		length = 0;
+		for (int b = 0; b < blockCount; b++) {
+			int size = sizes[b];
+			int chars = size == 0 ? 0 : blocks[b][size - 1];
+			lineTree[b + 1] = size;
+			charTree[b + 1] = chars;
+			count += size;
+			length += chars;
+		}
+		for (int i = 1; i <= blockCount; i++) {		//linear Fenwick construction
+			int parent = i + (i & -i);
+			if (parent <= blockCount) {
+				lineTree[parent] += lineTree[i];
+				charTree[parent] += charTree[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds value to block in tree.
+	 * @param tree Fenwick tree
+	 * @param block block index
+	 * @param delta added value
+	 */
+	private void add(int[] tree, int block, int delta) {
+		for (int i = block + 1; i <= blockCount; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Returns sum of values of blocks before given block.
+	 * @param tree Fenwick tree
+	 * @param block block index
+	 * @return prefix sum
+	 */
+	private static int prefix(int[] tree, int block) {
+		int sum = 0;
+		for (int i = block; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds last block whose prefix sum is not greater than value, that is the
+	 * block which contains line or char with given index.
+	 * @param tree Fenwick tree
+	 * @param value line or char index
+	 * @return block index
+	 */
+	private int find(int[] tree, int value) {
+		int pos = 0;
+		for (int step = Integer.highestOneBit(blockCount); step > 0; step >>= 1) {
+			int next = pos + step;
+			if (next <= blockCount && tree[next] <= value) {
+				pos = next;
+				value -= tree[next];
+			}
+		}
+		return Math.min(pos, blockCount - 1);
+	}
+}
@@ -0,0 +1,385 @@
+package jnotepadpp.document;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.text.Segment;
+
+/**
+ * Read-only text backed by a memory-mapped file. File is split into pages of about
+ * {@value #PAGE_SIZE} bytes and a page is decoded only when some of its characters
+ * are requested. Heap holds only page index (byte and char offset of every page) and
+ * a few most recently decoded pages, so opening a file does not copy its content.
+ * Page boundaries are always put on character boundaries so every page can be
+ * decoded on its own.
+ * <p>
+ * Text can be read from several threads at once. Lock is held only to look up a
+ * cached page or the mapped window, pages are decoded outside of it, each thread with
+ * a decoder of its own, so workers of analysis do not wait for each other.
+ * </p>
+ * <p>
+ * Text can be read into memory with <code>unmap()</code>, which closes the file, so
+ * the file can be replaced while text still refers to its old content.
+ * </p>
+ * @author Dario Vidas
+ */
+public final class MappedTextSource implements TextSource, Closeable {
+
+	/** Nominal page size in bytes. */
+	static final int PAGE_SIZE = 64 * 1024;
+
+	/** Size of mapped window in bytes. */
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+	/** Number of decoded pages kept in memory. */
+	private static final int CACHED_PAGES = 16;
+
+	/** Longest UTF-8 sequence, used when aligning pages to character boundaries. */
+	private static final int MAX_SEQUENCE = 4;
+
+	/** Channel of mapped file. */
+	private final FileChannel channel;
+
+	/** File size in bytes. */
+	private final long size;
+
+	/** Decoder of each reading thread. */
+	private final ThreadLocal<CharsetDecoder> decoders;
+
+	/** Byte offsets of pages, <code>pageCount + 1</code> entries. */
+	private long[] pageBytes;
+
+	/** Char offsets of pages, <code>pageCount + 1</code> entries. */
+	private int[] pageChars;
+
+	/** Number of pages. */
+	private int pageCount;
+
+	/** Currently mapped part of the file. */
+	private MappedByteBuffer window;
+
+	/** File offset of mapped window. */
+	private long windowStart;
+
+	/** All decoded pages once text is read into memory, <code>null</code> while file is mapped. */
+	private volatile char[][] pages;
+
+	/** Recently decoded pages, eldest is dropped first. */
+	private final Map<Integer, char[]> cache = new LinkedHashMap<Integer, char[]>(CACHED_PAGES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, char[]> eldest) {
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * Maps file and builds page index. Every page is decoded once to count its
+	 * characters, decoded characters are handed to listener (if any) and then
+	 * thrown away.
+	 * @param file file to map
+	 * @param charset file charset
+	 * @param listener scan listener, can be <code>null</code>
+	 * @throws IOException if file can not be read or has more characters than a
+	 *             document can hold
+	 */
+	public MappedTextSource(File file, final Charset charset, ScanListener listener) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		decoders = new ThreadLocal<CharsetDecoder>() {
+
+			@Override
+			protected CharsetDecoder initialValue() {
+				return charset.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			}
+		};
+		try {
+			size = channel.size();
+			scan(listener);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Splits file into pages and counts characters of each page.
+	 * @param listener scan listener, can be <code>null</code>
+	 * @throws IOException if reading fails or file is too large
+	 */
+	private void scan(ScanListener listener) throws IOException {
+		int capacity = (int) Math.min(size / PAGE_SIZE + 2, Integer.MAX_VALUE - 1);
+		pageBytes = new long[capacity];
+		pageChars = new int[capacity];
+
+		CharBuffer out = CharBuffer.allocate(PAGE_SIZE + MAX_SEQUENCE);
+		long bytes = 0;
+		long chars = 0;
+		while (bytes < size) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("File scan interrupted");
+			}
+
+			int len = alignedPageLength(bytes);
+			if (pageCount + 1 >= pageBytes.length) {
+				pageBytes = Arrays.copyOf(pageBytes, pageBytes.length * 2);
+				pageChars = Arrays.copyOf(pageChars, pageChars.length * 2);
+			}
+			pageBytes[pageCount] = bytes;
+			pageChars[pageCount] = (int) chars;
+
+			out.clear();
+			decode(map(bytes, len), len, out);
+			out.flip();
+			chars += out.remaining();
+			if (chars >= Integer.MAX_VALUE) {
+				throw new IOException("File has too many characters: " + chars);
+			}
+			bytes += len;
+			pageCount++;
+
+			if (listener != null) {
+				listener.pageScanned(out, bytes, size);
+			}
+		}
+		pageBytes[pageCount] = bytes;
+		pageChars[pageCount] = (int) chars;
+	}
+
+	/**
+	 * Returns length of page starting at given offset. Page is cut so it does not
+	 * end in the middle of a multibyte sequence.
+	 * @param start page start
+	 * @return page length in bytes
+	 * @throws IOException if mapping fails
+	 */
+	private int alignedPageLength(long start) throws IOException {
+		long end = Math.min(start + PAGE_SIZE, size);
+		if (end == size) {
+			return (int) (end - start);
+		}
+
+		ByteBuffer bytes = map(start, PAGE_SIZE);
+		int len = PAGE_SIZE;
+		for (int i = 0; i < MAX_SEQUENCE - 1; i++) {
+			if ((bytes.get(bytes.position() + len) & 0xC0) != 0x80) {		//not continuation byte
+				break;
+			}
+			len--;
+		}
+		return len;
+	}
+
+	/**
+	 * Decodes part of the file into buffer, with decoder of current thread.
+	 * @param in view of mapped window, positioned at first byte
+	 * @param len number of bytes
+	 * @param out output buffer, must have at least <code>len</code> chars remaining
+	 */
+	private void decode(ByteBuffer in, int len, CharBuffer out) {
+		in.limit(in.position() + len);
+		CharsetDecoder decoder = decoders.get();
+		decoder.reset();
+		decoder.decode(in, out, true);
+		decoder.flush(out);
+	}
+
+	/**
+	 * Returns buffer positioned at given file offset with at least <code>len</code>
+	 * bytes available (or up to the end of file). Remaps window if needed.
+	 * @param start file offset
+	 * @param len wanted length
+	 * @return buffer view of mapped window
+	 * @throws IOException if mapping fails
+	 */
+	private ByteBuffer map(long start, int len) throws IOException {
+		long end = Math.min(start + len + 1, size);
+		if (window == null || start < windowStart || end > windowStart + window.capacity()) {
+			windowStart = start;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+		}
+		ByteBuffer view = window.duplicate();
+		view.position((int) (start - windowStart));
+		return view;
+	}
+
+	/**
+	 * Returns decoded page, decoding it if it is not cached. Page is decoded without
+	 * holding the lock, two threads can decode the same page at once.
+	 * @param page page index
+	 * @return page characters
+	 */
+	private char[] page(int page) {
+		char[][] all = pages;
+		if (all != null) {
+			return all[page];
+		}
+		int len = (int) (pageBytes[page + 1] - pageBytes[page]);
+		ByteBuffer in;
+		synchronized (this) {
+			if (pages != null) {
+				return pages[page];
+			}
+			char[] chars = cache.get(page);
+			if (chars != null) {
+				return chars;
+			}
+			try {
+				in = map(pageBytes[page], len);
+			} catch (IOException e) {
+				throw new IllegalStateException("Mapped file is not readable", e);
+			}
+		}
+
+		char[] chars = new char[pageChars[page + 1] - pageChars[page]];
+		decode(in, len, CharBuffer.wrap(chars));
+		synchronized (this) {
+			cache.put(page, chars);
+		}
+		return chars;
+	}
+
+	/**
+	 * Finds page which contains character at given offset.
+	 * @param offset char offset
+	 * @return page index
+	 */
+	private int pageOf(int offset) {
+		int index = Arrays.binarySearch(pageChars, 0, pageCount + 1, offset);
+		if (index < 0) {
+			return -index - 2;
+		}
+		while (index < pageCount && pageChars[index + 1] == offset) {		//skip empty pages
+			index++;
+		}
+		return Math.min(index, pageCount - 1);
+	}
+
+	/**
+	 * Returns number of characters.
+	 * @return length of text
+	 */
+	public int length() {
+		return pageChars[pageCount];
+	}
+
+	/**
+	 * Returns file size in bytes.
+	 * @return file size
+	 */
+	public long byteSize() {
+		return size;
+	}
+
+	/**
+	 * Decodes whole text into memory and closes the file. Text is then read from
+	 * memory, so the file can be replaced, even where a mapped file can not be, once
+	 * the mapping is garbage collected. Can be called on any thread.
+	 * @throws IOException if file can not be read
+	 */
+	public void unmap() throws IOException {
+		if (pages != null) {
+			return;
+		}
+		char[][] decoded = new char[pageCount][];
+		try {
+			for (int i = 0; i < pageCount; i++) {
+				decoded[i] = page(i);
+			}
+		} catch (IllegalStateException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+		synchronized (this) {
+			pages = decoded;
+			cache.clear();
+			window = null;
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns number of heap bytes taken by text read into memory.
+	 * @return size in bytes, 0 while file is mapped
+	 */
+	public long heapSize() {
+		return pages == null ? 0 : 2L * length();
+	}
+
+	@Override
+	public void getChars(int where, int len, char[] dst, int dstPos) {
+		while (len > 0) {
+			int page = pageOf(where);
+			char[] chars = page(page);
+			int from = where - pageChars[page];
+			int n = Math.min(len, chars.length - from);
+			System.arraycopy(chars, from, dst, dstPos, n);
+			where += n;
+			dstPos += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * {@inheritDoc} If range is inside one page or segment allows partial return,
+	 * segment will point directly to cached page and nothing is copied.
+	 */
+	@Override
+	public void getChars(int where, int len, Segment txt) {
+		if (len > 0) {
+			int page = pageOf(where);
+			int from = where - pageChars[page];
+			char[] chars = page(page);
+			if (from + len <= chars.length || txt.isPartialReturn()) {
+				txt.array = chars;
+				txt.offset = from;
+				txt.count = Math.min(len, chars.length - from);
+				return;
+			}
+		}
+		txt.array = new char[len];
+		txt.offset = 0;
+		txt.count = len;
+		getChars(where, len, txt.array, 0);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		cache.clear();
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * Listener that is notified while file is scanned.
+	 * @author Dario Vidas
+	 */
+	public interface ScanListener {
+
+		/**
+		 * Called after page is decoded during scan.
+		 * @param chars decoded characters, valid only during this call
+		 * @param bytesRead bytes scanned so far
+		 * @param totalBytes file size
+		 * @throws IOException to stop the scan
+		 */
+		void pageScanned(CharBuffer chars, long bytesRead, long totalBytes) throws IOException;
+	}
+}
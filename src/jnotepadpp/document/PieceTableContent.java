@@ -0,0 +1,688 @@
+package jnotepadpp.document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Document content kept as a piece table. Original text (for example a mapped file)
+ * is never changed and inserted text is appended to chunks which are never changed
+ * either. Document is a sequence of pieces pointing into those sources, and pieces
+ * are kept in a balanced tree (treap) ordered by document offset, so insert and
+ * remove take O(log n) in number of pieces no matter how big the text is.
+ * <p>
+ * Tree nodes are immutable, an edit builds new nodes only on the path it changes.
+ * Snapshot of the content is therefore just a reference to the current root.
+ * </p>
+ * Like every <code>AbstractDocument.Content</code> it ends with an implied newline.
+ * @author Dario Vidas
+ */
+final class PieceTableContent implements AbstractDocument.Content {
+
+	/** Size of chunks for inserted text. */
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	/** Texts longer than this get a chunk of their own. */
+	private static final int OWN_CHUNK = CHUNK_SIZE / 4;
+
+	/** Source of node priorities. */
+	private final Random random = new Random();
+
+	/** Original text, can be <code>null</code>. */
+	private final TextSource original;
+
+	/** Chunk that inserted text is appended to. */
+	private CharChunk chunk = new CharChunk(CHUNK_SIZE);
+
+	/** Root of piece tree, includes implied newline. */
+	private Node root;
+
+	/** Positions created on this content. */
+	private final List<WeakReference<MarkPosition>> marks = new ArrayList<>();
+
+	/**
+	 * Constructor for content without original text.
+	 */
+	PieceTableContent() {
+		this(null, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param original original text, can be <code>null</code>
+	 * @param length length of original text
+	 */
+	PieceTableContent(TextSource original, int length) {
+		this.original = original;
+		CharChunk newline = new CharChunk(1);
+		newline.append("\n", 0, 1);
+		root = leaf(newline, 0, 1);		//implied newline
+		if (length > 0) {
+			root = merge(leaf(original, 0, length), root);
+		}
+	}
+
+	@Override
+	public synchronized Position createPosition(int offset) throws BadLocationException {
+		if (offset < 0 || offset > length()) {
+			throw new BadLocationException("Invalid position", offset);
+		}
+		MarkPosition mark = new MarkPosition(offset);
+		marks.add(new WeakReference<>(mark));
+		return mark;
+	}
+
+	@Override
+	public synchronized int length() {
+		return root.total;
+	}
+
+	@Override
+	public synchronized UndoableEdit insertString(int where, String str) throws BadLocationException {
+		if (where < 0 || where >= length()) {
+			throw new BadLocationException("Invalid insert", length());
+		}
+		int len = str.length();
+		if (len == 0) {
+			return null;
+		}
+
+		Node[] parts = split(root, where);
+		Node left = parts[0];
+		if (len > OWN_CHUNK) {		//big text is copied once, into chunk of exact size
+			CharChunk own = new CharChunk(len);
+			left = merge(left, leaf(own, own.append(str, 0, len), len));
+		} else {
+			if (chunk.free() < len) {
+				chunk = new CharChunk(CHUNK_SIZE);
+			}
+			Node last = rightmost(left);
+			int start = chunk.append(str, 0, len);
+			if (last != null && last.source == chunk && last.start + last.length == start) {
+				left = extendRightmost(left, len);		//typing continues previous insert
+			} else {
+				left = merge(left, leaf(chunk, start, len));
+			}
+		}
+		root = merge(left, parts[1]);
+		moveMarks(where, len);
+		return new InsertUndo(where, len);
+	}
+
+	@Override
+	public synchronized UndoableEdit remove(int where, int nitems) throws BadLocationException {
+		if (where < 0 || nitems < 0 || where + nitems >= length()) {
+			throw new BadLocationException("Invalid remove", length() + 1);
+		}
+		if (nitems == 0) {
+			return null;
+		}
+		Node removed = cut(where, nitems);
+		moveMarks(where, -nitems);
+		return new RemoveUndo(where, removed);
+	}
+
+	@Override
+	public synchronized String getString(int where, int len) throws BadLocationException {
+		if (where < 0 || len < 0 || where + len > length()) {
+			throw new BadLocationException("Invalid range", length());
+		}
+		char[] chars = new char[len];
+		copy(root, where, len, chars, 0);
+		return new String(chars);
+	}
+
+	@Override
+	public synchronized void getChars(int where, int len, Segment txt) throws BadLocationException {
+		if (where < 0 || len < 0 || where + len > length()) {
+			throw new BadLocationException("Invalid location", length());
+		}
+		read(root, where, len, txt);
+	}
+
+	/**
+	 * Returns number of bytes taken by text. Size is computed from sources of current
+	 * pieces, so chunks of removed text are not counted even if undo history still
+	 * holds them. Text of mapped original source is counted only once it is read
+	 * into memory. Takes O(n) in number of pieces.
+	 * @return size in bytes
+	 */
+	synchronized long heapSize() {
+		Set<TextSource> sources = Collections.newSetFromMap(new IdentityHashMap<TextSource, Boolean>());
+		sources.add(chunk);
+		collectSources(root, sources);
+
+		long bytes = 0;
+		for (TextSource source : sources) {
+			if (source instanceof CharChunk) {
+				bytes += ((CharChunk) source).size();
+			} else if (source instanceof MappedTextSource) {
+				bytes += ((MappedTextSource) source).heapSize();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Adds sources of all pieces in tree to set.
+	 * @param node tree root
+	 * @param sources set of sources
+	 */
+	private static void collectSources(Node node, Set<TextSource> sources) {
+		while (node != null) {
+			sources.add(node.source);
+			collectSources(node.left, sources);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Takes snapshot of content without implied newline. Nothing is copied.
+	 * @return snapshot
+	 */
+	synchronized TextSnapshot snapshot() {
+		return new Snapshot(root, root.total - 1);
+	}
+
+	/**
+	 * Inserts text of snapshot. Snapshot of a piece table content is not copied,
+	 * its pieces are inserted into this content, other snapshots are copied.
+	 * @param where offset
+	 * @param text inserted text
+	 * @return undoable edit, <code>null</code> if text is empty
+	 * @throws BadLocationException if offset is not valid
+	 */
+	synchronized UndoableEdit insert(int where, TextSnapshot text) throws BadLocationException {
+		if (!(text instanceof Snapshot)) {
+			Segment txt = new Segment();
+			text.getChars(0, text.length(), txt);
+			return insertString(where, txt.toString());
+		}
+		if (where < 0 || where >= length()) {
+			throw new BadLocationException("Invalid insert", length());
+		}
+		int len = text.length();
+		if (len == 0) {
+			return null;
+		}
+		paste(where, ((Snapshot) text).pieces());
+		moveMarks(where, len);
+		return new InsertUndo(where, len);
+	}
+
+	/**
+	 * Reads mapped original text into memory and closes its file.
+	 * @throws IOException if file can not be read
+	 * @see MappedTextSource#unmap()
+	 */
+	void unmap() throws IOException {
+		if (original instanceof MappedTextSource) {
+			((MappedTextSource) original).unmap();
+		}
+	}
+
+	/**
+	 * Closes original text if it holds resources, like mapped file.
+	 * @throws IOException if closing fails
+	 */
+	void close() throws IOException {
+		if (original instanceof Closeable) {
+			((Closeable) original).close();
+		}
+	}
+
+	/**
+	 * Removes range from tree.
+	 * @param where offset
+	 * @param len number of chars
+	 * @return tree of removed pieces
+	 */
+	private Node cut(int where, int len) {
+		Node[] parts = split(root, where);
+		Node[] rest = split(parts[1], len);
+		root = merge(parts[0], rest[1]);
+		return rest[0];
+	}
+
+	/**
+	 * Inserts tree of pieces.
+	 * @param where offset
+	 * @param pieces tree of pieces
+	 */
+	private void paste(int where, Node pieces) {
+		Node[] parts = split(root, where);
+		root = merge(merge(parts[0], pieces), parts[1]);
+	}
+
+	/**
+	 * Moves positions after insert or remove. Like in <code>GapContent</code>,
+	 * position at offset of insert is moved after inserted text, except position at
+	 * the start of text, which stays there.
+	 * @param where offset of change
+	 * @param delta number of inserted chars, negative for removed ones
+	 */
+	private void moveMarks(int where, int delta) {
+		for (Iterator<WeakReference<MarkPosition>> it = marks.iterator(); it.hasNext();) {
+			MarkPosition mark = it.next().get();
+			if (mark == null) {
+				it.remove();
+			} else if (delta > 0 && mark.offset >= where && mark.offset != 0) {
+				mark.offset += delta;
+			} else if (delta < 0 && mark.offset > where) {
+				mark.offset = Math.max(where, mark.offset + delta);
+			}
+		}
+	}
+
+	/**
+	 * Fills segment from tree. Segment points into the piece if range is inside one
+	 * piece or segment allows partial return.
+	 * @param node tree root
+	 * @param where offset
+	 * @param len number of chars
+	 * @param txt segment
+	 */
+	private static void read(Node node, int where, int len, Segment txt) {
+		if (len == 0) {
+			txt.array = new char[0];
+			txt.offset = 0;
+			txt.count = 0;
+			return;
+		}
+
+		Node top = node;
+		int offset = where;
+		while (true) {
+			int left = total(node.left);
+			if (offset < left) {
+				node = node.left;
+			} else if (offset >= left + node.length) {
+				offset -= left + node.length;
+				node = node.right;
+			} else {
+				break;
+			}
+		}
+
+		offset -= total(node.left);
+		int n = Math.min(len, node.length - offset);
+		if (n == len || txt.isPartialReturn()) {
+			node.source.getChars(node.start + offset, n, txt);
+			return;
+		}
+
+		char[] chars = new char[len];
+		copy(top, where, len, chars, 0);
+		txt.array = chars;
+		txt.offset = 0;
+		txt.count = len;
+	}
+
+	/**
+	 * Copies range of tree into array.
+	 * @param node tree root
+	 * @param where offset in tree
+	 * @param len number of chars
+	 * @param dst destination
+	 * @param dstPos offset in destination
+	 */
+	private static void copy(Node node, int where, int len, char[] dst, int dstPos) {
+		while (node != null && len > 0) {
+			int left = total(node.left);
+			if (where < left) {
+				int n = Math.min(len, left - where);
+				copy(node.left, where, n, dst, dstPos);
+				where += n;
+				dstPos += n;
+				len -= n;
+				continue;
+			}
+			if (where < left + node.length) {
+				int from = where - left;
+				int n = Math.min(len, node.length - from);
+				node.source.getChars(node.start + from, n, dst, dstPos);
+				where += n;
+				dstPos += n;
+				len -= n;
+			}
+			where -= left + node.length;
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Creates single node tree.
+	 * @param source source
+	 * @param start start in source
+	 * @param length number of chars
+	 * @return node
+	 */
+	private Node leaf(TextSource source, int start, int length) {
+		return new Node(null, null, random.nextInt(), source, start, length);
+	}
+
+	/**
+	 * Splits tree in two, first one holds first <code>offset</code> chars. Piece
+	 * that contains offset is split in two pieces.
+	 * @param node tree root
+	 * @param offset split offset
+	 * @return two trees
+	 */
+	private Node[] split(Node node, int offset) {
+		if (node == null) {
+			return new Node[2];
+		}
+		int left = total(node.left);
+		if (offset <= left) {
+			Node[] parts = split(node.left, offset);
+			parts[1] = node.with(parts[1], node.right);
+			return parts;
+		}
+		if (offset >= left + node.length) {
+			Node[] parts = split(node.right, offset - left - node.length);
+			parts[0] = node.with(node.left, parts[0]);
+			return parts;
+		}
+		int delta = offset - left;
+		Node head = new Node(node.left, null, node.priority, node.source, node.start, delta);
+		Node tail = merge(leaf(node.source, node.start + delta, node.length - delta), node.right);
+		return new Node[] {head, tail};
+	}
+
+	/**
+	 * Merges two trees, all pieces of first one come before pieces of second one.
+	 * @param a first tree
+	 * @param b second tree
+	 * @return merged tree
+	 */
+	private static Node merge(Node a, Node b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if (a.priority > b.priority) {
+			return a.with(a.left, merge(a.right, b));
+		}
+		return b.with(merge(a, b.left), b.right);
+	}
+
+	/**
+	 * Returns last piece of tree.
+	 * @param node tree root
+	 * @return last piece or <code>null</code> for empty tree
+	 */
+	private static Node rightmost(Node node) {
+		while (node != null && node.right != null) {
+			node = node.right;
+		}
+		return node;
+	}
+
+	/**
+	 * Makes last piece of tree longer.
+	 * @param node tree root
+	 * @param delta number of chars to add
+	 * @return new tree
+	 */
+	private static Node extendRightmost(Node node, int delta) {
+		if (node.right == null) {
+			return new Node(node.left, null, node.priority, node.source, node.start, node.length + delta);
+		}
+		return node.with(node.left, extendRightmost(node.right, delta));
+	}
+
+	/**
+	 * Returns number of chars in tree.
+	 * @param node tree root
+	 * @return chars in tree
+	 */
+	private static int total(Node node) {
+		return node == null ? 0 : node.total;
+	}
+
+	/**
+	 * Piece and root of a subtree. Nodes are never changed.
+	 * @author Dario Vidas
+	 */
+	private static final class Node {
+
+		/** Left subtree. */
+		private final Node left;
+
+		/** Right subtree. */
+		private final Node right;
+
+		/** Heap priority. */
+		private final int priority;
+
+		/** Source of piece text. */
+		private final TextSource source;
+
+		/** Start of piece in source. */
+		private final int start;
+
+		/** Length of piece. */
+		private final int length;
+
+		/** Length of whole subtree. */
+		private final int total;
+
+		/**
+		 * Constructor.
+		 * @param left left subtree
+		 * @param right right subtree
+		 * @param priority heap priority
+		 * @param source source of piece text
+		 * @param start start in source
+		 * @param length piece length
+		 */
+		Node(Node left, Node right, int priority, TextSource source, int start, int length) {
+			this.left = left;
+			this.right = right;
+			this.priority = priority;
+			this.source = source;
+			this.start = start;
+			this.length = length;
+			this.total = total(left) + length + total(right);
+		}
+
+		/**
+		 * Returns node with same piece and given subtrees.
+		 * @param newLeft left subtree
+		 * @param newRight right subtree
+		 * @return node
+		 */
+		Node with(Node newLeft, Node newRight) {
+			if (newLeft == left && newRight == right) {
+				return this;
+			}
+			return new Node(newLeft, newRight, priority, source, start, length);
+		}
+	}
+
+	/**
+	 * Snapshot that is a tree of pieces. Tree can end with more text than belongs to
+	 * snapshot, like implied newline.
+	 * @author Dario Vidas
+	 */
+	private final class Snapshot implements TextSnapshot {
+
+		/** Tree of pieces. */
+		private final Node node;
+
+		/** Number of chars of tree in snapshot. */
+		private final int length;
+
+		/**
+		 * Constructor.
+		 * @param node tree of pieces
+		 * @param length number of chars of tree in snapshot
+		 */
+		Snapshot(Node node, int length) {
+			this.node = node;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public void getChars(int where, int len, Segment txt) {
+			read(node, where, len, txt);
+		}
+
+		@Override
+		public TextSnapshot slice(int where, int len) {
+			if (where < 0 || len < 0 || where + len > length) {
+				throw new IndexOutOfBoundsException("Invalid slice " + where + ", " + len);
+			}
+			return new Snapshot(split(split(node, where)[1], len)[0], len);
+		}
+
+		/**
+		 * Returns tree with exactly the text of snapshot.
+		 * @return tree of pieces
+		 */
+		Node pieces() {
+			return length == total(node) ? node : split(node, length)[0];
+		}
+	}
+
+	/**
+	 * Undo of insert. Removed pieces are kept so redo does not copy text.
+	 * @author Dario Vidas
+	 */
+	private final class InsertUndo extends AbstractUndoableEdit {
+
+		private static final long serialVersionUID = 2815376151584574457L;
+
+		/** Offset of insert. */
+		private final int where;
+
+		/** Number of inserted chars. */
+		private final int length;
+
+		/** Inserted pieces, set on undo. */
+		private transient Node pieces;
+
+		/**
+		 * Constructor.
+		 * @param where offset of insert
+		 * @param length number of inserted chars
+		 */
+		InsertUndo(int where, int length) {
+			this.where = where;
+			this.length = length;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			synchronized (PieceTableContent.this) {
+				pieces = cut(where, length);
+				moveMarks(where, -length);
+			}
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			synchronized (PieceTableContent.this) {
+				paste(where, pieces);
+				moveMarks(where, length);
+				pieces = null;
+			}
+		}
+	}
+
+	/**
+	 * Undo of remove, keeps removed pieces.
+	 * @author Dario Vidas
+	 */
+	private final class RemoveUndo extends AbstractUndoableEdit {
+
+		private static final long serialVersionUID = -4204627452700167263L;
+
+		/** Offset of remove. */
+		private final int where;
+
+		/** Number of removed chars. */
+		private final int length;
+
+		/** Removed pieces, <code>null</code> after undo. */
+		private transient Node pieces;
+
+		/**
+		 * Constructor.
+		 * @param where offset of remove
+		 * @param pieces removed pieces
+		 */
+		RemoveUndo(int where, Node pieces) {
+			this.where = where;
+			this.length = pieces.total;
+			this.pieces = pieces;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			synchronized (PieceTableContent.this) {
+				paste(where, pieces);
+				moveMarks(where, length);
+				pieces = null;
+			}
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			synchronized (PieceTableContent.this) {
+				pieces = cut(where, length);
+				moveMarks(where, -length);
+			}
+		}
+	}
+
+	/**
+	 * Position that is moved by edits.
+	 * @author Dario Vidas
+	 */
+	private static final class MarkPosition implements Position {
+
+		/** Current offset. */
+		private int offset;
+
+		/**
+		 * Constructor.
+		 * @param offset initial offset
+		 */
+		MarkPosition(int offset) {
+			this.offset = offset;
+		}
+
+		@Override
+		public int getOffset() {
+			return offset;
+		}
+	}
+}
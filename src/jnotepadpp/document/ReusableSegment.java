@@ -0,0 +1,38 @@
+package jnotepadpp.document;
+
+import javax.swing.text.Segment;
+
+/**
+ * Segment with a buffer of its own, for readers which read text window by window
+ * with partial return. Text kept as Latin-1 bytes is inflated into the buffer
+ * instead of into a new array, so such reader does not allocate. Segment points
+ * into the buffer only until it is read again.
+ * @author Dario Vidas
+ */
+public final class ReusableSegment extends Segment {
+
+	/** Capacity of buffer in chars, longest window of inflated text. */
+	static final int CAPACITY = 16 * 1024;
+
+	/** Buffer, <code>null</code> until Latin-1 text is first read. */
+	private char[] buffer;
+
+	/**
+	 * Constructor of segment with partial return.
+	 */
+	public ReusableSegment() {
+		super();
+		setPartialReturn(true);
+	}
+
+	/**
+	 * Returns buffer, creating it the first time.
+	 * @return buffer
+	 */
+	char[] buffer() {
+		if (buffer == null) {
+			buffer = new char[CAPACITY];
+		}
+		return buffer;
+	}
+}
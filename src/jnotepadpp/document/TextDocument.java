@@ -0,0 +1,739 @@
+package jnotepadpp.document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Plain text document that does not keep an element object for every line. Lines
+ * are held in <code>LineIndex</code> and line elements are created only when view
+ * asks for them, so documents with millions of lines take a few bytes per line.
+ * Element structure is the same as in <code>PlainDocument</code>: root element has
+ * one leaf per line, but a line can end with <code>'\n'</code>, <code>"\r\n"</code> or
+ * <code>'\r'</code>, so text with any line separators has right lines. Text is kept in
+ * <code>PieceTableContent</code>.
+ * @author Dario Vidas
+ */
+public class TextDocument extends AbstractDocument {
+
+	private static final long serialVersionUID = 3650524838398706129L;
+
+	/** Name of line element. */
+	private static final String LINE_NAME = AbstractDocument.ParagraphElementName;
+
+	/** Name of root element. */
+	private static final String ROOT_NAME = AbstractDocument.SectionElementName;
+
+	/** Tab size property value, same as in <code>PlainDocument</code>. */
+	private static final int TAB_SIZE = 8;
+
+	/** Chunk size used when indexing existing content. */
+	private static final int INDEX_CHUNK = 64 * 1024;
+
+	/** Line starts. */
+	private final transient LineIndex lines;
+
+	/** Counters of non-blank chars, words and bytes, updated on every edit. */
+	private final transient CharCounter counter;
+
+	/** Root element. */
+	private final transient Element root = new RootElement();
+
+	/**
+	 * Constructor for empty document.
+	 */
+	public TextDocument() {
+		this(new PieceTableContent());
+	}
+
+	/**
+	 * Constructor for document with given content. Content is indexed at once.
+	 * @param content document content
+	 */
+	protected TextDocument(Content content) {
+		this(content, new LineIndex(), new CharCounter());
+		index(content, lines, counter);
+	}
+
+	/**
+	 * Constructor for content which is already indexed.
+	 * @param content document content
+	 * @param lines line index of content
+	 * @param counter counters of content
+	 */
+	private TextDocument(Content content, LineIndex lines, CharCounter counter) {
+		super(content);
+		this.lines = lines;
+		this.counter = counter;
+		putProperty(PlainDocument.tabSizeAttribute, TAB_SIZE);
+	}
+
+	/**
+	 * Opens file as memory-mapped document. File content is not read into memory, it
+	 * is decoded page by page when needed. File is scanned once to build page and line
+	 * index, scan can be stopped by interrupting current thread.
+	 * @param file file to open
+	 * @param charset file charset
+	 * @param listener listener notified during scan, can be <code>null</code>
+	 * @return document
+	 * @throws IOException if file can not be mapped
+	 */
+	public static TextDocument map(File file, Charset charset, final MappedTextSource.ScanListener listener)
+			throws IOException {
+		final LineIndex lines = new LineIndex();
+		final CharCounter counter = new CharCounter();
+		MappedTextSource source = new MappedTextSource(file, charset, new MappedTextSource.ScanListener() {
+
+			@Override
+			public void pageScanned(CharBuffer chars, long bytesRead, long totalBytes) throws IOException {
+				lines.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+				counter.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+				if (listener != null) {
+					listener.pageScanned(chars, bytesRead, totalBytes);
+				}
+			}
+		});
+		lines.append(new char[] {'\n'}, 0, 1);		//implied newline
+		lines.trimLastLine();
+		return new TextDocument(new PieceTableContent(source, source.length()), lines, counter);
+	}
+
+	/**
+	 * Builds line index and counters of content.
+	 * @param content content
+	 * @param lines empty line index
+	 * @param counter empty counter
+	 */
+	private static void index(Content content, LineIndex lines, CharCounter counter) {
+		Segment txt = new ReusableSegment();
+		try {
+			for (int offset = 0, length = content.length(); offset < length; offset += txt.count) {
+				content.getChars(offset, Math.min(INDEX_CHUNK, length - offset), txt);
+				lines.append(txt.array, txt.offset, txt.count);
+				counter.append(txt.array, txt.offset, Math.min(txt.count, length - 1 - offset));		//without implied newline
+			}
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+		lines.trimLastLine();
+	}
+
+	/**
+	 * Returns statistics of the text. Counters are kept up to date on every edit, so
+	 * this takes constant time.
+	 * @return statistics
+	 */
+	public TextStatistics getStatistics() {
+		readLock();
+		try {
+			return new TextStatistics(getLength(), counter.nonBlank, counter.words, lines.lineCount(), counter.bytes);
+		} finally {
+			readUnlock();
+		}
+	}
+
+	/**
+	 * Inserts text of snapshot. Text of a snapshot taken from this kind of document
+	 * is not copied, document shares its pieces, so inserting text that was removed
+	 * earlier takes no memory for the text itself. Listeners are notified like for
+	 * <code>insertString</code>.
+	 * @param offset insert offset
+	 * @param text inserted text
+	 * @throws BadLocationException if offset is not valid
+	 */
+	public void insert(int offset, TextSnapshot text) throws BadLocationException {
+		if (!(getContent() instanceof PieceTableContent)) {
+			Segment txt = new Segment();
+			text.getChars(0, text.length(), txt);
+			insertString(offset, txt.toString(), null);
+			return;
+		}
+
+		writeLock();
+		try {
+			UndoableEdit edit = ((PieceTableContent) getContent()).insert(offset, text);
+			if (edit == null) {
+				return;
+			}
+			DefaultDocumentEvent chng = new DefaultDocumentEvent(offset, text.length(), DocumentEvent.EventType.INSERT);
+			chng.addEdit(edit);
+			insertUpdate(chng, null);
+			chng.end();
+			fireInsertUpdate(chng);
+			fireUndoableEditUpdate(new UndoableEditEvent(this, chng));
+		} finally {
+			writeUnlock();
+		}
+	}
+
+	/**
+	 * Returns number of heap bytes taken by text of document. Inserted text takes
+	 * one byte per char while it is Latin-1, mapped file text takes none until it is
+	 * read into memory. Chunks which text no longer refers to are not counted.
+	 * @return estimated size in bytes
+	 */
+	public long getHeapSize() {
+		Content content = getContent();
+		return content instanceof PieceTableContent ? ((PieceTableContent) content).heapSize() : 2L * getLength();
+	}
+
+	/**
+	 * Reads text of mapped file into memory and closes the file, so the file can be
+	 * replaced. Document, its snapshots and undo history keep their text. Can be
+	 * called on any thread.
+	 * @throws IOException if file can not be read
+	 */
+	public void unmap() throws IOException {
+		Content content = getContent();
+		if (content instanceof PieceTableContent) {
+			((PieceTableContent) content).unmap();
+		}
+	}
+
+	/**
+	 * Releases resources held by document content, like mapped file.
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		Content content = getContent();
+		if (content instanceof PieceTableContent) {
+			((PieceTableContent) content).close();
+		}
+	}
+
+	/**
+	 * Takes snapshot of document text. Snapshot is cheap, it does not copy text, and
+	 * can be read on any thread.
+	 * @return snapshot
+	 * @throws UnsupportedOperationException if content is not a piece table
+	 */
+	public TextSnapshot snapshot() {
+		Content content = getContent();
+		if (!(content instanceof PieceTableContent)) {
+			throw new UnsupportedOperationException("Content does not support snapshots");
+		}
+		readLock();
+		try {
+			return ((PieceTableContent) content).snapshot();
+		} finally {
+			readUnlock();
+		}
+	}
+
+	@Override
+	public Element getDefaultRootElement() {
+		return root;
+	}
+
+	@Override
+	public Element getParagraphElement(int pos) {
+		return root.getElement(root.getElementIndex(pos));
+	}
+
+	@Override
+	protected void insertUpdate(DefaultDocumentEvent chng, AttributeSet attr) {
+		int offset = chng.getOffset();
+		int len = chng.getLength();
+		int first = firstChangedLine(offset);
+		int last = lines.lineOfOffset(offset);
+		int start = lines.lineStart(first);
+		int end = lines.lineEnd(last) + len;		//line end after insert
+
+		//only inserted text and one char on each side of it can change line ends
+		int from = Math.max(start, offset - 1);
+		LineIndex scanned = new LineIndex();
+		scan(from, Math.min(offset + len + 2, getContent().length()), scanned);
+		chng.addEdit(replaceLines(first, last - first + 1, lengthsOf(start, end, from, scanned)));
+
+		CharCounter inserted = new CharCounter(offset == 0 ? '\n' : charAt(offset - 1));
+		scan(offset, offset + len, inserted);
+		chng.addEdit(countEdit(inserted, charAt(offset + len), 1));
+		super.insertUpdate(chng, attr);
+	}
+
+	@Override
+	protected void removeUpdate(DefaultDocumentEvent chng) {
+		int offset = chng.getOffset();
+		int len = chng.getLength();
+		int first = firstChangedLine(offset);
+		int last = lines.lineOfOffset(offset + len);
+		int start = lines.lineStart(first);
+		int end = lines.lineEnd(last) - len;		//line end after remove
+
+		//called before remove, so chars which will meet are scanned from both sides
+		int from = Math.max(start, offset - 1);
+		LineIndex scanned = new LineIndex();
+		scan(from, offset, scanned);
+		scan(offset + len, Math.min(offset + len + 2, getContent().length()), scanned);
+		chng.addEdit(replaceLines(first, last - first + 1, lengthsOf(start, end, from, scanned)));
+
+		CharCounter removed = new CharCounter(offset == 0 ? '\n' : charAt(offset - 1));
+		scan(offset, offset + len, removed);
+		chng.addEdit(countEdit(removed, charAt(offset + len), -1));
+		super.removeUpdate(chng);
+	}
+
+	/**
+	 * Returns first line changed by edit at given offset. That is line containing the
+	 * offset, or line before it if it ends with <code>'\r'</code> which could become
+	 * part of <code>"\r\n"</code>.
+	 * @param offset edit offset
+	 * @return first changed line
+	 */
+	private int firstChangedLine(int offset) {
+		int line = lines.lineOfOffset(offset);
+		if (line > 0 && offset == lines.lineStart(line) && charAt(offset - 1) == '\r') {
+			line--;
+		}
+		return line;
+	}
+
+	/**
+	 * Returns character of content.
+	 * @param offset offset
+	 * @return character at offset
+	 */
+	private char charAt(int offset) {
+		Segment txt = new Segment();
+		try {
+			getContent().getChars(offset, 1, txt);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+		return txt.array[txt.offset];
+	}
+
+	/**
+	 * Appends part of content to index.
+	 * @param from start offset
+	 * @param to end offset
+	 * @param index index
+	 */
+	private void scan(int from, int to, LineIndex index) {
+		Segment txt = new ReusableSegment();
+		try {
+			for (int pos = from; pos < to; pos += txt.count) {
+				getContent().getChars(pos, to - pos, txt);
+				index.append(txt.array, txt.offset, txt.count);
+			}
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Counts part of content.
+	 * @param from start offset
+	 * @param to end offset
+	 * @param counted counter
+	 */
+	private void scan(int from, int to, CharCounter counted) {
+		Segment txt = new ReusableSegment();
+		try {
+			for (int pos = from; pos < to; pos += txt.count) {
+				getContent().getChars(pos, to - pos, txt);
+				counted.append(txt.array, txt.offset, txt.count);
+			}
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Applies counts of inserted or removed text to document counters. Char after the
+	 * edit starts a word only if char before it is blank, so it is counted again with
+	 * its old and new neighbour.
+	 * @param counted counter of inserted or removed text, created with char before it
+	 * @param next char after inserted or removed text
+	 * @param sign <code>1</code> for insert, <code>-1</code> for remove
+	 * @return undoable edit of counters
+	 */
+	private CountEdit countEdit(CharCounter counted, char next, int sign) {
+		int words = sign * counted.words;
+		if (!CharCounter.isBlank(next)) {
+			int startsAfterText = CharCounter.isBlank(counted.last()) ? 1 : 0;
+			int startsAfterEdit = CharCounter.isBlank(counted.before()) ? 1 : 0;
+			words += sign * (startsAfterText - startsAfterEdit);
+		}
+		CountEdit edit = new CountEdit(sign * counted.nonBlank, words, sign * counted.bytes);
+		edit.apply(1);
+		return edit;
+	}
+
+	/**
+	 * Returns lengths of lines between two line ends after edit. Only the edited part
+	 * of text is scanned, all other line ends between <code>start</code> and
+	 * <code>end</code> are known to be gone.
+	 * @param start start of first changed line
+	 * @param end end of last changed line
+	 * @param from offset where scan started
+	 * @param scanned index of scanned text
+	 * @return line lengths
+	 */
+	private static int[] lengthsOf(int start, int end, int from, LineIndex scanned) {
+		int[] lengths = new int[scanned.lineCount()];
+		int n = 0;
+		int lineStart = start;
+		for (int i = 1; i < scanned.lineCount(); i++) {
+			int lineEnd = from + scanned.lineStart(i);
+			if (lineEnd >= end) {
+				break;
+			}
+			lengths[n++] = lineEnd - lineStart;
+			lineStart = lineEnd;
+		}
+		lengths[n++] = end - lineStart;
+		return n == lengths.length ? lengths : Arrays.copyOf(lengths, n);
+	}
+
+	/**
+	 * Replaces lines in line index. If number of lines changes, returned edit is also
+	 * element change of root element, otherwise only length of one line changed and
+	 * view does not need to know about it.
+	 * @param index first line
+	 * @param removed number of removed lines
+	 * @param lengths lengths of new lines
+	 * @return undoable edit
+	 */
+	private LineUndo replaceLines(int index, int removed, int[] lengths) {
+		LineUndo edit;
+		if (removed == 1 && lengths.length == 1) {
+			edit = new LineUndo(index, lines.lengths(index, 1), lengths);
+		} else {
+			Element[] removedElements = new Element[removed];
+			for (int i = 0; i < removed; i++) {
+				removedElements[i] = new DetachedElement(lines.lineStart(index + i), lines.lineEnd(index + i));
+			}
+			edit = new LineEdit(index, lines.lengths(index, removed), lengths, removedElements);
+		}
+		lines.replace(index, removed, lengths);
+		return edit;
+	}
+
+	/**
+	 * Change of document counters made by one insert or remove.
+	 * @author Dario Vidas
+	 */
+	private final class CountEdit extends AbstractUndoableEdit {
+
+		private static final long serialVersionUID = 8023462283591207174L;
+
+		/** Change of non-blank char count. */
+		private final int nonBlank;
+
+		/** Change of word count. */
+		private final int words;
+
+		/** Change of byte count. */
+		private final long bytes;
+
+		/**
+		 * Constructor.
+		 * @param nonBlank change of non-blank char count
+		 * @param words change of word count
+		 * @param bytes change of byte count
+		 */
+		CountEdit(int nonBlank, int words, long bytes) {
+			this.nonBlank = nonBlank;
+			this.words = words;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Adds or subtracts changes from document counters.
+		 * @param sign <code>1</code> to add, <code>-1</code> to subtract
+		 */
+		void apply(int sign) {
+			counter.nonBlank += sign * nonBlank;
+			counter.words += sign * words;
+			counter.bytes += sign * bytes;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			apply(-1);
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			apply(1);
+		}
+	}
+
+	/**
+	 * Edit of line index. Undo and redo restore the index the same way
+	 * <code>ElementEdit</code> restores branch element.
+	 * @author Dario Vidas
+	 */
+	private class LineUndo extends AbstractUndoableEdit {
+
+		private static final long serialVersionUID = -1466521244669536640L;
+
+		/** First replaced line. */
+		protected final int index;
+
+		/** Lengths of lines before edit. */
+		protected final int[] oldLengths;
+
+		/** Lengths of lines after edit. */
+		protected final int[] newLengths;
+
+		/**
+		 * Constructor.
+		 * @param index first replaced line
+		 * @param oldLengths lengths before edit
+		 * @param newLengths lengths after edit
+		 */
+		LineUndo(int index, int[] oldLengths, int[] newLengths) {
+			this.index = index;
+			this.oldLengths = oldLengths;
+			this.newLengths = newLengths;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			lines.replace(index, newLengths.length, oldLengths);
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			lines.replace(index, oldLengths.length, newLengths);
+		}
+	}
+
+	/**
+	 * Edit of line index that adds or removes lines, reported to views as element
+	 * change of root element.
+	 * @author Dario Vidas
+	 */
+	private final class LineEdit extends LineUndo implements DocumentEvent.ElementChange {
+
+		private static final long serialVersionUID = 5310829937261840162L;
+
+		/** Elements of removed lines. */
+		private final transient Element[] removed;
+
+		/**
+		 * Constructor.
+		 * @param index first replaced line
+		 * @param oldLengths lengths before edit
+		 * @param newLengths lengths after edit
+		 * @param removed elements of removed lines
+		 */
+		LineEdit(int index, int[] oldLengths, int[] newLengths, Element[] removed) {
+			super(index, oldLengths, newLengths);
+			this.removed = removed;
+		}
+
+		@Override
+		public Element getElement() {
+			return root;
+		}
+
+		@Override
+		public int getIndex() {
+			return index;
+		}
+
+		@Override
+		public Element[] getChildrenRemoved() {
+			return removed;
+		}
+
+		@Override
+		public Element[] getChildrenAdded() {
+			Element[] added = new Element[newLengths.length];
+			for (int i = 0; i < added.length; i++) {
+				added[i] = new LineElement(index + i);
+			}
+			return added;
+		}
+	}
+
+	/**
+	 * Base class for elements of this document. Elements have no attributes.
+	 * @author Dario Vidas
+	 */
+	private abstract class BaseElement implements Element {
+
+		@Override
+		public Document getDocument() {
+			return TextDocument.this;
+		}
+
+		@Override
+		public AttributeSet getAttributes() {
+			return SimpleAttributeSet.EMPTY;
+		}
+	}
+
+	/**
+	 * Root element, its children are lines.
+	 * @author Dario Vidas
+	 */
+	private final class RootElement extends BaseElement {
+
+		@Override
+		public Element getParentElement() {
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return ROOT_NAME;
+		}
+
+		@Override
+		public int getStartOffset() {
+			return 0;
+		}
+
+		@Override
+		public int getEndOffset() {
+			return lines.lineEnd(lines.lineCount() - 1);
+		}
+
+		@Override
+		public int getElementIndex(int offset) {
+			return lines.lineOfOffset(offset);
+		}
+
+		@Override
+		public int getElementCount() {
+			return lines.lineCount();
+		}
+
+		@Override
+		public Element getElement(int index) {
+			if (index < 0 || index >= lines.lineCount()) {
+				return null;
+			}
+			return new LineElement(index);
+		}
+
+		@Override
+		public boolean isLeaf() {
+			return false;
+		}
+	}
+
+	/**
+	 * Line element. Offsets are read from line index so element follows edits of
+	 * the document.
+	 * @author Dario Vidas
+	 */
+	private class LineElement extends BaseElement {
+
+		/** Line index. */
+		private final int line;
+
+		/**
+		 * Constructor.
+		 * @param line line index
+		 */
+		LineElement(int line) {
+			this.line = line;
+		}
+
+		@Override
+		public Element getParentElement() {
+			return root;
+		}
+
+		@Override
+		public String getName() {
+			return LINE_NAME;
+		}
+
+		@Override
+		public int getStartOffset() {
+			return lines.lineStart(Math.min(line, lines.lineCount() - 1));
+		}
+
+		@Override
+		public int getEndOffset() {
+			return lines.lineEnd(Math.min(line, lines.lineCount() - 1));
+		}
+
+		@Override
+		public int getElementIndex(int offset) {
+			return -1;
+		}
+
+		@Override
+		public int getElementCount() {
+			return 0;
+		}
+
+		@Override
+		public Element getElement(int index) {
+			return null;
+		}
+
+		@Override
+		public boolean isLeaf() {
+			return true;
+		}
+	}
+
+	/**
+	 * Line element that was removed from document. It keeps offsets it had at the
+	 * moment of removal.
+	 * @author Dario Vidas
+	 */
+	private final class DetachedElement extends LineElement {
+
+		/** Start offset. */
+		private final int start;
+
+		/** End offset. */
+		private final int end;
+
+		/**
+		 * Constructor.
+		 * @param start start offset
+		 * @param end end offset
+		 */
+		DetachedElement(int start, int end) {
+			super(-1);
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Element getParentElement() {
+			return null;
+		}
+
+		@Override
+		public int getStartOffset() {
+			return start;
+		}
+
+		@Override
+		public int getEndOffset() {
+			return end;
+		}
+	}
+}
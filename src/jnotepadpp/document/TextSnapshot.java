@@ -0,0 +1,36 @@
+package jnotepadpp.document;
+
+import javax.swing.text.Segment;
+
+/**
+ * Read-only view of document text taken at some moment. Later edits of the document
+ * do not change the snapshot, so it can be read on any thread while document is
+ * being edited.
+ * @author Dario Vidas
+ */
+public interface TextSnapshot {
+
+	/**
+	 * Returns number of characters in snapshot.
+	 * @return length
+	 */
+	int length();
+
+	/**
+	 * Fills segment with characters. Segment may be set to point directly into
+	 * internal buffers, so it must not be modified. If segment allows partial return
+	 * fewer than <code>len</code> characters can be returned.
+	 * @param where offset of first char
+	 * @param len number of chars
+	 * @param txt segment to fill
+	 */
+	void getChars(int where, int len, Segment txt);
+
+	/**
+	 * Returns part of snapshot. Text is not copied.
+	 * @param where offset of first char
+	 * @param len number of chars
+	 * @return snapshot of the part
+	 */
+	TextSnapshot slice(int where, int len);
+}
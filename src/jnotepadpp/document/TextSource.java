@@ -0,0 +1,31 @@
+package jnotepadpp.document;
+
+import javax.swing.text.Segment;
+
+/**
+ * Immutable sequence of characters that pieces of <code>PieceTableContent</code>
+ * point to. Characters of a source never change, so they can be read on any thread
+ * and shared between snapshots.
+ * @author Dario Vidas
+ */
+interface TextSource {
+
+	/**
+	 * Copies characters into array.
+	 * @param where offset of first char
+	 * @param len number of chars
+	 * @param dst destination array
+	 * @param dstPos offset in destination array
+	 */
+	void getChars(int where, int len, char[] dst, int dstPos);
+
+	/**
+	 * Fills segment with characters. Segment may point directly into source, and if
+	 * it allows partial return fewer than <code>len</code> characters can be
+	 * returned.
+	 * @param where offset of first char
+	 * @param len number of chars
+	 * @param txt segment to fill
+	 */
+	void getChars(int where, int len, Segment txt);
+}
@@ -0,0 +1,82 @@
+package jnotepadpp.document;
+
+/**
+ * Statistics of document text at one moment. Created by
+ * <code>TextDocument.getStatistics()</code> from counters the document keeps up to
+ * date on every edit, so it is never computed by reading the text.
+ * @author Dario Vidas
+ */
+public final class TextStatistics {
+
+	/** Number of characters. */
+	private final int chars;
+
+	/** Number of non-blank characters. */
+	private final int nonBlank;
+
+	/** Number of words. */
+	private final int words;
+
+	/** Number of lines. */
+	private final int lines;
+
+	/** Size in UTF-8. */
+	private final long bytes;
+
+	/**
+	 * Constructor.
+	 * @param chars number of characters
+	 * @param nonBlank number of non-blank characters
+	 * @param words number of words
+	 * @param lines number of lines
+	 * @param bytes size in UTF-8
+	 */
+	TextStatistics(int chars, int nonBlank, int words, int lines, long bytes) {
+		this.chars = chars;
+		this.nonBlank = nonBlank;
+		this.words = words;
+		this.lines = lines;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Returns number of characters.
+	 * @return character count
+	 */
+	public int getChars() {
+		return chars;
+	}
+
+	/**
+	 * Returns number of characters which are not space, tab, line separator or
+	 * <code>'\0'</code>.
+	 * @return non-blank character count
+	 */
+	public int getNonBlank() {
+		return nonBlank;
+	}
+
+	/**
+	 * Returns number of words, runs of non-blank characters.
+	 * @return word count
+	 */
+	public int getWords() {
+		return words;
+	}
+
+	/**
+	 * Returns number of lines.
+	 * @return line count
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * Returns size text would have when saved in UTF-8.
+	 * @return size in bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+}
@@ -1,18 +1,24 @@
 package jnotepadpp.localization;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 
 /**
  * Class implements <code>ILocalizationProvider</code> and acts as abstract class for
  * localization providers. As abstract class it defines methods for adding and
  * removing listeners and also method for firing listeners when change occurs.
+ * <p>
+ * Listeners are held by weak references, so a listener is dropped when its owner
+ * is gone even if it was never removed. Listeners are kept in a copy-on-write array:
+ * adding and removing copy it, firing iterates the current array without locking,
+ * so listeners can be added or removed while they are notified.
+ * </p>
  * @author Dario Vidas
  */
 public abstract class AbstractLocalizationProvider implements ILocalizationProvider {
 
-	/** List of listeners. */
-	private List<ILocalizationListener> listeners = new ArrayList<>();
+	/** Weak references to listeners, replaced on every change. */
+	private volatile ListenerRef[] listeners = new ListenerRef[0];
 
 	/**
 	 * Default constructor.
@@ -22,23 +28,69 @@ public abstract class AbstractLocalizationProvider implements ILocalizationProvi
 	}
 
 	@Override
-	public void addLocalizationListener(ILocalizationListener l) {
-		listeners.add(l);
+	public synchronized void addLocalizationListener(ILocalizationListener l) {
+		ListenerRef[] current = purge(null);
+		ListenerRef[] added = Arrays.copyOf(current, current.length + 1);
+		added[current.length] = new ListenerRef(l);
+		listeners = added;
 	}
 
 	@Override
-	public void removeLocalizationListener(ILocalizationListener l) {
-		listeners.remove(l);
+	public synchronized void removeLocalizationListener(ILocalizationListener l) {
+		listeners = purge(l);
+	}
+
+	/**
+	 * Returns listeners without cleared references and without given listener.
+	 * @param removed listener to leave out, can be <code>null</code>
+	 * @return listeners, the current array if nothing was left out
+	 */
+	private ListenerRef[] purge(ILocalizationListener removed) {
+		ListenerRef[] current = listeners;
+		ListenerRef[] kept = new ListenerRef[current.length];
+		int count = 0;
+		for (ListenerRef ref : current) {
+			ILocalizationListener l = ref.get();
+			if (l != null && l != removed) {
+				kept[count++] = ref;
+			}
+		}
+		return count == current.length ? current : Arrays.copyOf(kept, count);
 	}
 
 	/**
 	 * Method is called when change in provider happens. Method notifies all
-	 * listeners of change.
+	 * listeners of change. Listeners added while firing are notified on next change.
 	 */
 	public void fire() {
-		for (ILocalizationListener l : listeners) {
-			l.localizationChanged();
+		boolean cleared = false;
+		for (ListenerRef ref : listeners) {
+			ILocalizationListener l = ref.get();
+			if (l == null) {
+				cleared = true;
+			} else {
+				l.localizationChanged();
+			}
+		}
+		if (cleared) {
+			synchronized (this) {
+				listeners = purge(null);
+			}
 		}
 	}
 
+	/**
+	 * Weak reference to listener, a named class so references can be kept in an array.
+	 * @author Dario Vidas
+	 */
+	private static final class ListenerRef extends WeakReference<ILocalizationListener> {
+
+		/**
+		 * Constructor.
+		 * @param listener listener
+		 */
+		ListenerRef(ILocalizationListener listener) {
+			super(listener);
+		}
+	}
 }
@@ -7,7 +7,9 @@ package jnotepadpp.localization;
 public interface ILocalizationProvider {
 
 	/**
-	 * Method adds listener to subject.
+	 * Method adds listener to subject. Subject may keep only a weak reference to
+	 * listener, so its owner has to keep a strong one for as long as listener should
+	 * be notified.
 	 * @param l listener to add
 	 */
 	void addLocalizationListener(ILocalizationListener l);
@@ -24,4 +26,12 @@ public interface ILocalizationProvider {
 	 * @return localization specific string
 	 */
 	String getString(String key);
+
+	/**
+	 * Method gets string for key resolved to slot, without looking up the key.
+	 * @param slot slot of key
+	 * @return localization specific string
+	 * @see MessageTable#slotOf(String)
+	 */
+	String getString(int slot);
 }
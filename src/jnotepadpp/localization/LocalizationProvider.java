@@ -1,35 +1,76 @@
 package jnotepadpp.localization;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
 
 /**
  * Class defines localization provider. Class is singleton and is never used directly
  * but only through decorators or bridges. Listeners of this object are localization
  * provider bridges so it actually notifies other providers of change and then they
  * notify their listeners.
+ * <p>
+ * Messages are kept in compiled tables. Table of default language is compiled when
+ * provider is created, tables of other shipped languages are compiled on background
+ * thread right after, so changing language only swaps one table reference. Listeners
+ * are then notified once on event dispatch thread, even if language was changed
+ * several times meanwhile.
+ * </p>
  * @author Dario Vidas
+ * @see MessageTable
  */
 public final class LocalizationProvider extends AbstractLocalizationProvider {
 
+	/** Languages with translation bundles, first one is default. */
+	private static final String[] SHIPPED_LANGUAGES = {"en", "hr"};
+
 	/** Static instance. */
 	private static LocalizationProvider instance = new LocalizationProvider();
 
 	/** Language tag. */
-	private String language;
+	private volatile String language;
+
+	/** Compiled table of current language. */
+	private volatile String[] table;
+
+	/** Compiled or compiling tables by language tag. */
+	private final Map<String, FutureTask<String[]>> tables = new ConcurrentHashMap<>();
 
-	/** Resource bundle. */
-	private ResourceBundle bundle;
+	/** Set while notification of listeners is queued. */
+	private boolean firePending;
 
 	/**
 	 * Private constructor used for singleton class. Constructor sets inital language
-	 * to english.
+	 * to english and starts compiling other languages on background thread.
 	 */
 	private LocalizationProvider() {
 		super();
-		language = "en";
-		Locale locale = Locale.forLanguageTag(language);
-		bundle = ResourceBundle.getBundle(getClass().getPackage().getName() + ".translations", locale);
+		language = SHIPPED_LANGUAGES[0];
+		table = tableOf(language);
+
+		final List<FutureTask<String[]>> preloads = new ArrayList<>();
+		for (int i = 1; i < SHIPPED_LANGUAGES.length; i++) {
+			FutureTask<String[]> task = compileTask(SHIPPED_LANGUAGES[i]);
+			tables.put(SHIPPED_LANGUAGES[i], task);
+			preloads.add(task);
+		}
+		Thread preloader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				for (FutureTask<String[]> preload : preloads) {
+					preload.run();
+				}
+			}
+		}, "localization");
+		preloader.setDaemon(true);
+		preloader.start();
 	}
 
 	/**
@@ -41,21 +82,88 @@ public final class LocalizationProvider extends AbstractLocalizationProvider {
 	}
 
 	/**
-	 * Sets language and fires notifications to listeners.
+	 * Sets language and notifies listeners. Table of a shipped language is normally
+	 * already compiled, other languages are compiled now.
 	 * @param language language tag
 	 */
 	public void setLanguage(String language) {
 		if (!this.language.equals(language)) {
+			table = tableOf(language);
 			this.language = language;
-			Locale locale = Locale.forLanguageTag(language);
-			bundle = ResourceBundle.getBundle(getClass().getPackage().getName() + ".translations", locale);
-			fire();
+			scheduleFire();
 		}
 	}
 
+	/**
+	 * Returns compiled table of language, waiting for it or compiling it if needed.
+	 * @param language language tag
+	 * @return table
+	 */
+	private String[] tableOf(String language) {
+		FutureTask<String[]> task = tables.get(language);
+		if (task == null) {
+			tables.putIfAbsent(language, compileTask(language));
+			task = tables.get(language);
+		}
+		task.run();		//does nothing if it already ran
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				tables.remove(language);
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Creates task which compiles table of language.
+	 * @param language language tag
+	 * @return task
+	 */
+	private static FutureTask<String[]> compileTask(final String language) {
+		return new FutureTask<>(new Callable<String[]>() {
+
+			@Override
+			public String[] call() {
+				return MessageTable.compile(language);
+			}
+		});
+	}
+
+	/**
+	 * Notifies listeners on event dispatch thread, once for all changes made until
+	 * then.
+	 */
+	private synchronized void scheduleFire() {
+		if (firePending) {
+			return;
+		}
+		firePending = true;
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (LocalizationProvider.this) {
+					firePending = false;
+				}
+				fire();
+			}
+		});
+	}
+
 	@Override
 	public String getString(String key) {
-		return bundle.getString(key);
+		return getString(MessageTable.slotOf(key));
+	}
+
+	@Override
+	public String getString(int slot) {
+		return MessageTable.get(table, slot);
 	}
 
 }
@@ -57,4 +57,9 @@ public class LocalizationProviderBridge extends AbstractLocalizationProvider {
 		return provider.getString(key);
 	}
 
+	@Override
+	public String getString(int slot) {
+		return provider.getString(slot);
+	}
+
 }
@@ -0,0 +1,92 @@
+package jnotepadpp.localization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Compiled message tables. Every message key is resolved once to an integer slot,
+ * shared by all languages, and a language is compiled into an array of messages
+ * indexed by slot, so looking up a message by its slot is a single array access.
+ * @author Dario Vidas
+ */
+public final class MessageTable {
+
+	/** Base name of translation bundles. */
+	private static final String BUNDLE = MessageTable.class.getPackage().getName() + ".translations";
+
+	/** Slots of keys. */
+	private static final Map<String, Integer> SLOTS = new HashMap<>();
+
+	/** Keys by slot. */
+	private static final List<String> KEYS = new ArrayList<>();
+
+	/**
+	 * Private constructor, class has only static methods.
+	 */
+	private MessageTable() {
+	}
+
+	/**
+	 * Resolves key to its slot. Key which is not in any table yet gets a new slot.
+	 * @param key message key
+	 * @return slot
+	 */
+	public static synchronized int slotOf(String key) {
+		Integer slot = SLOTS.get(key);
+		if (slot == null) {
+			slot = KEYS.size();
+			SLOTS.put(key, slot);
+			KEYS.add(key);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns message of slot from table.
+	 * @param table compiled table
+	 * @param slot slot
+	 * @return message
+	 * @throws MissingResourceException if table has no message for slot
+	 */
+	static String get(String[] table, int slot) {
+		if (slot >= 0 && slot < table.length && table[slot] != null) {
+			return table[slot];
+		}
+		String key = keyOf(slot);
+		throw new MissingResourceException("Can't find resource for key " + key, BUNDLE, key);
+	}
+
+	/**
+	 * Returns key of slot.
+	 * @param slot slot
+	 * @return key, <code>null</code> if slot was never given
+	 */
+	private static synchronized String keyOf(int slot) {
+		return slot >= 0 && slot < KEYS.size() ? KEYS.get(slot) : null;
+	}
+
+	/**
+	 * Compiles translation bundle of language into table.
+	 * @param language language tag
+	 * @return messages indexed by slot
+	 * @throws MissingResourceException if there is no bundle for language
+	 */
+	static String[] compile(String language) {
+		ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, Locale.forLanguageTag(language));
+		synchronized (MessageTable.class) {
+			for (String key : bundle.keySet()) {
+				slotOf(key);
+			}
+			String[] table = new String[KEYS.size()];
+			for (String key : bundle.keySet()) {
+				table[SLOTS.get(key)] = bundle.getString(key);
+			}
+			return table;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package jnotepadpp.search;
+
+import jnotepadpp.document.ReusableSegment;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+/**
+ * Char sequence view of a document. Characters are read with
+ * <code>Document.getText(int, int, Segment)</code> and partial return in windows of
+ * bounded length, so the view points straight into document buffers, or into a
+ * buffer of its own for Latin-1 text, and reading does not allocate. Segment that
+ * was read last is kept, so reading characters one after another costs one array
+ * access each. View must be used on the thread that edits the document.
+ * @author Dario Vidas
+ */
+public final class DocumentCharSequence implements CharSequence {
+
+	/** Most chars requested in one read. */
+	private static final int WINDOW = 16 * 1024;
+
+	/** Viewed document. */
+	private final Document document;
+
+	/** Document offset of first char of view. */
+	private final int start;
+
+	/** Length of view. */
+	private final int length;
+
+	/** Segment read last. */
+	private final Segment segment = new ReusableSegment();
+
+	/** Document offset of first char in segment. */
+	private int segmentStart;
+
+	/**
+	 * Constructor for view of whole document.
+	 * @param document document
+	 */
+	public DocumentCharSequence(Document document) {
+		this(document, 0, document.getLength());
+	}
+
+	/**
+	 * Constructor for view of part of document.
+	 * @param document document
+	 * @param start offset of first char
+	 * @param end offset after last char
+	 */
+	public DocumentCharSequence(Document document, int start, int end) {
+		this.document = document;
+		this.start = start;
+		this.length = end - start;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		int offset = start + index;
+		int relative = offset - segmentStart;
+		if (relative < 0 || relative >= segment.count) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+			}
+			try {
+				document.getText(offset, Math.min(WINDOW, start + length - offset), segment);
+			} catch (BadLocationException e) {
+				throw new IndexOutOfBoundsException(e.getMessage());
+			}
+			segmentStart = offset;
+			relative = 0;
+		}
+		return segment.array[segment.offset + relative];
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + "-" + to + ", length: " + length);
+		}
+		return new DocumentCharSequence(document, start + from, start + to);
+	}
+
+	/**
+	 * Copies viewed characters into string.
+	 * @return viewed text
+	 */
+	@Override
+	public String toString() {
+		try {
+			return document.getText(start, length);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package jnotepadpp.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches all files in a directory tree. Tree is walked on calling thread and every
+ * file is searched as a separate task on a fixed pool with one thread per core.
+ * Number of waiting tasks is limited, so walking a huge tree does not queue a task
+ * for every file. Files are memory-mapped in chunks that end after a line, decoded
+ * into a reused buffer and searched with a <code>Finder</code>. Binary files (with a
+ * <code>'\0'</code> byte near the start) and files over the size limit are skipped.
+ * Search stops when it is cancelled or when the hit limit is reached.
+ * @author Dario Vidas
+ */
+public final class FileSearch {
+
+	/** Bytes checked for <code>'\0'</code> to detect binary files. */
+	private static final int BINARY_CHECK = 8 * 1024;
+
+	/** Chunk size in bytes, chunks are cut after last line end in the chunk. */
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	/** Longest UTF-8 sequence. */
+	private static final int MAX_SEQUENCE = 4;
+
+	/** Number of waiting tasks per thread. */
+	private static final int QUEUED_PER_THREAD = 4;
+
+	/** Searched directory. */
+	private final Path root;
+
+	/** Searched text or expression. */
+	private final String pattern;
+
+	/** Whether case must match. */
+	private final boolean matchCase;
+
+	/** Whether pattern is regular expression. */
+	private final boolean regex;
+
+	/** Files bigger than this are skipped. */
+	private final long maxFileSize;
+
+	/** Search stops after this many hits. */
+	private final int maxHits;
+
+	/** Number of hits so far. */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	/** Number of searched files so far. */
+	private final AtomicInteger files = new AtomicInteger();
+
+	/** Set when search is cancelled or hit limit is reached. */
+	private volatile boolean stopped;
+
+	/** Pool of running search, <code>null</code> if search is not running. */
+	private volatile ExecutorService pool;
+
+	/**
+	 * Constructor.
+	 * @param root searched directory
+	 * @param pattern searched text or regular expression
+	 * @param matchCase <code>true</code> if case must match
+	 * @param regex <code>true</code> if pattern is regular expression
+	 * @param maxFileSize files bigger than this are skipped
+	 * @param maxHits search stops after this many hits
+	 * @throws java.util.regex.PatternSyntaxException if expression is not valid
+	 */
+	public FileSearch(Path root, String pattern, boolean matchCase, boolean regex, long maxFileSize, int maxHits) {
+		Finder.create(pattern, matchCase, regex);		//fails early on invalid expression
+		this.root = root;
+		this.pattern = pattern;
+		this.matchCase = matchCase;
+		this.regex = regex;
+		this.maxFileSize = maxFileSize;
+		this.maxHits = maxHits;
+	}
+
+	/**
+	 * Runs search and waits until it is finished. Listener is called on pool
+	 * threads.
+	 * @param listener listener of hits
+	 * @throws IOException if directory can not be walked
+	 * @throws InterruptedException if calling thread is interrupted
+	 */
+	public void run(final HitListener listener) throws IOException, InterruptedException {
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final Semaphore queued = new Semaphore(threads * QUEUED_PER_THREAD);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		pool = executor;
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					if (stopped) {
+						return FileVisitResult.TERMINATE;
+					}
+					boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+					return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) throws IOException {
+					if (stopped) {
+						return FileVisitResult.TERMINATE;
+					}
+					if (!attrs.isRegularFile() || attrs.size() > maxFileSize || attrs.size() == 0) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					try {
+						queued.acquire();
+					} catch (InterruptedException e) {
+						stopped = true;
+						Thread.currentThread().interrupt();
+						return FileVisitResult.TERMINATE;
+					}
+					try {
+						executor.execute(new Runnable() {
+
+							@Override
+							public void run() {
+								try {
+									search(file, listener);
+								} catch (IOException | RuntimeException ignorable) {
+									//unreadable file is skipped
+								} finally {
+									queued.release();
+								}
+							}
+						});
+					} catch (RejectedExecutionException e) {		//cancelled meanwhile
+						queued.release();
+						return FileVisitResult.TERMINATE;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) {
+					return stopped ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+				}
+			});
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				//wait for running tasks
+			}
+		} finally {
+			executor.shutdownNow();
+			pool = null;
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Stops search. Files which are being searched are left after current chunk.
+	 */
+	public void cancel() {
+		stopped = true;
+		ExecutorService executor = pool;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns whether search stopped because hit limit was reached.
+	 * @return <code>true</code> if hit limit was reached
+	 */
+	public boolean isLimitReached() {
+		return hits.get() >= maxHits;
+	}
+
+	/**
+	 * Returns number of hits so far.
+	 * @return hit count
+	 */
+	public int getHits() {
+		return Math.min(hits.get(), maxHits);
+	}
+
+	/**
+	 * Returns number of searched files so far.
+	 * @return file count
+	 */
+	public int getFiles() {
+		return files.get();
+	}
+
+	/**
+	 * Searches one file.
+	 * @param file file
+	 * @param listener listener of hits
+	 * @throws IOException if file can not be read
+	 */
+	private void search(Path file, HitListener listener) throws IOException {
+		if (stopped) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (isBinary(channel)) {
+				return;
+			}
+			files.incrementAndGet();
+
+			Finder finder = Finder.create(pattern, matchCase, regex);
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			CharBuffer chars = CharBuffer.allocate((int) Math.min(size, CHUNK_SIZE));
+			int line = 0;
+			for (long start = 0; start < size && !stopped;) {
+				MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+				int length = chunkLength(bytes, start + bytes.capacity() == size);
+				bytes.limit(length);
+
+				chars.clear();
+				decoder.reset();
+				decoder.decode(bytes, chars, true);
+				decoder.flush(chars);
+				chars.flip();
+				line = searchChunk(file, chars, line, finder, listener);
+				start += length;
+			}
+		}
+	}
+
+	/**
+	 * Checks if file starts with binary content.
+	 * @param channel file channel
+	 * @return <code>true</code> if there is a <code>'\0'</code> byte near the start
+	 * @throws IOException if reading fails
+	 */
+	private static boolean isBinary(FileChannel channel) throws IOException {
+		ByteBuffer start = ByteBuffer.allocate(BINARY_CHECK);
+		int n = channel.read(start, 0);
+		for (int i = 0; i < n; i++) {
+			if (start.get(i) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns length of chunk, cut after its last line end. Chunk without line end is
+	 * cut on a character boundary, and never between <code>'\r'</code> and
+	 * <code>'\n'</code>.
+	 * @param bytes mapped chunk
+	 * @param last <code>true</code> if chunk reaches the end of file
+	 * @return chunk length
+	 */
+	private static int chunkLength(ByteBuffer bytes, boolean last) {
+		int length = bytes.capacity();
+		if (last) {
+			return length;
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			byte b = bytes.get(i);
+			if (b == '\n' || b == '\r' && i + 1 < length) {		//'\r' followed by '\n' is passed by then
+				return i + 1;
+			}
+		}
+		if (length > 1 && bytes.get(length - 1) == '\r') {
+			return length - 1;
+		}
+		for (int i = 0; i < MAX_SEQUENCE - 1 && length > 1 && (bytes.get(length - 1) & 0xC0) == 0x80; i++) {
+			length--;		//do not cut a multibyte sequence
+		}
+		if (length > 1 && (bytes.get(length - 1) & 0xC0) == 0xC0) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Searches decoded chunk and reports first match of every matched line.
+	 * @param file searched file
+	 * @param chars decoded chunk
+	 * @param firstLine index of first line in chunk
+	 * @param finder finder
+	 * @param listener listener of hits
+	 * @return index of first line of next chunk
+	 */
+	private int searchChunk(Path file, CharBuffer chars, int firstLine, Finder finder, HitListener listener) {
+		int line = firstLine;
+		int lineStart = 0;
+		int counted = 0;
+		int length = chars.length();
+		int from = 0;
+		while (!stopped && from < length && finder.find(chars, from, length)) {
+			int match = finder.start();
+			for (; counted < match; counted++) {
+				if (isLineEnd(chars, counted, length)) {
+					line++;
+					lineStart = counted + 1;
+				}
+			}
+			int lineEnd = lineStart;
+			while (lineEnd < length && !isLineEnd(chars, lineEnd, length)) {
+				lineEnd++;
+			}
+
+			int textEnd = Math.min(lineEnd, lineStart + SearchHit.MAX_TEXT);
+			if (textEnd > lineStart && chars.charAt(textEnd - 1) == '\r') {
+				textEnd--;
+			}
+			String text = chars.subSequence(lineStart, textEnd).toString();
+			if (hits.incrementAndGet() > maxHits) {
+				stopped = true;
+				break;
+			}
+			listener.hit(new SearchHit(file, line, match - lineStart, finder.end() - match, text));
+			from = lineEnd + 1;
+		}
+
+		for (; counted < length; counted++) {
+			if (isLineEnd(chars, counted, length)) {
+				line++;
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * Checks if a line ends after char at index, lines end like in documents: after
+	 * <code>'\n'</code>, or after <code>'\r'</code> that is not followed by
+	 * <code>'\n'</code>. Chunk never ends between the two.
+	 * @param chars decoded chunk
+	 * @param index index of char
+	 * @param length chunk length
+	 * @return <code>true</code> if char ends a line
+	 */
+	private static boolean isLineEnd(CharBuffer chars, int index, int length) {
+		char c = chars.charAt(index);
+		return c == '\n' || c == '\r' && (index + 1 == length || chars.charAt(index + 1) != '\n');
+	}
+
+	/**
+	 * Listener of search hits.
+	 * @author Dario Vidas
+	 */
+	public interface HitListener {
+
+		/**
+		 * Called for every hit, on one of search threads.
+		 * @param hit found hit
+		 */
+		void hit(SearchHit hit);
+	}
+}
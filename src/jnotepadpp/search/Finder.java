@@ -0,0 +1,69 @@
+package jnotepadpp.search;
+
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds occurrences of a search pattern in text. Finder keeps position of last
+ * match, like <code>java.util.regex.Matcher</code>, so finding does not create any
+ * objects.
+ * @author Dario Vidas
+ */
+public abstract class Finder {
+
+	/** Start of last match. */
+	int start = -1;
+
+	/** End of last match. */
+	int end = -1;
+
+	/**
+	 * Creates finder for given pattern.
+	 * @param pattern searched text or regular expression
+	 * @param matchCase <code>true</code> if case must match
+	 * @param regex <code>true</code> if pattern is regular expression
+	 * @return finder
+	 * @throws PatternSyntaxException if regular expression is not valid
+	 */
+	public static Finder create(String pattern, boolean matchCase, boolean regex) {
+		if (regex) {
+			return new RegexFinder(pattern, matchCase);
+		}
+		return new LiteralFinder(pattern, matchCase);
+	}
+
+	/**
+	 * Finds first match in part of text.
+	 * @param text searched text
+	 * @param from first offset where match can start
+	 * @param to offset where match must end
+	 * @return <code>true</code> if match is found
+	 */
+	public abstract boolean find(CharSequence text, int from, int to);
+
+	/**
+	 * Finds first match at or after given offset, continuing from the start of text
+	 * if there is no match after it.
+	 * @param text searched text
+	 * @param from first offset where match can start
+	 * @return <code>true</code> if match is found
+	 */
+	public boolean findWrapping(CharSequence text, int from) {
+		return find(text, from, text.length()) || from > 0 && find(text, 0, text.length());
+	}
+
+	/**
+	 * Returns start offset of last match.
+	 * @return match start
+	 */
+	public int start() {
+		return start;
+	}
+
+	/**
+	 * Returns end offset of last match.
+	 * @return match end
+	 */
+	public int end() {
+		return end;
+	}
+}
@@ -0,0 +1,78 @@
+package jnotepadpp.search;
+
+/**
+ * Finds literal text with Boyer-Moore-Horspool algorithm. Bad character shifts are
+ * kept for low byte of a character, characters with the same low byte share the
+ * smallest shift, which keeps the table small for any alphabet and is still exact.
+ * @author Dario Vidas
+ */
+final class LiteralFinder extends Finder {
+
+	/** Size of shift table. */
+	private static final int TABLE_SIZE = 256;
+
+	/** Searched text, folded if case does not matter. */
+	private final char[] pattern;
+
+	/** Whether case must match. */
+	private final boolean matchCase;
+
+	/** Bad character shifts. */
+	private final int[] shifts = new int[TABLE_SIZE];
+
+	/**
+	 * Constructor.
+	 * @param pattern searched text
+	 * @param matchCase <code>true</code> if case must match
+	 */
+	LiteralFinder(String pattern, boolean matchCase) {
+		this.matchCase = matchCase;
+		this.pattern = new char[pattern.length()];
+		for (int i = 0; i < this.pattern.length; i++) {
+			this.pattern[i] = fold(pattern.charAt(i));
+		}
+
+		int m = this.pattern.length;
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			shifts[i] = m;
+		}
+		for (int i = 0; i < m - 1; i++) {
+			shifts[this.pattern[i] & (TABLE_SIZE - 1)] = m - 1 - i;
+		}
+	}
+
+	/**
+	 * Folds character case if case does not matter.
+	 * @param c character
+	 * @return character to compare
+	 */
+	private char fold(char c) {
+		return matchCase ? c : Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	@Override
+	public boolean find(CharSequence text, int from, int to) {
+		int m = pattern.length;
+		if (m == 0) {
+			return false;
+		}
+
+		char last = pattern[m - 1];
+		for (int pos = from; pos + m <= to;) {
+			char c = fold(text.charAt(pos + m - 1));
+			if (c == last) {
+				int i = m - 2;
+				while (i >= 0 && fold(text.charAt(pos + i)) == pattern[i]) {
+					i--;
+				}
+				if (i < 0) {
+					start = pos;
+					end = pos + m;
+					return true;
+				}
+			}
+			pos += shifts[c & (TABLE_SIZE - 1)];
+		}
+		return false;
+	}
+}
@@ -0,0 +1,54 @@
+package jnotepadpp.search;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds matches of a regular expression. One matcher is reused for all searches.
+ * @author Dario Vidas
+ */
+final class RegexFinder extends Finder {
+
+	/** Compiled expression. */
+	private final Pattern pattern;
+
+	/** Matcher, reset to searched text on every search. */
+	private Matcher matcher;
+
+	/**
+	 * Constructor.
+	 * @param regex regular expression
+	 * @param matchCase <code>true</code> if case must match
+	 */
+	RegexFinder(String regex, boolean matchCase) {
+		int flags = Pattern.MULTILINE;
+		if (!matchCase) {
+			flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+		}
+		pattern = Pattern.compile(regex, flags);
+	}
+
+	@Override
+	public boolean find(CharSequence text, int from, int to) {
+		if (matcher == null) {
+			matcher = pattern.matcher(text);
+			matcher.useAnchoringBounds(false);		//'^' and '$' match only at line ends
+			matcher.useTransparentBounds(true);
+		} else {
+			matcher.reset(text);		//text can be a buffer whose content changed
+		}
+		matcher.region(from, to);
+		while (matcher.find()) {
+			if (matcher.end() > matcher.start()) {		//empty matches can not be selected
+				start = matcher.start();
+				end = matcher.end();
+				return true;
+			}
+			if (matcher.end() == to) {
+				break;
+			}
+			matcher.region(matcher.end() + 1, to);
+		}
+		return false;
+	}
+}
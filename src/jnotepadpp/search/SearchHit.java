@@ -0,0 +1,93 @@
+package jnotepadpp.search;
+
+import java.nio.file.Path;
+
+/**
+ * One line of a file that contains a match.
+ * @author Dario Vidas
+ */
+public final class SearchHit {
+
+	/** Longest kept part of matched line. */
+	static final int MAX_TEXT = 200;
+
+	/** File that contains the match. */
+	private final Path file;
+
+	/** Line index, starting with 0. */
+	private final int line;
+
+	/** Offset of match in line. */
+	private final int column;
+
+	/** Length of match. */
+	private final int length;
+
+	/** Text of line, cut to {@value #MAX_TEXT} chars. */
+	private final String text;
+
+	/**
+	 * Constructor.
+	 * @param file file
+	 * @param line line index
+	 * @param column offset of match in line
+	 * @param length length of match
+	 * @param text text of line
+	 */
+	SearchHit(Path file, int line, int column, int length, String text) {
+		this.file = file;
+		this.line = line;
+		this.column = column;
+		this.length = length;
+		this.text = text;
+	}
+
+	/**
+	 * Returns file that contains the match.
+	 * @return file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns index of matched line, first line has index 0.
+	 * @return line index
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns offset of match in line.
+	 * @return column
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * Returns length of match.
+	 * @return match length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns text of matched line, long lines are cut.
+	 * @return line text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Returns hit as shown in result list: file, line number and line text.
+	 * @return hit description
+	 */
+	@Override
+	public String toString() {
+		return file + ":" + (line + 1) + ": " + text;
+	}
+}
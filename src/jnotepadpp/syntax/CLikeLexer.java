@@ -0,0 +1,111 @@
+package jnotepadpp.syntax;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lexer of languages with C syntax: Java, C, C++, C# and JavaScript. Languages
+ * differ only in keywords. Block comment is the only construct that spans lines.
+ * @author Dario Vidas
+ */
+final class CLikeLexer implements Lexer {
+
+	/** State inside of block comment. */
+	private static final int IN_COMMENT = 1;
+
+	/** Keywords of language. */
+	private final Set<String> keywords;
+
+	/**
+	 * Constructor.
+	 * @param keywords keywords of language
+	 */
+	CLikeLexer(String... keywords) {
+		this.keywords = new HashSet<>(Arrays.asList(keywords));
+	}
+
+	@Override
+	public int lexLine(CharSequence line, int state, TokenList tokens) {
+		int length = line.length();
+		int i = 0;
+		if (state == IN_COMMENT) {
+			tokens.add(0, TokenType.COMMENT);
+			i = commentEnd(line, 0);
+			if (i < 0) {
+				return IN_COMMENT;
+			}
+		}
+
+		while (i < length) {
+			char c = line.charAt(i);
+			char next = i + 1 < length ? line.charAt(i + 1) : 0;
+			if (c == '/' && next == '/') {
+				tokens.add(i, TokenType.COMMENT);
+				return INITIAL;
+			} else if (c == '/' && next == '*') {
+				tokens.add(i, TokenType.COMMENT);
+				i = commentEnd(line, i + 2);
+				if (i < 0) {
+					return IN_COMMENT;
+				}
+			} else if (c == '"' || c == '\'') {
+				tokens.add(i, TokenType.STRING);
+				i = stringEnd(line, i + 1, c);
+			} else if (Character.isJavaIdentifierStart(c)) {
+				int end = i + 1;
+				while (end < length && Character.isJavaIdentifierPart(line.charAt(end))) {
+					end++;
+				}
+				boolean keyword = keywords.contains(line.subSequence(i, end).toString());
+				tokens.add(i, keyword ? TokenType.KEYWORD : TokenType.PLAIN);
+				i = end;
+			} else if (c >= '0' && c <= '9') {
+				tokens.add(i, TokenType.NUMBER);
+				i++;
+				while (i < length && (Character.isJavaIdentifierPart(line.charAt(i)) || line.charAt(i) == '.')) {
+					i++;
+				}
+			} else {
+				tokens.add(i, TokenType.PLAIN);
+				i++;
+			}
+		}
+		return INITIAL;
+	}
+
+	/**
+	 * Finds end of block comment.
+	 * @param line text of line
+	 * @param from offset after comment start
+	 * @return offset after <code>"*&#47;"</code>, -1 if comment goes on in next line
+	 */
+	private static int commentEnd(CharSequence line, int from) {
+		for (int i = from; i + 1 < line.length(); i++) {
+			if (line.charAt(i) == '*' && line.charAt(i + 1) == '/') {
+				return i + 2;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds end of string or character literal. Unterminated literal ends at line
+	 * end.
+	 * @param line text of line
+	 * @param from offset after opening quote
+	 * @param quote quote char
+	 * @return offset after closing quote
+	 */
+	private static int stringEnd(CharSequence line, int from, char quote) {
+		for (int i = from; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == quote) {
+				return i + 1;
+			}
+		}
+		return line.length();
+	}
+}
@@ -0,0 +1,23 @@
+package jnotepadpp.syntax;
+
+/**
+ * Splits text of a language into tokens, one line at a time. Everything lexer needs
+ * to know about previous lines is kept in an <code>int</code> state, like being
+ * inside of a block comment, so a line can be lexed again without lexing lines
+ * before it. Lexers must not keep any other state, one lexer is shared by all tabs.
+ * @author Dario Vidas
+ */
+public interface Lexer {
+
+	/** State at the start of text. */
+	int INITIAL = 0;
+
+	/**
+	 * Lexes one line.
+	 * @param line text of line without line end
+	 * @param state state at the start of line
+	 * @param tokens list where tokens are added
+	 * @return state at the start of next line, never negative
+	 */
+	int lexLine(CharSequence line, int state, TokenList tokens);
+}
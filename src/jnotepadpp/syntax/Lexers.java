@@ -0,0 +1,69 @@
+package jnotepadpp.syntax;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registry of lexers, lexer is chosen by file extension.
+ * @author Dario Vidas
+ */
+public final class Lexers {
+
+	/** Lexers by lower case file extension. */
+	private static final Map<String, Lexer> LEXERS = new HashMap<>();
+
+	static {
+		Lexer java = new CLikeLexer("abstract", "assert", "boolean", "break", "byte", "case", "catch", "char",
+				"class", "const", "continue", "default", "do", "double", "else", "enum", "extends", "false",
+				"final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+				"interface", "long", "native", "new", "null", "package", "private", "protected", "public",
+				"return", "short", "static", "strictfp", "super", "switch", "synchronized", "this", "throw",
+				"throws", "transient", "true", "try", "void", "volatile", "while");
+		Lexer c = new CLikeLexer("auto", "bool", "break", "case", "catch", "char", "class", "const",
+				"constexpr", "continue", "default", "delete", "do", "double", "else", "enum", "explicit",
+				"extern", "false", "float", "for", "friend", "goto", "if", "inline", "int", "long", "namespace",
+				"new", "nullptr", "operator", "private", "protected", "public", "register", "return", "short",
+				"signed", "sizeof", "static", "struct", "switch", "template", "this", "throw", "true", "try",
+				"typedef", "typename", "union", "unsigned", "using", "virtual", "void", "volatile", "while");
+		Lexer cs = new CLikeLexer("abstract", "as", "base", "bool", "break", "byte", "case", "catch", "char",
+				"class", "const", "continue", "decimal", "default", "delegate", "do", "double", "else", "enum",
+				"event", "false", "finally", "float", "for", "foreach", "if", "in", "int", "interface", "internal",
+				"is", "long", "namespace", "new", "null", "object", "out", "override", "private", "protected",
+				"public", "readonly", "ref", "return", "sealed", "static", "string", "struct", "switch", "this",
+				"throw", "true", "try", "using", "var", "virtual", "void", "while");
+		Lexer js = new CLikeLexer("async", "await", "break", "case", "catch", "class", "const", "continue",
+				"default", "delete", "do", "else", "export", "extends", "false", "finally", "for", "function",
+				"if", "import", "in", "instanceof", "let", "new", "null", "return", "super", "switch", "this",
+				"throw", "true", "try", "typeof", "undefined", "var", "void", "while", "yield");
+
+		LEXERS.put("java", java);
+		for (String extension : new String[] {"c", "h", "cpp", "cc", "cxx", "hpp"}) {
+			LEXERS.put(extension, c);
+		}
+		LEXERS.put("cs", cs);
+		LEXERS.put("js", js);
+		LEXERS.put("properties", new PropertiesLexer());
+	}
+
+	/**
+	 * Disables instantiation.
+	 */
+	private Lexers() {
+	}
+
+	/**
+	 * Returns lexer for file.
+	 * @param file file, can be <code>null</code>
+	 * @return lexer, <code>null</code> if file is not highlighted
+	 */
+	public static Lexer forFile(File file) {
+		if (file == null) {
+			return null;
+		}
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? null : LEXERS.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+}
@@ -0,0 +1,63 @@
+package jnotepadpp.syntax;
+
+/**
+ * Lexer of <code>.properties</code> files. Keys are shown as keywords and values as
+ * strings. Value ending with backslash goes on in next line.
+ * @author Dario Vidas
+ */
+final class PropertiesLexer implements Lexer {
+
+	/** State in value that goes on from previous line. */
+	private static final int IN_VALUE = 1;
+
+	@Override
+	public int lexLine(CharSequence line, int state, TokenList tokens) {
+		int length = line.length();
+		int i = 0;
+		while (i < length && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		if (state == IN_VALUE) {
+			tokens.add(i, TokenType.STRING);
+			return continues(line) ? IN_VALUE : INITIAL;
+		}
+		if (i == length) {
+			return INITIAL;
+		}
+		if (line.charAt(i) == '#' || line.charAt(i) == '!') {
+			tokens.add(i, TokenType.COMMENT);
+			return INITIAL;
+		}
+
+		tokens.add(i, TokenType.KEYWORD);
+		while (i < length) {
+			char c = line.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '=' || c == ':' || Character.isWhitespace(c)) {
+				break;
+			}
+			i++;
+		}
+		while (i < length && (line.charAt(i) == '=' || line.charAt(i) == ':'
+				|| Character.isWhitespace(line.charAt(i)))) {
+			i++;
+		}
+		tokens.add(Math.min(i, length), TokenType.STRING);
+		return continues(line) ? IN_VALUE : INITIAL;
+	}
+
+	/**
+	 * Checks if line ends with odd number of backslashes, so value goes on in next
+	 * line.
+	 * @param line text of line
+	 * @return <code>true</code> if value goes on
+	 */
+	private static boolean continues(CharSequence line) {
+		int count = 0;
+		for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+			count++;
+		}
+		return count % 2 == 1;
+	}
+}
@@ -0,0 +1,409 @@
+package jnotepadpp.syntax;
+
+import jnotepadpp.document.ReusableSegment;
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.document.TextSnapshot;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+
+/**
+ * Keeps tokens of every line of a text area. Lexer state at the start of every line
+ * is kept too, so after an edit only the edited lines are lexed again, and lexing
+ * goes on to next lines only until lexer state at the start of a line is the same as
+ * before the edit. Lines are lexed in batches on one background thread shared by all
+ * tabs from a snapshot of text, edit only marks lines as damaged, so typing never
+ * waits for lexing. All fields are used only on event dispatch thread, batch result
+ * is thrown away if text was changed while it was lexed.
+ * @author Dario Vidas
+ */
+public final class SyntaxHighlighter implements DocumentListener {
+
+	/** Documents longer than this are not highlighted. */
+	private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+	/** Most lines lexed in first batch after an edit, usually state converges in it. */
+	private static final int FIRST_BATCH = 32;
+
+	/** Most lines lexed in one batch, batch size doubles up to it. */
+	private static final int MAX_BATCH = 4096;
+
+	/** Number of chars read from snapshot at once. */
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	/** Lexer state of a line which is not lexed. */
+	private static final int UNKNOWN = -1;
+
+	/** Thread which lexes all documents. */
+	private static final ExecutorService LEXER_THREAD = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "lexer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** Highlighted text area. */
+	private final JTextArea textArea;
+
+	/** Lexer of text, <code>null</code> if text is not highlighted. */
+	private Lexer lexer;
+
+	/** Document of text area, <code>null</code> if it is not highlighted. */
+	private TextDocument document;
+
+	/** Lexer state at the start of every line, valid if previous line has tokens. */
+	private int[] states;
+
+	/** Token runs of every line, <code>null</code> if line is damaged or not lexed yet. */
+	private int[][] tokens;
+
+	/** Number of lines. */
+	private int lineCount;
+
+	/** All lines before this one have tokens. */
+	private int dirty;
+
+	/** Counter of edits, result of a batch started before an edit is thrown away. */
+	private int generation;
+
+	/** Set while a batch is being lexed. */
+	private boolean running;
+
+	/** Most lines lexed in next batch. */
+	private int batchSize;
+
+	/**
+	 * Constructor. Text is not highlighted until lexer is set.
+	 * @param textArea highlighted text area
+	 */
+	public SyntaxHighlighter(JTextArea textArea) {
+		this.textArea = textArea;
+		textArea.addPropertyChangeListener("document", new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				reset();
+			}
+		});
+	}
+
+	/**
+	 * Returns lexer of text.
+	 * @return lexer, <code>null</code> if text is not highlighted
+	 */
+	public Lexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Changes lexer, whole text is lexed again.
+	 * @param lexer new lexer, <code>null</code> turns highlighting off
+	 */
+	public void setLexer(Lexer lexer) {
+		this.lexer = lexer;
+		reset();
+	}
+
+	/**
+	 * Returns token runs of line.
+	 * @param line line index
+	 * @return token runs, <code>null</code> if line is not lexed
+	 * @see TokenList
+	 */
+	int[] getTokens(int line) {
+		return line < lineCount ? tokens[line] : null;
+	}
+
+	/**
+	 * Throws away all tokens and starts lexing whole text of current document.
+	 */
+	private void reset() {
+		if (document != null) {
+			document.removeDocumentListener(this);
+			document = null;
+		}
+		generation++;
+		clear();
+
+		Document current = textArea.getDocument();
+		if (lexer != null && current instanceof TextDocument) {
+			document = (TextDocument) current;
+			document.addDocumentListener(this);
+			start();
+		}
+		textArea.repaint();
+	}
+
+	/**
+	 * Starts lexing whole text, unless it is too long.
+	 */
+	private void start() {
+		if (document.getLength() > MAX_LENGTH) {
+			return;
+		}
+		lineCount = document.getDefaultRootElement().getElementCount();
+		states = new int[lineCount];
+		tokens = new int[lineCount][];
+		Arrays.fill(states, UNKNOWN);
+		states[0] = Lexer.INITIAL;
+		dirty = 0;
+		batchSize = MAX_BATCH;
+		schedule();
+	}
+
+	/**
+	 * Throws away all tokens.
+	 */
+	private void clear() {
+		states = null;
+		tokens = null;
+		lineCount = 0;
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		changed(e);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		changed(e);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		//attributes are not used
+	}
+
+	/**
+	 * Moves tokens of lines after the edit and marks edited lines as damaged. Line
+	 * before the edit is damaged too, <code>'\r'</code> at its end can join with
+	 * <code>'\n'</code> at the start of edit.
+	 * @param e document event
+	 */
+	private void changed(DocumentEvent e) {
+		generation++;
+		if (states == null) {
+			if (document.getLength() <= MAX_LENGTH) {
+				start();
+			}
+			return;
+		}
+		if (document.getLength() > MAX_LENGTH) {
+			clear();
+			return;
+		}
+
+		Element root = document.getDefaultRootElement();
+		int end = e.getOffset();
+		if (e.getType() == DocumentEvent.EventType.INSERT) {
+			end += e.getLength();
+		}
+		int first = Math.max(0, root.getElementIndex(e.getOffset()) - 1);
+		int tail = root.getElementIndex(end) + 1;		//first line after the edit
+		int delta = root.getElementCount() - lineCount;
+		if (delta != 0) {
+			resize(tail, delta);
+		}
+		Arrays.fill(tokens, first, tail, null);
+		dirty = Math.min(dirty, first);
+		batchSize = FIRST_BATCH;
+		schedule();
+	}
+
+	/**
+	 * Inserts or removes lines before the lines which were not edited.
+	 * @param tail index of first line after the edit
+	 * @param delta number of inserted lines, negative if lines are removed
+	 */
+	private void resize(int tail, int delta) {
+		int newCount = lineCount + delta;
+		if (newCount > states.length) {
+			int capacity = Math.max(newCount, states.length + states.length / 2);
+			states = Arrays.copyOf(states, capacity);
+			tokens = Arrays.copyOf(tokens, capacity);
+		}
+		System.arraycopy(states, tail - delta, states, tail, newCount - tail);
+		System.arraycopy(tokens, tail - delta, tokens, tail, newCount - tail);
+		if (delta < 0) {
+			Arrays.fill(tokens, newCount, lineCount, null);
+		}
+		lineCount = newCount;
+	}
+
+	/**
+	 * Starts lexing first damaged line on background thread, if nothing is being
+	 * lexed already.
+	 */
+	private void schedule() {
+		if (running || states == null) {
+			return;
+		}
+		while (dirty < lineCount && tokens[dirty] != null) {
+			dirty++;
+		}
+		if (dirty == lineCount) {
+			return;
+		}
+
+		final int line = dirty;
+		final int state = states[line];
+		final int count = Math.min(batchSize, lineCount - line);
+		final int[] expected = new int[count];		//states of next lines before the edit
+		for (int i = 0; i < count; i++) {
+			int next = line + i + 1;
+			expected[i] = next < lineCount && tokens[next] != null ? states[next] : UNKNOWN;
+		}
+		final int offset = document.getDefaultRootElement().getElement(line).getStartOffset();
+		final int batchGeneration = generation;
+		final TextSnapshot text = document.snapshot();
+		final Lexer batchLexer = lexer;
+
+		running = true;
+		LEXER_THREAD.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final Batch batch = lex(batchLexer, text, offset, state, expected);
+				SwingUtilities.invokeLater(new Runnable() {
+
+					@Override
+					public void run() {
+						apply(line, batch, batchGeneration);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Stores tokens of lexed batch and starts next batch. If state at the start of
+	 * line after the batch changed, that line is damaged.
+	 * @param line index of first lexed line
+	 * @param batch lexed batch
+	 * @param batchGeneration value of <code>generation</code> when batch started
+	 */
+	private void apply(int line, Batch batch, int batchGeneration) {
+		running = false;
+		if (batchGeneration != generation || states == null) {
+			schedule();
+			return;
+		}
+
+		int count = Math.min(batch.count, lineCount - line);
+		System.arraycopy(batch.tokens, 0, tokens, line, count);
+		int end = line + count;
+		if (end < lineCount) {
+			if (states[end] != batch.states[count - 1]) {
+				tokens[end] = null;
+			}
+			System.arraycopy(batch.states, 0, states, line + 1, count);
+		} else {
+			System.arraycopy(batch.states, 0, states, line + 1, count - 1);
+		}
+		batchSize = Math.min(batchSize * 2, MAX_BATCH);
+		textArea.repaint();
+		schedule();
+	}
+
+	/**
+	 * Lexes lines until lexer state at the start of a line is the same as before the
+	 * edit, until batch is full or until text ends. Called on lexer thread.
+	 * @param lexer lexer
+	 * @param text text snapshot
+	 * @param offset offset of first line
+	 * @param state lexer state at the start of first line
+	 * @param expected previous lexer states at the start of next lines,
+	 *        {@value #UNKNOWN} if not known; batch is not longer than this array
+	 * @return lexed batch
+	 */
+	private static Batch lex(Lexer lexer, TextSnapshot text, int offset, int state, int[] expected) {
+		Batch batch = new Batch(expected.length);
+		StringBuilder line = new StringBuilder();
+		TokenList list = new TokenList();
+		Segment segment = new ReusableSegment();
+
+		int length = text.length();
+		int position = offset;		//offset of segment end
+		int index = 0;				//index of next char in segment
+		while (batch.count < expected.length) {
+			line.setLength(0);
+			int c = -1;
+			boolean ended = false;
+			while (!ended) {
+				if (index == segment.count) {
+					if (position == length) {
+						c = -1;
+						break;
+					}
+					text.getChars(position, Math.min(CHUNK_SIZE, length - position), segment);
+					position += segment.count;
+					index = 0;
+				}
+				c = segment.array[segment.offset + index++];
+				if (c == '\r' && index == segment.count && position < length) {
+					text.getChars(position, Math.min(CHUNK_SIZE, length - position), segment);
+					position += segment.count;
+					index = 0;
+				}
+				if (c == '\r' && index < segment.count && segment.array[segment.offset + index] == '\n') {
+					index++;
+				}
+				ended = c == '\n' || c == '\r';
+				if (!ended) {
+					line.append((char) c);
+				}
+			}
+
+			list.clear();
+			state = lexer.lexLine(line, state, list);
+			batch.tokens[batch.count] = list.toArray();
+			batch.states[batch.count] = state;
+			batch.count++;
+			if (c < 0 || state == expected[batch.count - 1]) {
+				break;		//text ended or state converged
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Result of lexing consecutive lines.
+	 * @author Dario Vidas
+	 */
+	private static final class Batch {
+
+		/** Token runs of lines. */
+		final int[][] tokens;
+
+		/** Lexer states at the start of line after every line. */
+		final int[] states;
+
+		/** Number of lexed lines. */
+		int count;
+
+		/**
+		 * Constructor.
+		 * @param capacity most lines in batch
+		 */
+		Batch(int capacity) {
+			tokens = new int[capacity][];
+			states = new int[capacity];
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package jnotepadpp.syntax;
+
+import javax.swing.JTextArea;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.Element;
+import javax.swing.text.View;
+
+/**
+ * Text area UI which creates <code>SyntaxView</code> for text without line wrap.
+ * @author Dario Vidas
+ */
+public class SyntaxTextAreaUI extends BasicTextAreaUI {
+
+	/** Tokens of lines. */
+	private final SyntaxHighlighter highlighter;
+
+	/**
+	 * Constructor.
+	 * @param highlighter tokens of lines
+	 */
+	public SyntaxTextAreaUI(SyntaxHighlighter highlighter) {
+		super();
+		this.highlighter = highlighter;
+	}
+
+	@Override
+	public View create(Element elem) {
+		if (((JTextArea) getComponent()).getLineWrap()) {
+			return super.create(elem);
+		}
+		return new SyntaxView(elem, highlighter);
+	}
+}
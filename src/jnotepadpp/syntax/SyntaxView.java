@@ -0,0 +1,68 @@
+package jnotepadpp.syntax;
+
+import java.awt.Graphics2D;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainView;
+import javax.swing.text.Segment;
+import javax.swing.text.Utilities;
+
+/**
+ * Plain text view which draws token runs in colors of their types. Lines which are
+ * not lexed yet are drawn plain, they are repainted when their tokens arrive.
+ * Selected text is drawn as in <code>PlainView</code>.
+ * @author Dario Vidas
+ */
+public class SyntaxView extends PlainView {
+
+	/** Tokens of lines. */
+	private final SyntaxHighlighter highlighter;
+
+	/**
+	 * Constructor.
+	 * @param elem root element of document
+	 * @param highlighter tokens of lines
+	 */
+	public SyntaxView(Element elem, SyntaxHighlighter highlighter) {
+		super(elem);
+		this.highlighter = highlighter;
+	}
+
+	@Override
+	protected float drawUnselectedText(Graphics2D g, float x, float y, int p0, int p1)
+			throws BadLocationException {
+		Element root = getElement();
+		int line = root.getElementIndex(p0);
+		int[] runs = highlighter.getTokens(line);
+		if (runs == null || runs.length == 0 || !getContainer().isEnabled()) {
+			return super.drawUnselectedText(g, x, y, p0, p1);
+		}
+
+		int lineStart = root.getElement(line).getStartOffset();
+		int run = -1;		//plain text before first run
+		while (run + 1 < runs.length && lineStart + TokenList.start(runs[run + 1]) <= p0) {
+			run++;
+		}
+
+		Segment text = getLineBuffer();
+		int from = p0;
+		while (from < p1) {
+			int to = p1;
+			if (run + 1 < runs.length) {
+				to = Math.min(p1, lineStart + TokenList.start(runs[run + 1]));
+			}
+			TokenType type = run < 0 ? TokenType.PLAIN : TokenList.type(runs[run]);
+			if (type.getColor() == null) {
+				x = super.drawUnselectedText(g, x, y, from, to);
+			} else {
+				getDocument().getText(from, to - from, text);
+				g.setColor(type.getColor());
+				x = Utilities.drawTabbedText(text, x, y, g, this, from);
+			}
+			from = to;
+			run++;
+		}
+		return x;
+	}
+}
@@ -0,0 +1,82 @@
+package jnotepadpp.syntax;
+
+import java.util.Arrays;
+
+/**
+ * Token runs of one line. Run is packed into one <code>int</code>: offset of its
+ * first char in line and its type. Run lasts until the start of next run or until
+ * line end, so lexers only mark where type changes. Text before the first run is
+ * plain.
+ * @author Dario Vidas
+ */
+public final class TokenList {
+
+	/** Runs of a line without tokens. */
+	static final int[] EMPTY = new int[0];
+
+	/** Bits used by token type. */
+	private static final int TYPE_BITS = 4;
+
+	/** Mask of token type bits. */
+	private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+	/** All token types, indexed by ordinal. */
+	private static final TokenType[] TYPES = TokenType.values();
+
+	/** Runs added so far. */
+	private int[] runs = new int[16];
+
+	/** Number of runs. */
+	private int count;
+
+	/**
+	 * Marks start of a token. Nothing is added if type does not change.
+	 * @param start offset of token in line
+	 * @param type token type
+	 */
+	public void add(int start, TokenType type) {
+		if (count > 0 && start(runs[count - 1]) == start) {
+			count--;		//previous run is empty
+		}
+		if (count == 0 ? type == TokenType.PLAIN : type(runs[count - 1]) == type) {
+			return;
+		}
+		if (count == runs.length) {
+			runs = Arrays.copyOf(runs, count * 2);
+		}
+		runs[count++] = start << TYPE_BITS | type.ordinal();
+	}
+
+	/**
+	 * Removes all runs, so list can be used for next line.
+	 */
+	void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Returns copy of runs.
+	 * @return runs
+	 */
+	int[] toArray() {
+		return count == 0 ? EMPTY : Arrays.copyOf(runs, count);
+	}
+
+	/**
+	 * Returns offset of run in line.
+	 * @param run packed run
+	 * @return offset
+	 */
+	static int start(int run) {
+		return run >>> TYPE_BITS;
+	}
+
+	/**
+	 * Returns type of run.
+	 * @param run packed run
+	 * @return token type
+	 */
+	static TokenType type(int run) {
+		return TYPES[run & TYPE_MASK];
+	}
+}
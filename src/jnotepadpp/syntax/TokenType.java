@@ -0,0 +1,44 @@
+package jnotepadpp.syntax;
+
+import java.awt.Color;
+
+/**
+ * Types of tokens, every type has its own text color.
+ * @author Dario Vidas
+ */
+public enum TokenType {
+
+	/** Text without highlighting, drawn in text area foreground color. */
+	PLAIN(null),
+
+	/** Keyword of the language. */
+	KEYWORD(new Color(0, 0, 160)),
+
+	/** String or character literal. */
+	STRING(new Color(128, 128, 128)),
+
+	/** Number literal. */
+	NUMBER(new Color(255, 128, 0)),
+
+	/** Comment. */
+	COMMENT(new Color(0, 128, 0));
+
+	/** Text color. */
+	private final Color color;
+
+	/**
+	 * Constructor.
+	 * @param color text color, <code>null</code> for foreground color
+	 */
+	TokenType(Color color) {
+		this.color = color;
+	}
+
+	/**
+	 * Returns text color.
+	 * @return color, <code>null</code> for foreground color
+	 */
+	public Color getColor() {
+		return color;
+	}
+}
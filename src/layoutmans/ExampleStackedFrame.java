@@ -2,8 +2,11 @@ package layoutmans;
 
 import layoutmans.StackedLayout.StackedLayoutDirection;
 
+import java.awt.Component;
 import java.awt.GridLayout;
 import java.awt.LayoutManager2;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -11,6 +14,7 @@ import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
@@ -37,10 +41,41 @@ public class ExampleStackedFrame extends JFrame {
 	 * Initializes GUI.
 	 */
 	private void initGUI() {
-		this.getContentPane().setLayout(new GridLayout(1, 3));
+		this.getContentPane().setLayout(new GridLayout(1, 4));
 		this.getContentPane().add(makePanel("Odozgo", new StackedLayout(StackedLayoutDirection.FROM_TOP)));
 		this.getContentPane().add(makePanel("Odozdo", new StackedLayout(StackedLayoutDirection.FROM_BOTTOM)));
 		this.getContentPane().add(makePanel("Ispuna", new StackedLayout(StackedLayoutDirection.FILL)));
+		this.getContentPane().add(makeVirtualPanel("Virtualno", 10000));
+	}
+
+	/**
+	 * Creates scrolled virtual panel with many labels.
+	 * @param tekst panel name
+	 * @param count number of labels
+	 * @return new panel
+	 */
+	private JComponent makeVirtualPanel(String tekst, int count) {
+		List<String> items = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			items.add("Labela " + i);
+		}
+
+		VirtualStackedPanel<String> panel = new VirtualStackedPanel<>(StackedLayoutDirection.FROM_TOP,
+				new StackedRenderer<String>() {
+
+					@Override
+					public Component getComponent(VirtualStackedPanel<String> panel, String item, int index,
+							Component recycled) {
+						JLabel label = recycled == null ? new JLabel() : (JLabel) recycled;
+						label.setText(item);
+						return label;
+					}
+				});
+		panel.setItems(items);
+
+		JScrollPane scroll = new JScrollPane(panel);
+		scroll.setBorder(BorderFactory.createTitledBorder(tekst));
+		return scroll;
 	}
 
 	/**
@@ -0,0 +1,132 @@
+package layoutmans;
+
+import java.util.Arrays;
+
+/**
+ * Heights of rows with sums of heights in a Fenwick tree, so offset of a row, row at
+ * an offset and change of a height all take O(log n). Rows which were not measured
+ * yet have estimated height.
+ * @author Dario Vidas
+ */
+final class HeightIndex {
+
+	/** Heights of rows. */
+	private int[] heights;
+
+	/** Set for rows whose height was measured. */
+	private boolean[] measured;
+
+	/** Fenwick tree of heights, element <code>i</code> holds a sum of rows ending at <code>i - 1</code>. */
+	private long[] tree;
+
+	/**
+	 * Constructor.
+	 * @param count number of rows
+	 * @param estimate estimated height of rows
+	 */
+	HeightIndex(int count, int estimate) {
+		heights = new int[count];
+		measured = new boolean[count];
+		Arrays.fill(heights, estimate);
+		tree = new long[count + 1];
+		for (int i = 1; i <= count; i++) {		//linear build
+			tree[i] += estimate;
+			int parent = i + (i & -i);
+			if (parent <= count) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns number of rows.
+	 * @return number of rows
+	 */
+	int size() {
+		return heights.length;
+	}
+
+	/**
+	 * Returns height of row.
+	 * @param row row index
+	 * @return height
+	 */
+	int get(int row) {
+		return heights[row];
+	}
+
+	/**
+	 * Checks if height of row was measured.
+	 * @param row row index
+	 * @return <code>true</code> if it was, <code>false</code> if it is estimated
+	 */
+	boolean isMeasured(int row) {
+		return measured[row];
+	}
+
+	/**
+	 * Marks height of row as estimated, so it is measured again.
+	 * @param row row index
+	 */
+	void forget(int row) {
+		measured[row] = false;
+	}
+
+	/**
+	 * Sets measured height of row.
+	 * @param row row index
+	 * @param height height
+	 * @return <code>true</code> if height changed
+	 */
+	boolean set(int row, int height) {
+		measured[row] = true;
+		long delta = (long) height - heights[row];
+		if (delta == 0) {
+			return false;
+		}
+		heights[row] = height;
+		for (int i = row + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns offset of row, sum of heights of rows before it.
+	 * @param row row index, can be number of rows
+	 * @return offset
+	 */
+	long offset(int row) {
+		long sum = 0;
+		for (int i = row; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns sum of all heights.
+	 * @return total height
+	 */
+	long total() {
+		return offset(heights.length);
+	}
+
+	/**
+	 * Finds row at offset.
+	 * @param y offset
+	 * @return row index, 0 for negative offset and last row for offset after the end
+	 */
+	int rowAt(long y) {
+		int row = 0;
+		long remaining = y;
+		for (int step = Integer.highestOneBit(Math.max(heights.length, 1)); step > 0; step >>= 1) {
+			int next = row + step;
+			if (next <= heights.length && tree[next] <= remaining) {
+				row = next;
+				remaining -= tree[next];
+			}
+		}
+		return Math.max(0, Math.min(row, heights.length - 1));
+	}
+}
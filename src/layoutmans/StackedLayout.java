@@ -5,6 +5,7 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.LayoutManager2;
+import java.util.Arrays;
 
 import javax.swing.SizeRequirements;
 
@@ -12,15 +13,51 @@ import javax.swing.SizeRequirements;
  * Class that defines Stacked layout that is similar to <code>BoxedLayout</code>.
  * This layout can layout containers in 3 different direction: from top, from bottom
  * and fill. Instances of this layout will not be shared among multiple containers,
+ * <p>
+ * Size requirements of children are cached. When container is invalidated, all
+ * children are asked for their sizes again, since sizes set with
+ * <code>setPreferredSize</code> and similar do not invalidate a child, and sums of
+ * heights are recomputed only from the first child whose requirements changed.
+ * Arrays are reused while number of children stays the same.
+ * AWT calls layout methods while holding tree lock of container, which guards the
+ * caches, so layout does not take a lock of its own.
+ * </p>
  * @author Dario Vidas
  */
 public class StackedLayout implements LayoutManager2 {
 
 	private StackedLayoutDirection direction;
-	private transient SizeRequirements yTotal;
-	private transient SizeRequirements xTotal;
-	private transient SizeRequirements[] yChildren;
-	private transient SizeRequirements[] xChildren;
+	private transient SizeRequirements yTotal = new SizeRequirements();
+	private transient SizeRequirements xTotal = new SizeRequirements();
+	private transient SizeRequirements[] yChildren = new SizeRequirements[0];
+	private transient SizeRequirements[] xChildren = new SizeRequirements[0];
+
+	/** Component whose requirements are cached in each slot, <code>null</code> if slot is stale. */
+	private transient Component[] components = new Component[0];
+
+	/** Sums of minimum heights of children before each index. */
+	private transient long[] minSums = new long[1];
+
+	/** Sums of preferred heights of children before each index. */
+	private transient long[] prefSums = new long[1];
+
+	/** Sums of maximum heights of children before each index. */
+	private transient long[] maxSums = new long[1];
+
+	/** Reused offsets and spans of children. */
+	private transient int[] xOffsets = new int[0];
+	private transient int[] xSpans = new int[0];
+	private transient int[] yOffsets = new int[0];
+	private transient int[] ySpans = new int[0];
+
+	/** Value of <code>firstDirty</code> when sums are up to date. */
+	private static final int CLEAN = Integer.MAX_VALUE;
+
+	/** Index of first child whose requirements changed since sums were computed. */
+	private transient int firstDirty = CLEAN;
+
+	/** Set when container was invalidated, so children have to be checked. */
+	private transient volatile boolean stale = true;
 
 	/**
 	 * Constructor with one argument.
@@ -33,42 +70,55 @@ public class StackedLayout implements LayoutManager2 {
 
 	@Override
 	public void addLayoutComponent(String name, Component comp) {
+		addLayoutComponent(comp, name);
 	}
 
+	/**
+	 * Opens a stale slot for component, so cached requirements of other children
+	 * stay in their slots.
+	 * @param comp added component, already in container
+	 * @param constraints not used
+	 */
 	@Override
-	public void removeLayoutComponent(Component comp) {
+	public void addLayoutComponent(Component comp, Object constraints) {
+		Container target = comp.getParent();
+		int index = target == null ? -1 : target.getComponentZOrder(comp);
+		if (index < 0 || index > components.length || target.getComponentCount() != components.length + 1) {
+			stale = true;		//caches do not match container, they are rebuilt
+			return;
+		}
+		resize(components.length + 1, index, 1);
+		firstDirty = Math.min(firstDirty, index);
+		stale = true;
 	}
 
+	/**
+	 * Closes slot of component, so cached requirements of other children stay with
+	 * them.
+	 * @param comp component which is being removed
+	 */
 	@Override
-	public Dimension preferredLayoutSize(Container target) {
-		Dimension size;
-		synchronized (this) {
-			checkRequests(target);
-			size = new Dimension(xTotal.preferred, yTotal.preferred);
+	public void removeLayoutComponent(Component comp) {
+		for (int i = 0; i < components.length; i++) {
+			if (components[i] == comp) {
+				resize(components.length - 1, i, -1);
+				firstDirty = Math.min(firstDirty, i);
+				break;
+			}
 		}
+		stale = true;
+	}
 
-		Insets insets = target.getInsets();
-		size.width = (int) Math.min((long) size.width + (long) insets.left + (long) insets.right,
-				Integer.MAX_VALUE);
-		size.height = (int) Math.min((long) size.height + (long) insets.top + (long) insets.bottom,
-				Integer.MAX_VALUE);
-		return size;
+	@Override
+	public Dimension preferredLayoutSize(Container target) {
+		checkRequests(target);
+		return withInsets(target, xTotal.preferred, yTotal.preferred);
 	}
 
 	@Override
 	public Dimension minimumLayoutSize(Container target) {
-		Dimension size;
-		synchronized (this) {
-			checkRequests(target);
-			size = new Dimension(xTotal.minimum, yTotal.minimum);
-		}
-
-		Insets insets = target.getInsets();
-		size.width = (int) Math.min((long) size.width + (long) insets.left + (long) insets.right,
-				Integer.MAX_VALUE);
-		size.height = (int) Math.min((long) size.height + (long) insets.top + (long) insets.bottom,
-				Integer.MAX_VALUE);
-		return size;
+		checkRequests(target);
+		return withInsets(target, xTotal.minimum, yTotal.minimum);
 	}
 
 	/**
@@ -81,37 +131,21 @@ public class StackedLayout implements LayoutManager2 {
 	 */
 	@Override
 	public void layoutContainer(Container target) {
-		int nChildren = target.getComponentCount();
-		int[] xOffsets = new int[nChildren];
-		int[] xSpans = new int[nChildren];
-		int[] yOffsets = new int[nChildren];
-		int[] ySpans = new int[nChildren];
+		checkRequests(target);
+		int nChildren = components.length;
 
 		Dimension alloc = target.getSize();
 		Insets insets = target.getInsets();
 		alloc.width -= insets.left + insets.right;
 		alloc.height -= insets.top + insets.bottom;
 
+		SizeRequirements.calculateAlignedPositions(alloc.width, xTotal, xChildren, xOffsets, xSpans);
 		if (direction == StackedLayoutDirection.FROM_TOP) {
-			synchronized (this) {
-				checkRequests(target);
-				calculateFixedSizes(yOffsets, ySpans, 0);
-				SizeRequirements.calculateAlignedPositions(alloc.width, xTotal, xChildren, xOffsets, xSpans);
-			}
+			calculateFixedSizes(0);
 		} else if (direction == StackedLayoutDirection.FROM_BOTTOM) {
-			final int totalOffset = Math.max(alloc.height - preferredLayoutSize(target).height
-					+ insets.bottom + insets.top, 0);		//full height - container height
-			synchronized (this) {
-				checkRequests(target);
-				calculateFixedSizes(yOffsets, ySpans, totalOffset);
-				SizeRequirements.calculateAlignedPositions(alloc.width, xTotal, xChildren, xOffsets, xSpans);
-			}
+			calculateFixedSizes(Math.max(alloc.height - yTotal.preferred, 0));		//full height - container height
 		} else {
-			synchronized (this) {
-				checkRequests(target);
-				SizeRequirements.calculateAlignedPositions(alloc.width, xTotal, xChildren, xOffsets, xSpans);
-				SizeRequirements.calculateTiledPositions(alloc.height, yTotal, yChildren, yOffsets, ySpans);
-			}
+			SizeRequirements.calculateTiledPositions(alloc.height, yTotal, yChildren, yOffsets, ySpans);
 		}
 
 		for (int i = 0; i < nChildren; i++) {
@@ -122,85 +156,221 @@ public class StackedLayout implements LayoutManager2 {
 		}
 	}
 
-	@Override
-	public void addLayoutComponent(Component comp, Object constraints) {
-	}
-
 	@Override
 	public Dimension maximumLayoutSize(Container target) {
-		Dimension size;
-		synchronized (this) {
-			checkRequests(target);
-			size = new Dimension(xTotal.maximum, yTotal.maximum);
-		}
-
-		Insets insets = target.getInsets();
-		size.width = (int) Math.min((long) size.width + (long) insets.left + (long) insets.right,
-				Integer.MAX_VALUE);
-		size.height = (int) Math.min((long) size.height + (long) insets.top + (long) insets.bottom,
-				Integer.MAX_VALUE);
-		return size;
+		checkRequests(target);
+		return withInsets(target, xTotal.maximum, yTotal.maximum);
 	}
 
 	@Override
-	public synchronized float getLayoutAlignmentX(Container target) {
+	public float getLayoutAlignmentX(Container target) {
 		checkRequests(target);
 		return xTotal.alignment;
 	}
 
 	@Override
-	public synchronized float getLayoutAlignmentY(Container target) {
+	public float getLayoutAlignmentY(Container target) {
 		checkRequests(target);
 		return yTotal.alignment;
 	}
 
+	/**
+	 * Marks cached requirements for checking, they are checked when layout is next
+	 * used.
+	 * @param target container
+	 */
 	@Override
 	public void invalidateLayout(Container target) {
+		stale = true;
 	}
 
 	/**
-	 * Checks size requirements and fills respective arrays.
+	 * Adds insets of container to size.
 	 * @param target container
+	 * @param width width without insets
+	 * @param height height without insets
+	 * @return size
 	 */
-	private void checkRequests(Container target) {
-		if (yChildren == null || xChildren == null) {
-
-			int compCount = target.getComponentCount();
-			yChildren = new SizeRequirements[compCount];
-			xChildren = new SizeRequirements[compCount];
+	private static Dimension withInsets(Container target, int width, int height) {
+		Insets insets = target.getInsets();
+		return new Dimension(
+				(int) Math.min((long) width + (long) insets.left + (long) insets.right, Integer.MAX_VALUE),
+				(int) Math.min((long) height + (long) insets.top + (long) insets.bottom, Integer.MAX_VALUE));
+	}
 
+	/**
+	 * Checks size requirements and fills respective arrays. After container was
+	 * invalidated all children are asked for their sizes, totals are recomputed only
+	 * if requirements of a child changed.
+	 * @param target container
+	 */
+	private void checkRequests(Container target) {
+		int compCount = target.getComponentCount();
+		if (compCount != components.length) {
+			resize(compCount, 0, 0);
+			Arrays.fill(components, null);
+			firstDirty = 0;
+			stale = true;
+		}
+		if (stale) {
+			stale = false;
 			for (int i = 0; i < compCount; i++) {
-				Component comp = target.getComponent(i);
-				if (!comp.isVisible()) {
-					yChildren[i] = new SizeRequirements(0, 0, 0, comp.getAlignmentY());
-					xChildren[i] = new SizeRequirements(0, 0, 0, 0.0f);
-					continue;
+				if (updateRequests(i, target.getComponent(i))) {
+					firstDirty = Math.min(firstDirty, i);
 				}
-
-				Dimension min = comp.getMinimumSize();
-				Dimension typ = comp.getPreferredSize();
-				Dimension max = comp.getMaximumSize();
-				yChildren[i] = new SizeRequirements(min.height, typ.height, max.height, comp.getAlignmentY());
-				xChildren[i] = new SizeRequirements(min.width, typ.width, max.width, 0.0f);
 			}
+		}
+		if (firstDirty != CLEAN) {
+			calculateTotals();
+		}
+	}
 
-			xTotal = SizeRequirements.getAlignedSizeRequirements(xChildren);
-			yTotal = SizeRequirements.getTiledSizeRequirements(yChildren);
+	/**
+	 * Reads size requirements of child into its slot.
+	 * @param i child index
+	 * @param comp child
+	 * @return <code>true</code> if requirements changed
+	 */
+	private boolean updateRequests(int i, Component comp) {
+		SizeRequirements x = xChildren[i];
+		SizeRequirements y = yChildren[i];
+		boolean known = components[i] == comp;
+		int xMin = x.minimum;
+		int xPref = x.preferred;
+		int xMax = x.maximum;
+		int yMin = y.minimum;
+		int yPref = y.preferred;
+		int yMax = y.maximum;
+		float yAlignment = y.alignment;
+
+		components[i] = comp;
+		if (!comp.isVisible()) {
+			set(y, 0, 0, 0, comp.getAlignmentY());
+			set(x, 0, 0, 0);
+		} else {
+			Dimension min = comp.getMinimumSize();
+			Dimension typ = comp.getPreferredSize();
+			Dimension max = comp.getMaximumSize();
+			set(y, min.height, typ.height, max.height, comp.getAlignmentY());
+			set(x, min.width, typ.width, max.width);
 		}
+		return !known || xMin != x.minimum || xPref != x.preferred || xMax != x.maximum || yMin != y.minimum
+				|| yPref != y.preferred || yMax != y.maximum || yAlignment != y.alignment;
 	}
 
 	/**
-	 * Calculates offsets and spans for fixed preferred size.
-	 * @param offsets offsets
-	 * @param spans spans
-	 * @param totalOffset initial total offset
+	 * Sets requirements of child width, which is aligned to the left.
+	 * @param req requirements
+	 * @param min minimum
+	 * @param pref preferred
+	 * @param max maximum
 	 */
-	private void calculateFixedSizes(int[] offsets, int[] spans, int totalOffset) {
-		for (int i = 0; i < spans.length; i++) {
-			offsets[i] = totalOffset;
+	private static void set(SizeRequirements req, int min, int pref, int max) {
+		set(req, min, pref, max, 0.0f);
+	}
+
+	/**
+	 * Sets requirements.
+	 * @param req requirements
+	 * @param min minimum
+	 * @param pref preferred
+	 * @param max maximum
+	 * @param alignment alignment
+	 */
+	private static void set(SizeRequirements req, int min, int pref, int max, float alignment) {
+		req.minimum = min;
+		req.preferred = pref;
+		req.maximum = max;
+		req.alignment = alignment;
+	}
+
+	/**
+	 * Recomputes sums of heights from the first changed child and totals of
+	 * container. Width totals are the largest widths, children are aligned to the
+	 * left; height totals are sums, like <code>SizeRequirements</code> computes them.
+	 */
+	private void calculateTotals() {
+		int compCount = components.length;
+		for (int i = Math.min(firstDirty, compCount); i < compCount; i++) {
 			SizeRequirements req = yChildren[i];
-			spans[i] = (int) req.preferred;
-			totalOffset = (int) Math.min((long) totalOffset + (long) spans[i], Integer.MAX_VALUE);
+			minSums[i + 1] = minSums[i] + req.minimum;
+			prefSums[i + 1] = prefSums[i] + req.preferred;
+			maxSums[i + 1] = maxSums[i] + req.maximum;
+		}
+		firstDirty = CLEAN;
+		set(yTotal, clip(minSums[compCount]), clip(prefSums[compCount]), clip(maxSums[compCount]), 0.5f);
+
+		int min = 0;
+		int pref = 0;
+		int max = 0;
+		for (SizeRequirements req : xChildren) {
+			min = Math.max(min, req.minimum);
+			pref = Math.max(pref, req.preferred);
+			max = Math.max(max, req.maximum);
+		}
+		set(xTotal, min, pref, max);
+	}
+
+	/**
+	 * Clips sum to int range.
+	 * @param sum sum
+	 * @return sum, at most <code>Integer.MAX_VALUE</code>
+	 */
+	private static int clip(long sum) {
+		return (int) Math.min(sum, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Resizes caches to number of children, opening or closing one slot at index.
+	 * @param count new number of children
+	 * @param index index of opened or closed slot
+	 * @param delta 1 to open slot, -1 to close it, 0 to keep slots in place
+	 */
+	private void resize(int count, int index, int delta) {
+		SizeRequirements[] newX = new SizeRequirements[count];
+		SizeRequirements[] newY = new SizeRequirements[count];
+		Component[] newComponents = new Component[count];
+		int kept = Math.min(count, components.length);
+		int head = delta == 0 ? kept : index;
+		System.arraycopy(xChildren, 0, newX, 0, head);
+		System.arraycopy(yChildren, 0, newY, 0, head);
+		System.arraycopy(components, 0, newComponents, 0, head);
+		if (delta != 0) {
+			int from = delta > 0 ? index : index + 1;
+			int to = delta > 0 ? index + 1 : index;
+			int tail = components.length - from;
+			System.arraycopy(xChildren, from, newX, to, tail);
+			System.arraycopy(yChildren, from, newY, to, tail);
+			System.arraycopy(components, from, newComponents, to, tail);
+		}
+		for (int i = 0; i < count; i++) {
+			if (newX[i] == null) {
+				newX[i] = new SizeRequirements();
+				newY[i] = new SizeRequirements();
+			}
+		}
+		xChildren = newX;
+		yChildren = newY;
+		components = newComponents;
+		minSums = Arrays.copyOf(minSums, count + 1);
+		prefSums = Arrays.copyOf(prefSums, count + 1);
+		maxSums = Arrays.copyOf(maxSums, count + 1);
+		xOffsets = new int[count];
+		xSpans = new int[count];
+		yOffsets = new int[count];
+		ySpans = new int[count];
+		firstDirty = Math.min(firstDirty, count);
+	}
+
+	/**
+	 * Calculates offsets and spans for fixed preferred size, from sums of preferred
+	 * heights.
+	 * @param totalOffset initial total offset
+	 */
+	private void calculateFixedSizes(int totalOffset) {
+		for (int i = 0; i < ySpans.length; i++) {
+			yOffsets[i] = clip(totalOffset + prefSums[i]);
+			ySpans[i] = yChildren[i].preferred;
 		}
 	}
 
@@ -0,0 +1,24 @@
+package layoutmans;
+
+import java.awt.Component;
+
+/**
+ * Renderer of items of <code>VirtualStackedPanel</code>. Components are recycled:
+ * component which showed an item that was scrolled away is given back to show
+ * another item.
+ * @param <T> type of items
+ * @author Dario Vidas
+ */
+public interface StackedRenderer<T> {
+
+	/**
+	 * Returns component which shows item.
+	 * @param panel panel which shows items
+	 * @param item item
+	 * @param index item index
+	 * @param recycled component which showed another item and can be reconfigured,
+	 *        <code>null</code> if a new component has to be created
+	 * @return component showing item, usually <code>recycled</code> if it was given
+	 */
+	Component getComponent(VirtualStackedPanel<T> panel, T item, int index, Component recycled);
+}
@@ -0,0 +1,413 @@
+package layoutmans;
+
+import layoutmans.StackedLayout.StackedLayoutDirection;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SizeRequirements;
+import javax.swing.SwingConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Panel which stacks items like <code>StackedLayout</code>, but is meant for
+ * thousands of items inside <code>JViewport</code>. Only items which intersect the
+ * visible rectangle get a component, configured by <code>StackedRenderer</code>, and
+ * components of items scrolled away are recycled for items scrolled in.
+ * <p>
+ * Heights of items are measured when they are first shown, until then they are
+ * estimated. Sums of heights are kept in a Fenwick tree, so finding the offset of
+ * an item for <code>scrollToIndex</code> or the item at a point takes O(log n).
+ * Direction <code>FROM_BOTTOM</code> stacks items at the bottom of the viewport and
+ * <code>FILL</code> stretches them over it while all items fit, when they do not fit
+ * both stack items from the top like <code>FROM_TOP</code>.
+ * </p>
+ * @param <T> type of items
+ * @author Dario Vidas
+ */
+public class VirtualStackedPanel<T> extends JPanel implements Scrollable {
+
+	private static final long serialVersionUID = -3150461627262408390L;
+
+	/** Estimated height of items until one is measured. */
+	private static final int DEFAULT_ESTIMATE = 20;
+
+	/** Number of items which preferred size of viewport shows. */
+	private static final int VISIBLE_ITEMS = 10;
+
+	private StackedLayoutDirection direction;
+	private transient StackedRenderer<T> renderer;
+	private transient List<? extends T> items = Collections.emptyList();
+
+	/** Heights of items. */
+	private transient HeightIndex heights = new HeightIndex(0, DEFAULT_ESTIMATE);
+
+	/** Estimated height of items which were not measured. */
+	private int estimate = DEFAULT_ESTIMATE;
+
+	/** Components of shown items by item index. */
+	private transient Map<Integer, Component> shown = new HashMap<>();
+
+	/** Components which can be recycled, hidden children of panel. */
+	private transient Deque<Component> recycled = new ArrayDeque<>();
+
+	/** Widest preferred width of measured items. */
+	private int preferredWidth;
+
+	/** Viewport which panel listens to, <code>null</code> if panel is not in one. */
+	private transient JViewport viewport;
+
+	/** Lays out panel again when viewport scrolls. */
+	private transient ChangeListener scrollListener = new ChangeListener() {
+
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			if (!viewVisible().equals(lastVisible)) {
+				revalidate();
+			}
+		}
+	};
+
+	/** Visible rectangle of last layout. */
+	private transient Rectangle lastVisible = new Rectangle();
+
+	/**
+	 * Constructor.
+	 * @param direction direction for stacking items
+	 * @param renderer renderer of items
+	 */
+	public VirtualStackedPanel(StackedLayoutDirection direction, StackedRenderer<T> renderer) {
+		super(null);
+		this.direction = direction;
+		this.renderer = renderer;
+	}
+
+	/**
+	 * Sets items shown by panel. Components of shown items are recycled and all
+	 * heights are estimated again.
+	 * @param items items, list is not copied
+	 */
+	public void setItems(List<? extends T> items) {
+		for (Component component : shown.values()) {
+			recycle(component);
+		}
+		shown.clear();
+		this.items = items;
+		heights = new HeightIndex(items.size(), estimate);
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Returns number of items.
+	 * @return number of items
+	 */
+	public int getItemCount() {
+		return items.size();
+	}
+
+	/**
+	 * Sets height of items which were not measured yet, used until an item is
+	 * shown. Closer estimate makes scroll bar jump less while scrolling.
+	 * @param estimate estimated height
+	 */
+	public void setEstimatedHeight(int estimate) {
+		this.estimate = estimate;
+		setItems(items);
+	}
+
+	/**
+	 * Notifies panel that item changed, so it is configured and measured again.
+	 * @param index item index
+	 */
+	public void itemChanged(int index) {
+		heights.forget(index);
+		Component component = shown.get(index);
+		if (component != null) {
+			shown.put(index, configure(index, component));
+		}
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Scrolls enclosing viewport so item is visible.
+	 * @param index item index
+	 */
+	public void scrollToIndex(int index) {
+		scrollRectToVisible(new Rectangle(0, (int) (stackOffset() + heights.offset(index)), 1, heights.get(index)));
+	}
+
+	/**
+	 * Finds item at point.
+	 * @param point point in panel
+	 * @return item index, -1 if there is no item at point
+	 */
+	public int indexAtPoint(Point point) {
+		for (Map.Entry<Integer, Component> entry : shown.entrySet()) {
+			if (entry.getValue().getBounds().contains(point)) {
+				return entry.getKey();
+			}
+		}
+		long y = point.y - stackOffset();
+		if (items.isEmpty() || y < 0 || y >= heights.total()) {
+			return -1;
+		}
+		return heights.rowAt(y);
+	}
+
+	/**
+	 * Returns component which shows item.
+	 * @param index item index
+	 * @return component, <code>null</code> if item is not visible
+	 */
+	public Component getComponentFor(int index) {
+		return shown.get(index);
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		Container parent = getParent();
+		if (parent instanceof JViewport) {
+			viewport = (JViewport) parent;
+			viewport.addChangeListener(scrollListener);
+		}
+	}
+
+	@Override
+	public void removeNotify() {
+		if (viewport != null) {
+			viewport.removeChangeListener(scrollListener);
+			viewport = null;
+		}
+		super.removeNotify();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet()) {
+			return super.getPreferredSize();
+		}
+		long height = heights.total();
+		return new Dimension(preferredWidth, (int) Math.min(height, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Lays out shown items. Items which left visible rectangle give their components
+	 * to items which entered it, and items are measured when they are first shown.
+	 * If any height changed, panel is validated again with new preferred size.
+	 */
+	@Override
+	public void doLayout() {
+		Rectangle visible = viewVisible();
+		if (items.isEmpty()) {
+			recycleOutside(0, -1);
+			lastVisible = visible;
+			return;
+		}
+
+		int first;
+		int last;
+		boolean fill = direction == StackedLayoutDirection.FILL && heights.total() <= availableHeight();
+		if (fill) {
+			first = 0;		//all items fit, so all are shown
+			last = items.size() - 1;
+		} else {
+			long offset = stackOffset();
+			first = heights.rowAt(visible.y - offset);
+			last = heights.rowAt(visible.y + visible.height - 1 - offset);
+		}
+		recycleOutside(first, last);
+
+		boolean changed = false;
+		for (int i = first; i <= last; i++) {
+			Component component = shown.get(i);
+			if (component == null) {
+				component = configure(i, recycled.poll());
+				shown.put(i, component);
+			}
+			if (!heights.isMeasured(i) || !component.isValid()) {
+				Dimension size = component.getPreferredSize();
+				changed |= heights.set(i, size.height);
+				preferredWidth = Math.max(preferredWidth, size.width);
+			}
+		}
+
+		if (fill) {
+			layoutFill(first, last);
+		} else {
+			long offset = stackOffset();
+			for (int i = first; i <= last; i++) {
+				Component component = shown.get(i);
+				component.setBounds(0, (int) (offset + heights.offset(i)), itemWidth(component), heights.get(i));
+			}
+		}
+		lastVisible = viewVisible();
+
+		if (changed) {
+			revalidate();		//preferred size changed, viewport lays out panel again
+		}
+	}
+
+	/**
+	 * Stretches shown items over panel, like <code>StackedLayout</code> does in
+	 * direction <code>FILL</code>.
+	 * @param first first item index
+	 * @param last last item index
+	 */
+	private void layoutFill(int first, int last) {
+		int count = last - first + 1;
+		SizeRequirements[] children = new SizeRequirements[count];
+		for (int i = 0; i < count; i++) {
+			Component component = shown.get(first + i);
+			children[i] = new SizeRequirements(component.getMinimumSize().height, heights.get(first + i),
+					component.getMaximumSize().height, 0.5f);
+		}
+		int[] offsets = new int[count];
+		int[] spans = new int[count];
+		SizeRequirements.calculateTiledPositions(availableHeight(), null, children, offsets, spans);
+		for (int i = 0; i < count; i++) {
+			Component component = shown.get(first + i);
+			component.setBounds(0, offsets[i], itemWidth(component), spans[i]);
+		}
+	}
+
+	/**
+	 * Gives item a component, reconfiguring recycled one or creating new one.
+	 * @param index item index
+	 * @param component recycled component, <code>null</code> if there is none
+	 * @return component showing item
+	 */
+	private Component configure(int index, Component component) {
+		Component result = renderer.getComponent(this, items.get(index), index, component);
+		if (result != component) {
+			if (component != null) {
+				remove(component);
+			}
+			add(result);
+		}
+		result.setVisible(true);
+		return result;
+	}
+
+	/**
+	 * Recycles components of items outside of range.
+	 * @param first first shown item index
+	 * @param last last shown item index
+	 */
+	private void recycleOutside(int first, int last) {
+		Iterator<Map.Entry<Integer, Component>> iterator = shown.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Integer, Component> entry = iterator.next();
+			if (entry.getKey() < first || entry.getKey() > last) {
+				recycle(entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Hides component and keeps it for reuse.
+	 * @param component component
+	 */
+	private void recycle(Component component) {
+		component.setVisible(false);
+		recycled.push(component);
+	}
+
+	/**
+	 * Returns width of item: width of panel, but not more than maximum width of component.
+	 * @param component component of item
+	 * @return width
+	 */
+	private int itemWidth(Component component) {
+		return Math.min(getWidth(), component.getMaximumSize().width);
+	}
+
+	/**
+	 * Returns offset of first item, items are stacked at the bottom in direction
+	 * <code>FROM_BOTTOM</code> when they do not fill panel.
+	 * @return offset
+	 */
+	private long stackOffset() {
+		if (direction == StackedLayoutDirection.FROM_BOTTOM) {
+			return Math.max(availableHeight() - heights.total(), 0);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns height which items can fill: height of panel, but not more than
+	 * height of viewport, since panel can still have height of previous layout.
+	 * @return height
+	 */
+	private int availableHeight() {
+		return Math.min(getHeight(), viewVisible().height);
+	}
+
+	/**
+	 * Returns visible rectangle of panel, whole panel if it is not in a viewport.
+	 * @return visible rectangle
+	 */
+	private Rectangle viewVisible() {
+		if (viewport != null) {
+			return viewport.getViewRect();
+		}
+		return new Rectangle(0, 0, getWidth(), getHeight());
+	}
+
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		Dimension size = getPreferredSize();
+		size.height = (int) Math.min(size.height, (long) VISIBLE_ITEMS * estimate);
+		return size;
+	}
+
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		if (orientation == SwingConstants.HORIZONTAL || items.isEmpty()) {
+			return estimate;
+		}
+		long offset = stackOffset();
+		int row = heights.rowAt(visibleRect.y - offset);
+		long top = offset + heights.offset(row);
+		if (direction < 0) {		//align previous item to top
+			return (int) (top < visibleRect.y ? visibleRect.y - top
+					: row > 0 ? heights.get(row - 1) : 0);
+		}
+		return (int) (top + heights.get(row) - visibleRect.y);		//align next item to top
+	}
+
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return true;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		//panel fills viewport when items do not, so they can be stacked at the bottom or stretched
+		Container parent = getParent();
+		return parent instanceof JViewport && parent.getHeight() > heights.total();
+	}
+}
@@ -0,0 +1,129 @@
+package jnotepadpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import jnotepadpp.localization.LocalizationProvider;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of journal of unsaved edits.
+ * @author Dario Vidas
+ */
+public class EditJournalTest {
+
+	/** Most milliseconds to wait for loading. */
+	private static final long TIMEOUT = 10000;
+
+	/** Milliseconds to wait for journal to be written, longer than its commit interval. */
+	private static final long COMMIT_WAIT = 2500;
+
+	/** Directory of journal files. */
+	private static final Path JOURNAL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".jnotepadpp", "journal");
+
+	/** Folder with edited files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * First edit of a saved file starts journal from the file and records the edit,
+	 * replaying journal gives edited text. Only the user can read the journal.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void firstEditOfSavedFileIsRecovered() throws Exception {
+		final File file = folder.newFile("saved.txt");
+		Files.write(file.toPath(), "first line\nsecond line\n".getBytes(StandardCharsets.UTF_8));
+
+		final TabComponent tab = onEdt(new Callable<TabComponent>() {
+
+			@Override
+			public TabComponent call() {
+				return new TabComponent(file, LocalizationProvider.getInstance());
+			}
+		});
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (onEdt(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return tab.isLoading();
+			}
+		})) {
+			assertTrue("file was not loaded", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() throws BadLocationException {
+				Document document = tab.getTextArea().getDocument();
+				document.insertString(document.getLength(), "third", null);
+				document.remove(0, "first ".length());
+				return null;
+			}
+		});
+		Thread.sleep(COMMIT_WAIT);
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			try (DirectoryStream<Path> journals = Files.newDirectoryStream(JOURNAL_DIRECTORY)) {
+				for (Path journal : journals) {
+					assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(journal)));
+				}
+			}
+			assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(JOURNAL_DIRECTORY)));
+		}
+
+		EditJournal.Recovery recovery = null;
+		for (EditJournal.Recovery candidate : EditJournal.recover()) {
+			if (file.equals(candidate.getFile())) {
+				recovery = candidate;
+			}
+		}
+		assertNotNull("journal of edited file was not recovered", recovery);
+		Document recovered = recovery.getDocument();
+		assertEquals("line\nsecond line\nthird", recovered.getText(0, recovered.getLength()));
+
+		recovery.getJournal().delete();
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				tab.close();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Calls task on EDT and waits for its result.
+	 * @param task task
+	 * @param <T> type of result
+	 * @return result
+	 * @throws Exception if task fails
+	 */
+	private static <T> T onEdt(Callable<T> task) throws Exception {
+		FutureTask<T> future = new FutureTask<>(task);
+		SwingUtilities.invokeAndWait(future);
+		return future.get();
+	}
+}
@@ -0,0 +1,251 @@
+package jnotepadpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import jnotepadpp.document.TextDocument;
+import jnotepadpp.localization.LocalizationProvider;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of hibernation and saving of tabs.
+ * @author Dario Vidas
+ */
+public class TabComponentTest {
+
+	/** Most milliseconds to wait for loading or spilling. */
+	private static final long TIMEOUT = 10000;
+
+	/** Directory of spill files. */
+	private static final Path SPILL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".jnotepadpp", "spill");
+
+	/** Folder with edited files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Text of dirty tab is spilled to a file only the user can read, and is loaded
+	 * back from it when tab is materialized. Spill file is then deleted.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void dirtyTabIsSpilledAndLoadedBack() throws Exception {
+		final File file = folder.newFile("hibernated.txt");
+		Files.write(file.toPath(), "first line\n".getBytes(StandardCharsets.UTF_8));
+
+		final TabComponent tab = onEdt(new Callable<TabComponent>() {
+
+			@Override
+			public TabComponent call() {
+				return new TabComponent(file, LocalizationProvider.getInstance());
+			}
+		});
+		waitUntil("file was not loaded", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return !tab.isLoading();
+			}
+		});
+
+		assertTrue(onEdt(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws BadLocationException {
+				Document document = tab.getTextArea().getDocument();
+				document.insertString(document.getLength(), "second line", null);
+				return tab.hibernate();
+			}
+		}));
+		waitUntil("tab was not hibernated", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return !tab.isMaterialized();
+			}
+		});
+
+		List<Path> spills = spillFiles();
+		assertEquals(1, spills.size());
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(spills.get(0))));
+		}
+
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				tab.materialize();
+				return null;
+			}
+		});
+		waitUntil("spill file was not loaded", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return !tab.isLoading();
+			}
+		});
+		assertEquals("first line\nsecond line", onEdt(new Callable<String>() {
+
+			@Override
+			public String call() {
+				return tab.getTextArea().getText();
+			}
+		}));
+		assertFalse(Files.exists(spills.get(0)));
+
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				tab.close();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Mapped file is saved over with edited text, document is read into memory
+	 * before the file is replaced and keeps its text.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void mappedFileIsSavedOver() throws Exception {
+		final File file = folder.newFile("mapped.txt");
+		byte[] line = new byte[1024];
+		Arrays.fill(line, (byte) 'a');
+		line[line.length - 1] = '\n';
+		final int lines = (int) (FileLoader.MAPPING_THRESHOLD / line.length) + 1;
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+			for (int i = 0; i < lines; i++) {
+				out.write(line);
+			}
+		}
+
+		final TabComponent tab = onEdt(new Callable<TabComponent>() {
+
+			@Override
+			public TabComponent call() {
+				return new TabComponent(file, LocalizationProvider.getInstance());
+			}
+		});
+		waitUntil("file was not loaded", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return !tab.isLoading();
+			}
+		});
+
+		final TextDocument document = (TextDocument) tab.getTextArea().getDocument();
+		assertTrue(document.getHeapSize() < file.length());
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() throws BadLocationException {
+				document.insertString(0, "edit\n", null);
+				tab.saveFile(file);
+				return null;
+			}
+		});
+		waitUntil("file was not saved", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return !tab.isChanged();
+			}
+		});
+
+		assertEquals((long) lines * line.length + 5, file.length());
+		byte[] start = new byte[6];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			assertEquals(start.length, in.read(start));
+		}
+		assertEquals("edit\na", new String(start, StandardCharsets.UTF_8));
+		assertTrue(document.getHeapSize() >= 2L * document.getLength());
+		assertEquals("a\n", onEdt(new Callable<String>() {
+
+			@Override
+			public String call() throws BadLocationException {
+				return document.getText(document.getLength() - 2, 2);
+			}
+		}));
+
+		onEdt(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				tab.close();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Returns spill files.
+	 * @return spill files
+	 * @throws Exception if directory can not be read
+	 */
+	private static List<Path> spillFiles() throws Exception {
+		List<Path> spills = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(SPILL_DIRECTORY)) {
+			for (Path spill : files) {
+				spills.add(spill);
+			}
+		}
+		return spills;
+	}
+
+	/**
+	 * Waits until condition checked on EDT holds.
+	 * @param message message if it does not hold in time
+	 * @param condition condition
+	 * @throws Exception if condition fails
+	 */
+	private static void waitUntil(String message, Callable<Boolean> condition) throws Exception {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!onEdt(condition)) {
+			assertTrue(message, System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Calls task on EDT and waits for its result.
+	 * @param task task
+	 * @param <T> type of result
+	 * @return result
+	 * @throws Exception if task fails
+	 */
+	private static <T> T onEdt(Callable<T> task) throws Exception {
+		FutureTask<T> future = new FutureTask<>(task);
+		SwingUtilities.invokeAndWait(future);
+		return future.get();
+	}
+}
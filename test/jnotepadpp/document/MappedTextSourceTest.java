@@ -0,0 +1,86 @@
+package jnotepadpp.document;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.text.Segment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of text backed by a mapped file.
+ * @author Dario Vidas
+ */
+public class MappedTextSourceTest {
+
+	/** Number of threads reading at once. */
+	private static final int THREADS = 4;
+
+	/** Number of reads of every thread. */
+	private static final int READS = 2000;
+
+	/** Folder with mapped files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Threads reading text at once, more pages than are cached, all get the text of
+	 * the file.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void concurrentReadsGetFileText() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int line = 0; builder.length() < 64 * MappedTextSource.PAGE_SIZE; line++) {
+			builder.append(line).append(" šećer привет 文本 \uD83D\uDE00\n");
+		}
+		final String text = builder.toString();
+		File file = folder.newFile("mapped.txt");
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+		try (final MappedTextSource source = new MappedTextSource(file, StandardCharsets.UTF_8, null)) {
+			assertEquals(text.length(), source.length());
+
+			ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+			List<Future<Void>> reads = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final Random random = new Random(t);
+				reads.add(pool.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() {
+						Segment txt = new Segment();
+						txt.setPartialReturn(true);
+						for (int i = 0; i < READS; i++) {
+							int where = random.nextInt(text.length());
+							int len = Math.min(random.nextInt(3 * MappedTextSource.PAGE_SIZE), text.length() - where);
+							char[] chars = new char[len];
+							source.getChars(where, len, chars, 0);
+							assertEquals(text.substring(where, where + len), new String(chars));
+
+							source.getChars(where, len, txt);
+							assertEquals(text.substring(where, where + txt.count), txt.toString());
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> read : reads) {
+				read.get();
+			}
+			pool.shutdown();
+		}
+	}
+}
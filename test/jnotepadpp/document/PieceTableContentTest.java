@@ -0,0 +1,100 @@
+package jnotepadpp.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+
+import org.junit.Test;
+
+/**
+ * Tests of piece table content.
+ * @author Dario Vidas
+ */
+public class PieceTableContentTest {
+
+	/** Number of chars in one line of followed file. */
+	private static final int LINE = 1000;
+
+	/** Number of appended lines. */
+	private static final int LINES = 1000;
+
+	/**
+	 * Positions move on inserts and removes like positions of <code>GapContent</code>:
+	 * position at offset of insert moves, position at the start stays.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void positionsMoveLikeInGapContent() throws Exception {
+		PieceTableContent content = new PieceTableContent();
+		GapContent expected = new GapContent();
+		content.insertString(0, "abcdef");
+		expected.insertString(0, "abcdef");
+
+		int[] offsets = {0, 1, 3, 6};
+		Position[] positions = new Position[offsets.length];
+		Position[] expectedPositions = new Position[offsets.length];
+		for (int i = 0; i < offsets.length; i++) {
+			positions[i] = content.createPosition(offsets[i]);
+			expectedPositions[i] = expected.createPosition(offsets[i]);
+		}
+
+		int[][] inserts = {{0, 2}, {3, 1}, {5, 3}, {12, 2}};
+		for (int[] insert : inserts) {
+			char[] chars = new char[insert[1]];
+			Arrays.fill(chars, 'x');
+			content.insertString(insert[0], new String(chars));
+			expected.insertString(insert[0], new String(chars));
+			assertOffsets(expectedPositions, positions);
+		}
+
+		content.remove(2, 4);
+		expected.remove(2, 4);
+		assertOffsets(expectedPositions, positions);
+		content.remove(0, 3);
+		expected.remove(0, 3);
+		assertOffsets(expectedPositions, positions);
+	}
+
+	/**
+	 * Checks that positions have expected offsets.
+	 * @param expected expected positions
+	 * @param actual actual positions
+	 */
+	private static void assertOffsets(Position[] expected, Position[] actual) {
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("position " + i, expected[i].getOffset(), actual[i].getOffset());
+		}
+	}
+
+	/**
+	 * Content which keeps only its last lines, like a followed file, does not count
+	 * chunks of lines that were trimmed.
+	 * @throws Exception if test fails
+	 */
+	@Test
+	public void heapSizeDropsWithTrimmedText() throws Exception {
+		char[] chars = new char[LINE - 1];
+		Arrays.fill(chars, 'a');
+		String line = new String(chars) + "\n";
+
+		PieceTableContent content = new PieceTableContent();
+		for (int i = 0; i < LINES; i++) {
+			content.insertString(content.length() - 1, line);
+		}
+		long full = content.heapSize();
+		assertTrue(full >= (long) LINE * LINES);
+
+		for (int i = 0; i < LINES; i++) {
+			content.insertString(content.length() - 1, line);
+			content.remove(0, LINE);
+		}
+		assertTrue(content.heapSize() < full * 2);
+
+		content.remove(0, content.length() - 1);
+		assertTrue(content.heapSize() < full / 10);
+	}
+}
@@ -0,0 +1,81 @@
+package layoutmans;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Dimension;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+
+import layoutmans.StackedLayout.StackedLayoutDirection;
+
+import org.junit.Test;
+
+/**
+ * Tests of cached size requirements of <code>StackedLayout</code>.
+ * @author Dario Vidas
+ */
+public class StackedLayoutTest {
+
+	/**
+	 * Size set with <code>setPreferredSize</code> does not invalidate the child, it
+	 * has to be seen once the container is invalidated.
+	 */
+	@Test
+	public void seesPreferredSizeOfValidChild() {
+		JPanel panel = new JPanel(new StackedLayout(StackedLayoutDirection.FROM_TOP));
+		Child first = new Child(10);
+		Child second = new Child(20);
+		panel.add(first);
+		panel.add(second);
+		assertEquals(30, panel.getPreferredSize().height);
+
+		second.setPreferredSize(new Dimension(10, 50));
+		panel.invalidate();
+		assertEquals(60, panel.getPreferredSize().height);
+
+		panel.setSize(panel.getPreferredSize());
+		panel.doLayout();
+		assertEquals(10, second.getY());
+		assertEquals(50, second.getHeight());
+	}
+
+	/**
+	 * Child that is valid until invalidated, like a child of a shown window, though
+	 * it has no peer.
+	 * @author Dario Vidas
+	 */
+	private static final class Child extends JComponent {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Set when child was validated and not invalidated since. */
+		private boolean valid;
+
+		/**
+		 * Constructor.
+		 * @param height preferred height
+		 */
+		Child(int height) {
+			setPreferredSize(new Dimension(10, height));
+			valid = true;
+		}
+
+		@Override
+		public void invalidate() {
+			valid = false;
+			super.invalidate();
+		}
+
+		@Override
+		public void validate() {
+			super.validate();
+			valid = true;
+		}
+
+		@Override
+		public boolean isValid() {
+			return valid;
+		}
+	}
+}